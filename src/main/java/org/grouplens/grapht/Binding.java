@@ -117,6 +117,26 @@ public interface Binding<T> {
      */
     Binding<T> unshared();
 
+    /**
+     * Configure the binding so that one instance is shared within each
+     * {@linkplain InjectionScope injection scope}.
+     *
+     * @return A newly configured binding
+     * @see ScopingInjector#openScope()
+     * @since 0.11
+     */
+    Binding<T> scoped();
+
+    /**
+     * Configure the binding so that a shared instance is used, but may be
+     * reclaimed under memory pressure and rebuilt when next needed.
+     *
+     * @return A newly configured binding
+     * @see CachePolicy#SOFT_MEMOIZE
+     * @since 0.11
+     */
+    Binding<T> softShared();
+
     /**
      * Configure the binding so that its results are 'fixed'.  Fixed results will not be rewritten
      * by the dependency solver in rewrite mode.
@@ -20,10 +20,12 @@
 package org.grouplens.grapht;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Multimap;
 import org.grouplens.grapht.context.ContextMatcher;
 import org.grouplens.grapht.solver.BindRule;
 import org.grouplens.grapht.solver.BindingFunction;
+import org.grouplens.grapht.solver.GeneratedBindRules;
 import org.grouplens.grapht.solver.RuleBasedBindingFunction;
 
 import java.io.Externalizable;
@@ -70,6 +72,8 @@ public class BindingFunctionBuilder implements Cloneable {
     private final Multimap<ContextMatcher,BindRule> manualRules;
     private final Multimap<ContextMatcher,BindRule> intermediateRules; // "generated"
     private final Multimap<ContextMatcher,BindRule> superRules; // "generated"
+    private final Multimap<ContextMatcher,GeneratedBindRules> intermediateFamilies;
+    private final Multimap<ContextMatcher,GeneratedBindRules> superFamilies;
 
     /**
      * Create a new InjectorConfigurationBuilder that automatically generates bind rules for
@@ -99,6 +103,8 @@ public class BindingFunctionBuilder implements Cloneable {
         manualRules = ArrayListMultimap.create();
         intermediateRules = ArrayListMultimap.create();
         superRules = ArrayListMultimap.create();
+        intermediateFamilies = ArrayListMultimap.create();
+        superFamilies = ArrayListMultimap.create();
 
         root = ContextImpl.root(this);
     }
@@ -109,6 +115,8 @@ public class BindingFunctionBuilder implements Cloneable {
         manualRules = ArrayListMultimap.create(clone.manualRules);
         intermediateRules = ArrayListMultimap.create(clone.intermediateRules);
         superRules = ArrayListMultimap.create(clone.superRules);
+        intermediateFamilies = ArrayListMultimap.create(clone.intermediateFamilies);
+        superFamilies = ArrayListMultimap.create(clone.superFamilies);
         root = ContextImpl.root(this);
     }
     
@@ -177,7 +185,7 @@ public class BindingFunctionBuilder implements Cloneable {
      * @return
      */
     public BindingFunction build(RuleSet set) {
-        return new RuleBasedBindingFunction(getMap(set));
+        return new RuleBasedBindingFunction(getMap(set), getFamilyMap(set));
     }
     
     void addBindRule(RuleSet set, ContextMatcher context, BindRule rule) {
@@ -185,6 +193,14 @@ public class BindingFunctionBuilder implements Cloneable {
         map.put(context, rule);
     }
 
+    /**
+     * Add a family of generated bind rules.  The family's rules are only created when a
+     * desire for one of their types is resolved.
+     */
+    void addBindRules(RuleSet set, ContextMatcher context, GeneratedBindRules rules) {
+        getFamilyMap(set).put(context, rules);
+    }
+
     Set<Class<?>> getDefaultExclusions() {
         return Collections.unmodifiableSet(defaultExcludes);
     }
@@ -201,4 +217,17 @@ public class BindingFunctionBuilder implements Cloneable {
             throw new RuntimeException("Should not happen");
         }
     }
+
+    private Multimap<ContextMatcher, GeneratedBindRules> getFamilyMap(RuleSet set) {
+        switch(set) {
+        case EXPLICIT:
+            return ImmutableListMultimap.of();
+        case INTERMEDIATE_TYPES:
+            return intermediateFamilies;
+        case SUPER_TYPES:
+            return superFamilies;
+        default:
+            throw new RuntimeException("Should not happen");
+        }
+    }
 }
@@ -19,14 +19,18 @@
  */
 package org.grouplens.grapht;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.ClassUtils;
 import org.grouplens.grapht.BindingFunctionBuilder.RuleSet;
 import org.grouplens.grapht.annotation.DefaultImplementation;
 import org.grouplens.grapht.annotation.DefaultProvider;
 import org.grouplens.grapht.context.ContextMatcher;
 import org.grouplens.grapht.reflect.*;
+import org.grouplens.grapht.solver.BindRule;
 import org.grouplens.grapht.solver.BindRuleBuilder;
 import org.grouplens.grapht.solver.BindingFlag;
+import org.grouplens.grapht.solver.GeneratedBindRules;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
 import org.slf4j.Logger;
@@ -124,6 +128,16 @@ class BindingImpl<T> implements Binding<T> {
         return new BindingImpl<T>(context, sourceType, excludeTypes, qualifier, CachePolicy.NEW_INSTANCE, fixed);
     }
 
+    @Override
+    public Binding<T> scoped() {
+        return new BindingImpl<T>(context, sourceType, excludeTypes, qualifier, CachePolicy.SCOPED, fixed);
+    }
+
+    @Override
+    public Binding<T> softShared() {
+        return new BindingImpl<T>(context, sourceType, excludeTypes, qualifier, CachePolicy.SOFT_MEMOIZE, fixed);
+    }
+
     @Override
     public Binding<T> fixed() {
         return new BindingImpl<T>(context, sourceType, excludeTypes, qualifier, cachePolicy, true);
@@ -238,10 +252,49 @@ class BindingImpl<T> implements Binding<T> {
     private void generateBindings(BindRuleBuilder brb, Class<?> type) {
         ContextMatcher matcher = context.getContextPattern();
         BindingFunctionBuilder config = context.getBuilder();
-        if (config.getGenerateRules()) {
+        if (config.getGenerateRules() && !exclusionsCutHierarchy(type)) {
+            // the intermediate and super type families check membership when a desire is
+            // looked up, so the target's supertypes are not enumerated here
+            Class<?> src = Types.box(sourceType);
+            if (src.isAssignableFrom(type) && !excludeTypes.contains(src)) {
+                config.addBindRule(RuleSet.EXPLICIT, matcher, brb.setDependencyType(src).build());
+            }
+            BindRule prototype = brb.setDependencyType(type).build();
+            Set<Class<?>> excludes = ImmutableSet.copyOf(excludeTypes);
+            config.addBindRules(RuleSet.INTERMEDIATE_TYPES, matcher,
+                                GeneratedBindRules.supertypesOf(prototype, type,
+                                                                new BindPointFilter(src, excludes, RuleSet.INTERMEDIATE_TYPES)));
+            config.addBindRules(RuleSet.SUPER_TYPES, matcher,
+                                GeneratedBindRules.supertypesOf(prototype, type,
+                                                                new BindPointFilter(src, excludes, RuleSet.SUPER_TYPES)));
+        } else if (config.getGenerateRules()) {
             Map<Class<?>, RuleSet> bindPoints = generateBindPoints(type);
+            // the intermediate and super type rules are only created on demand
+            Set<Class<?>> intermediate = new HashSet<Class<?>>();
+            Set<Class<?>> supers = new HashSet<Class<?>>();
             for (Entry<Class<?>, RuleSet> e: bindPoints.entrySet()) {
-                config.addBindRule(e.getValue(), matcher, brb.setDependencyType(e.getKey()).build());
+                switch (e.getValue()) {
+                case EXPLICIT:
+                    config.addBindRule(RuleSet.EXPLICIT, matcher, brb.setDependencyType(e.getKey()).build());
+                    break;
+                case INTERMEDIATE_TYPES:
+                    intermediate.add(e.getKey());
+                    break;
+                case SUPER_TYPES:
+                    supers.add(e.getKey());
+                    break;
+                }
+            }
+            if (!intermediate.isEmpty() || !supers.isEmpty()) {
+                BindRule prototype = brb.setDependencyType(type).build();
+                if (!intermediate.isEmpty()) {
+                    config.addBindRules(RuleSet.INTERMEDIATE_TYPES, matcher,
+                                        new GeneratedBindRules(prototype, intermediate));
+                }
+                if (!supers.isEmpty()) {
+                    config.addBindRules(RuleSet.SUPER_TYPES, matcher,
+                                        new GeneratedBindRules(prototype, supers));
+                }
             }
         } else {
             config.addBindRule(RuleSet.EXPLICIT, matcher, brb.setDependencyType(sourceType).build());
@@ -308,36 +361,69 @@ class BindingImpl<T> implements Binding<T> {
         return new BigInteger(in.toString());
     }
     
+    /**
+     * Query whether an excluded type hides some of its supertypes from the search for bind points.
+     * @param target The target type.
+     * @return {@code true} if the bind points must be found by walking the type hierarchy.
+     */
+    private boolean exclusionsCutHierarchy(Class<?> target) {
+        for (Class<?> type: excludeTypes) {
+            if (type.isAssignableFrom(target) && Types.getSupertypeDistances(type).size() > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the bind points for a target type whose hierarchy is cut by an exclusion.
+     */
     private Map<Class<?>, RuleSet> generateBindPoints(Class<?> target) {
+        Class<?> src = Types.box(sourceType);
         Map<Class<?>, RuleSet> bindPoints = new HashMap<Class<?>, RuleSet>();
-        // start the recursion up the type hierarchy, starting at the target type
-        recordTypes(Types.box(sourceType), target, bindPoints);
+        recordTypes(src, target, bindPoints);
         return bindPoints;
     }
-    
-    private void recordTypes(Class<?> src, Class<?> type, Map<Class<?>, RuleSet> bindPoints) {
-        // check exclusions
-        if (type == null || excludeTypes.contains(type)) {
-            // the type is excluded, terminate recursion (this relies on Object
-            // being included in the exclude set)
-            return;
-        }
-        
-        RuleSet set;
+
+    /**
+     * Classify a supertype of the target type with respect to the source type.
+     * @return The rule set for bindings of {@code type}, or {@code null} if {@code type} is
+     *         unrelated to the source type.
+     */
+    @Nullable
+    private static RuleSet classify(Class<?> src, Class<?> type) {
         if (type.equals(src)) {
             // type is the source type, so this is the manual rule
-            set = RuleSet.EXPLICIT;
+            return RuleSet.EXPLICIT;
         } else if (src.isAssignableFrom(type)) {
             // type is a subclass of the source type, and a superclass
             // of the target type
-            set = RuleSet.INTERMEDIATE_TYPES;
+            return RuleSet.INTERMEDIATE_TYPES;
         } else if (type.isAssignableFrom(src)) {
             // type is a superclass of the source type, so it is also a superclass
             // of the target type
-            set = RuleSet.SUPER_TYPES;
+            return RuleSet.SUPER_TYPES;
         } else {
             // type is a superclass of the target type, but not of the source type
             // so we don't generate any bindings
+            return null;
+        }
+    }
+    
+    private void recordTypes(Class<?> src, Class<?> type, Map<Class<?>, RuleSet> bindPoints) {
+        // check exclusions
+        if (type == null || excludeTypes.contains(type)) {
+            // the type is excluded, terminate recursion (this relies on Object
+            // being included in the exclude set)
+            return;
+        }
+        
+        if (bindPoints.containsKey(type)) {
+            // already reached through another path
+            return;
+        }
+        RuleSet set = classify(src, type);
+        if (set == null) {
             return;
         }
         
@@ -353,4 +439,24 @@ class BindingImpl<T> implements Binding<T> {
             recordTypes(src, i, bindPoints);
         }
     }
+
+    /**
+     * Selects the supertypes of a binding's target that belong to one of its generated rule sets.
+     */
+    private static class BindPointFilter implements Predicate<Class<?>> {
+        private final Class<?> source;
+        private final Set<Class<?>> excludes;
+        private final RuleSet ruleSet;
+
+        public BindPointFilter(Class<?> src, Set<Class<?>> excl, RuleSet set) {
+            source = src;
+            excludes = excl;
+            ruleSet = set;
+        }
+
+        @Override
+        public boolean apply(@Nullable Class<?> type) {
+            return type != null && !excludes.contains(type) && classify(source, type) == ruleSet;
+        }
+    }
 }
@@ -33,6 +33,24 @@ public enum CachePolicy {
      * Injectors must create new instances at every request if possible,
      * effectively no caching.
      */
-    NEW_INSTANCE
-    
+    NEW_INSTANCE,
+    /**
+     * Share one instance per {@linkplain InjectionScope injection scope}.  Instances are only
+     * available while a scope opened with {@link ScopingInjector#openScope()} is active, and are torn
+     * down when that scope is closed.
+     *
+     * @since 0.11
+     */
+    SCOPED,
+    /**
+     * Like {@link #MEMOIZE}, but the memoized instance is only held through a soft reference, so
+     * the garbage collector may reclaim it under memory pressure; it is rebuilt on the next request.
+     * Intended for large components, such as derived caches, that can always be rebuilt from their
+     * dependencies.  Instances are torn down when the injector is closed if they are still alive,
+     * but instances reclaimed before then are not, so components that hold external resources
+     * should not use this policy.
+     *
+     * @since 0.11
+     */
+    SOFT_MEMOIZE
 }
@@ -19,7 +19,6 @@
  */
 package org.grouplens.grapht;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.grouplens.grapht.reflect.Satisfaction;
 import org.grouplens.grapht.util.Preconditions;
@@ -37,6 +36,7 @@ public class Component implements Serializable {
     
     private final Satisfaction satisfaction;
     private final CachePolicy cachePolicy;
+    private transient int hash;
 
     private Component(Satisfaction satisfaction, CachePolicy policy) {
         Preconditions.notNull("satisfaction", satisfaction);
@@ -76,23 +76,30 @@ public class Component implements Serializable {
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof Component)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof Component)) {
             return false;
         }
             
         Component c = (Component) o;
-        EqualsBuilder eqb = new EqualsBuilder();
-        return eqb.append(satisfaction, c.satisfaction)
-                  .append(cachePolicy, c.cachePolicy)
-                  .isEquals();
+        return cachePolicy == c.cachePolicy
+               && hashCode() == c.hashCode()
+               && satisfaction.equals(c.satisfaction);
     }
     
     @Override
     public int hashCode() {
-        HashCodeBuilder hcb = new HashCodeBuilder();
-        return hcb.append(satisfaction)
-                  .append(cachePolicy)
-                  .toHashCode();
+        // cached, but not serialized, since satisfaction hash codes may depend on the JVM
+        int h = hash;
+        if (h == 0) {
+            HashCodeBuilder hcb = new HashCodeBuilder();
+            h = hcb.append(satisfaction)
+                   .append(cachePolicy)
+                   .toHashCode();
+            hash = h;
+        }
+        return h;
     }
     
     @Override
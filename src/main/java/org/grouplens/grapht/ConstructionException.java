@@ -20,9 +20,12 @@
 package org.grouplens.grapht;
 
 import org.grouplens.grapht.reflect.InjectionPoint;
+import org.grouplens.grapht.util.DiagnosticContext;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Member;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Thrown when there is an error constructing a component.  This is can be the result of an error
@@ -37,6 +40,8 @@ public class ConstructionException extends InjectionException {
 
     private final Class<?> type;
     private final InjectionPoint injectionPoint;
+    private final Map<String, String> diagnosticContext =
+            Collections.unmodifiableMap(DiagnosticContext.get().snapshot());
 
     public ConstructionException(InjectionPoint ip, String message) {
         this(ip, message, null);
@@ -101,4 +106,17 @@ public class ConstructionException extends InjectionException {
     public InjectionPoint getInjectionPoint() {
         return injectionPoint;
     }
+
+    /**
+     * Get the diagnostic context at the time the exception was created, as it would have
+     * appeared in the MDC.  This records the innermost class and injection point being
+     * constructed when the error occurred.
+     *
+     * @return The diagnostic context entries.
+     * @see DiagnosticContext
+     * @since 0.11
+     */
+    public Map<String, String> getDiagnosticContext() {
+        return diagnosticContext;
+    }
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.reflect.MethodUtils;
 import org.grouplens.grapht.graph.DAGEdge;
 import org.grouplens.grapht.graph.DAGNode;
@@ -34,13 +35,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
+import javax.inject.Provider;
 import java.lang.reflect.Method;
 import java.util.*;
 
 /**
  * Container for dependency-injected components.  A container is the scope of memoization, so
  * components with a cache policy of {@link CachePolicy#MEMOIZE} will share an instance so long
- * as they are instantiated by the same instantiator.
+ * as they are instantiated by the same instantiator.  Components with a cache policy of
+ * {@link CachePolicy#SCOPED} are instead shared within each {@link InjectionScope} opened on the
+ * container.  A memoized component cannot depend on a scoped component except through an
+ * injected {@link Provider}; its instantiator fails with a {@link ConstructionException}.
  *
  * @since 0.9
  * @author <a href="http://www.grouplens.org">GroupLens Research</a>
@@ -48,9 +53,16 @@ import java.util.*;
 public class InjectionContainer {
     private static final Logger logger = LoggerFactory.getLogger(InjectionContainer.class);
 
+    @Nullable
+    private final InjectionContainer parent;
+    private final Set<DAGNode<Component, Dependency>> inheritedNodes;
     private final CachePolicy defaultCachePolicy;
     private final Map<DAGNode<Component, Dependency>, Instantiator> providerCache;
     private final LifecycleManager manager;
+    private final LifecycleManager scopedManager;
+    private final Instrumentation instrumentation;
+    private final Instantiators.MemoListener memoListener;
+    private final Lineage lineage;
 
     /**
      * Create a new instantiator with a default policy of {@code MEMOIZE}.
@@ -66,7 +78,7 @@ public class InjectionContainer {
      * @return The instantiator.
      */
     public static InjectionContainer create(CachePolicy dft) {
-        return new InjectionContainer(dft, null);
+        return create(dft, null);
     }
 
     /**
@@ -76,13 +88,99 @@ public class InjectionContainer {
      * @return The instantiator.
      */
     public static InjectionContainer create(CachePolicy dft, LifecycleManager mgr) {
-        return new InjectionContainer(dft, mgr);
+        return new InjectionContainer(null, Collections.<DAGNode<Component, Dependency>>emptySet(), dft, mgr, null);
+    }
+
+    /**
+     * Create a child container.  Nodes inherited from the parent's graph are instantiated by the
+     * parent, so the child shares the parent's memoized instances for them; all other nodes are
+     * instantiated and memoized by the child.
+     *
+     * @param parent The parent container.
+     * @param inherited The nodes that the child shares with its parent.
+     * @param mgr The lifecycle manager for components instantiated by the child.
+     * @return The child container.
+     * @since 0.11
+     */
+    public static InjectionContainer createChild(InjectionContainer parent,
+                                                 Set<DAGNode<Component, Dependency>> inherited,
+                                                 LifecycleManager mgr) {
+        return createChild(parent, inherited, parent.defaultCachePolicy, mgr);
+    }
+
+    /**
+     * Create a child container with its own default cache policy.
+     *
+     * @param parent The parent container.
+     * @param inherited The nodes that the child shares with its parent.
+     * @param dft The default cache policy for nodes the child instantiates.
+     * @param mgr The lifecycle manager for components instantiated by the child.
+     * @return The child container.
+     * @see #createChild(InjectionContainer, Set, LifecycleManager)
+     * @since 0.11
+     */
+    public static InjectionContainer createChild(InjectionContainer parent,
+                                                 Set<DAGNode<Component, Dependency>> inherited,
+                                                 CachePolicy dft, LifecycleManager mgr) {
+        return new InjectionContainer(parent, inherited, dft, mgr, null);
     }
 
-    private InjectionContainer(CachePolicy dft, LifecycleManager mgr) {
+    /**
+     * Create a container to replace another one whose graph has been reconfigured.  The memoized
+     * instantiators of the carried nodes move to the new container, and their components move to
+     * the new container's lifecycle manager; the old container's other components are shut down.
+     * The new container does not refer to the old one, so the old container (and whatever owns
+     * it) can be discarded.
+     *
+     * @param old The container being replaced.  It must not be used afterwards.
+     * @param carried The nodes whose instances are carried over from {@code old}.
+     * @param dft The default cache policy for the new container.
+     * @param mgr The lifecycle manager for the new container.
+     * @return The new container.
+     * @since 0.11
+     */
+    public static InjectionContainer createSuccessor(InjectionContainer old,
+                                                     Set<DAGNode<Component, Dependency>> carried,
+                                                     CachePolicy dft, LifecycleManager mgr) {
+        Set<DAGNode<Component, Dependency>> inherited = Collections.emptySet();
+        if (old.parent != null) {
+            inherited = Sets.newHashSet(Sets.intersection(old.inheritedNodes, carried));
+        }
+        InjectionContainer successor = new InjectionContainer(old.parent, inherited, dft, mgr, old.lineage);
+        synchronized (old.providerCache) {
+            for (Map.Entry<DAGNode<Component, Dependency>, Instantiator> e: old.providerCache.entrySet()) {
+                if (carried.contains(e.getKey())) {
+                    successor.providerCache.put(e.getKey(), e.getValue());
+                }
+            }
+            old.providerCache.clear();
+        }
+        // instantiators carried from the old container now find their dependencies and
+        // register their components through the successor
+        old.lineage.current = successor;
+        if (old.manager != null) {
+            // without a successor manager, carried components are no longer managed
+            old.manager.handOff(carried, mgr != null ? mgr : new LifecycleManager());
+        }
+        return successor;
+    }
+
+    private InjectionContainer(@Nullable InjectionContainer par, Set<DAGNode<Component, Dependency>> inherited,
+                               CachePolicy dft, LifecycleManager mgr, @Nullable Lineage lin) {
+        parent = par;
+        lineage = lin != null ? lin : new Lineage(this);
+        inheritedNodes = inherited;
         defaultCachePolicy = dft;
         providerCache = new WeakHashMap<DAGNode<Component, Dependency>, Instantiator>();
         manager = mgr;
+        instrumentation = mgr != null ? mgr.getInstrumentation() : Instrumentations.none();
+        memoListener = new Instantiators.MemoListener() {
+            @Override
+            public void memoizedInstanceRequested(Class<?> type, boolean hit) {
+                instrumentation.memoizedInstanceRequested(type, hit);
+            }
+        };
+        scopedManager = new ScopedLifecycleManager(instrumentation);
     }
 
     /**
@@ -109,24 +207,58 @@ public class InjectionContainer {
      */
     public Instantiator makeInstantiator(DAGNode<Component, Dependency> node,
                                          SetMultimap<DAGNode<Component, Dependency>, DAGEdge<Component, Dependency>> backEdges) {
+        if (parent != null && inheritedNodes.contains(node)) {
+            return parent.makeInstantiator(node, backEdges);
+        }
+
         Instantiator cached;
         synchronized (providerCache) {
             cached = providerCache.get(node);
         }
         if (cached == null) {
             logger.debug("Node has not been memoized, instantiating: {}", node.getLabel());
+            long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
 
             Map<Desire, Instantiator> depMap = makeDependencyMap(node, backEdges);
 
-            Instantiator raw = node.getLabel().getSatisfaction().makeInstantiator(depMap, manager);
-
             CachePolicy policy = node.getLabel().getCachePolicy();
             if (policy.equals(CachePolicy.NO_PREFERENCE)) {
                 policy = defaultCachePolicy;
             }
-            if (policy.equals(CachePolicy.MEMOIZE)) {
+
+            // scoped components are torn down with their scope, not the container
+            LifecycleManager lm;
+            if (policy.equals(CachePolicy.SCOPED)) {
+                lm = scopedManager;
+            } else if (manager != null) {
+                lm = new OwnedLifecycleManager(lineage, node, policy);
+            } else {
+                lm = null;
+            }
+            Instantiator raw;
+            DAGNode<Component, Dependency> captured = null;
+            if (policy.equals(CachePolicy.MEMOIZE) || policy.equals(CachePolicy.SOFT_MEMOIZE)) {
+                captured = findCapturedScopedNode(node);
+            }
+            Class<?> type = captured == null ? null : node.getLabel().getSatisfaction().getErasedType();
+            if (captured != null && !Provider.class.equals(type)) {
+                // the memoized instance would keep the first scope's instance forever
+                raw = new RejectedInstantiator(type, "memoized component " + type.getName()
+                                                     + " depends on scoped component "
+                                                     + captured.getLabel().getSatisfaction().getErasedType().getName()
+                                                     + "; inject a Provider for it instead");
+            } else {
+                raw = node.getLabel().getSatisfaction().makeInstantiator(depMap, lm);
+            }
+
+            if (policy.equals(CachePolicy.MEMOIZE) || policy.equals(CachePolicy.SOFT_MEMOIZE)) {
                 // enforce memoization on providers for MEMOIZE policy
-                cached = Instantiators.memoize(raw);
+                boolean soft = policy.equals(CachePolicy.SOFT_MEMOIZE);
+                // the memoizer reports hits and misses, since only it knows which request created the instance
+                Instantiators.MemoListener listener = instrumentation.isEnabled() ? memoListener : null;
+                cached = soft ? Instantiators.softMemoize(raw, listener) : Instantiators.memoize(raw, listener);
+            } else if (policy.equals(CachePolicy.SCOPED)) {
+                cached = new ScopedInstantiator(raw, allocateScopeSlot());
             } else {
                 // Satisfaction.makeInstantiator() returns providers that are expected
                 // to create new instances with each invocation
@@ -141,6 +273,9 @@ public class InjectionContainer {
                     cached = providerCache.get(node);
                 }
             }
+            if (instrumentation.isEnabled()) {
+                instrumentation.instantiatorBuilt(node, System.nanoTime() - start);
+            }
         }
         return cached;
     }
@@ -161,6 +296,102 @@ public class InjectionContainer {
         return Maps.asMap(desires.build(), new DepLookup(edges, backEdges));
     }
 
+    /**
+     * Get the cache policy with which a node will be instantiated.
+     */
+    private CachePolicy getEffectivePolicy(DAGNode<Component, Dependency> node) {
+        if (parent != null && inheritedNodes.contains(node)) {
+            return parent.getEffectivePolicy(node);
+        }
+        CachePolicy policy = node.getLabel().getCachePolicy();
+        return policy.equals(CachePolicy.NO_PREFERENCE) ? defaultCachePolicy : policy;
+    }
+
+    /**
+     * Find a scoped node that a memoized node would capture, by depending on it other than
+     * through an injected {@link Provider}.  The search does not descend into other memoized
+     * nodes, since they are checked when their own instantiators are built.  Injected providers
+     * capture nothing, since they instantiate their component on each request; the caller must
+     * exempt them.
+     *
+     * @param node The memoized node.
+     * @return A scoped node reachable from {@code node}, or {@code null} if there is none.
+     */
+    @Nullable
+    private DAGNode<Component, Dependency> findCapturedScopedNode(DAGNode<Component, Dependency> node) {
+        Set<DAGNode<Component, Dependency>> seen = Sets.newHashSet();
+        Deque<DAGNode<Component, Dependency>> work = new ArrayDeque<DAGNode<Component, Dependency>>();
+        work.push(node);
+        while (!work.isEmpty()) {
+            for (DAGEdge<Component, Dependency> edge: work.pop().getOutgoingEdges()) {
+                if (Provider.class.equals(edge.getLabel().getInitialDesire().getDesiredType())) {
+                    continue;
+                }
+                DAGNode<Component, Dependency> tail = edge.getTail();
+                if (!seen.add(tail)) {
+                    continue;
+                }
+                CachePolicy policy = getEffectivePolicy(tail);
+                if (policy.equals(CachePolicy.SCOPED)) {
+                    return tail;
+                } else if (policy.equals(CachePolicy.NEW_INSTANCE)) {
+                    work.push(tail);
+                }
+            }
+        }
+        return null;
+    }
+
+    private int allocateScopeSlot() {
+        // slots are shared by a container and its children, so scopes can hold inherited components
+        if (parent != null) {
+            return parent.allocateScopeSlot();
+        }
+        synchronized (lineage) {
+            return lineage.scopeSlotCount++;
+        }
+    }
+
+    /**
+     * Query whether this container is the same as, or a descendant of, another container (or a
+     * container that replaced it).
+     */
+    private boolean isWithin(InjectionContainer ctr) {
+        for (InjectionContainer c = this; c != null; c = c.parent) {
+            if (c.lineage == ctr.lineage) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Open a new injection scope on this container.  Components with the {@link CachePolicy#SCOPED}
+     * policy are memoized within the scope and torn down when it is closed.
+     *
+     * @return The new scope.
+     * @since 0.11
+     */
+    public InjectionScope openScope() {
+        return new InjectionScope(this);
+    }
+
+    /**
+     * Get the default cache policy for this container.
+     * @return The policy used for nodes with a cache policy of {@link CachePolicy#NO_PREFERENCE}.
+     * @since 0.11
+     */
+    public CachePolicy getDefaultCachePolicy() {
+        return defaultCachePolicy;
+    }
+
+    /**
+     * Get the instrumentation for this container, from its lifecycle manager.
+     */
+    Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
     /**
      * Get the lifecycle manager for this container.
      * @return The lifecycle manager for the container.
@@ -193,10 +424,125 @@ public class InjectionContainer {
         public Instantiator apply(@Nullable Desire input) {
             for (DAGEdge<Component,Dependency> edge: edges) {
                 if (edge.getLabel().getInitialDesire().equals(input)) {
-                    return makeInstantiator(edge.getTail(), backEdges);
+                    // go through the lineage, so instantiators carried into a successor
+                    // container look up their dependencies there
+                    return lineage.current.makeInstantiator(edge.getTail(), backEdges);
                 }
             }
             return null;
         }
     }
+
+    /**
+     * Instantiator for {@link CachePolicy#SCOPED} components, memoizing in a slot of the active scope.
+     */
+    private class ScopedInstantiator implements Instantiator {
+        private final Instantiator delegate;
+        private final int slot;
+
+        public ScopedInstantiator(Instantiator inst, int idx) {
+            delegate = inst;
+            slot = idx;
+        }
+
+        @Override
+        public Object instantiate() throws ConstructionException {
+            InjectionScope scope = InjectionScope.getActiveScope();
+            if (scope == null || !scope.getContainer().isWithin(InjectionContainer.this)) {
+                throw new ConstructionException(getType(), "scoped component requested outside of an injection scope", null);
+            }
+            return scope.getOrCreate(slot, delegate);
+        }
+
+        @Override
+        public Class<?> getType() {
+            return delegate.getType();
+        }
+    }
+
+    /**
+     * Instantiator for a component whose configuration was rejected when its instantiator was built.
+     */
+    private static class RejectedInstantiator implements Instantiator {
+        private final Class<?> type;
+        private final String message;
+
+        public RejectedInstantiator(Class<?> type, String msg) {
+            this.type = type;
+            message = msg;
+        }
+
+        @Override
+        public Object instantiate() throws ConstructionException {
+            throw new ConstructionException(type, message, null);
+        }
+
+        @Override
+        public Class<?> getType() {
+            return type;
+        }
+    }
+
+    /**
+     * Lifecycle manager that registers components with the current container's manager on behalf
+     * of the node that instantiated them, so they can be carried over by
+     * {@link #createSuccessor(InjectionContainer, Set, CachePolicy, LifecycleManager)}.
+     */
+    private static class OwnedLifecycleManager extends LifecycleManager {
+        private final Lineage lineage;
+        private final DAGNode<Component, Dependency> owner;
+        private final CachePolicy policy;
+
+        public OwnedLifecycleManager(Lineage lin, DAGNode<Component, Dependency> node, CachePolicy pol) {
+            super(lin.current.instrumentation);
+            lineage = lin;
+            owner = node;
+            policy = pol;
+        }
+
+        @Override
+        public void registerComponent(Object instance) {
+            LifecycleManager delegate = lineage.current.manager;
+            if (delegate == null) {
+                // carried into a container without a lifecycle manager
+                return;
+            }
+            if (policy.equals(CachePolicy.SOFT_MEMOIZE)) {
+                delegate.registerReclaimableComponent(instance, owner);
+            } else if (policy.equals(CachePolicy.NEW_INSTANCE)) {
+                delegate.registerPrototype(instance, owner);
+            } else {
+                delegate.registerComponent(instance, owner);
+            }
+        }
+    }
+
+    /**
+     * State shared by a container and the containers that succeed it by reconfiguration.
+     */
+    private static class Lineage {
+        volatile InjectionContainer current;
+        int scopeSlotCount;
+
+        public Lineage(InjectionContainer ctr) {
+            current = ctr;
+        }
+    }
+
+    /**
+     * Lifecycle manager that registers components with the active scope's lifecycle manager.
+     */
+    private static class ScopedLifecycleManager extends LifecycleManager {
+        public ScopedLifecycleManager(Instrumentation instr) {
+            super(instr);
+        }
+
+        @Override
+        public void registerComponent(Object instance) {
+            InjectionScope scope = InjectionScope.getActiveScope();
+            // scoped instantiators only run with an active scope
+            assert scope != null;
+            scope.getLifecycleManager().registerComponent(instance);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+/**
+ * A unit of work within an {@link InjectionContainer}.  Components with a cache policy of
+ * {@link CachePolicy#SCOPED} are memoized once per scope rather than once per container.  Each
+ * scoped node in the container's graph is assigned a slot index, so a scope just stores its
+ * instances in a compact array indexed by slot.
+ *
+ * <p>Scoped components are instantiated in whatever scope is <em>active</em> on the current
+ * thread; see {@link #instantiate(Instantiator)}.  Closing the scope tears down the components
+ * it created, leaving the rest of the container untouched.  A memoized component that needs a
+ * scoped component must inject a {@link javax.inject.Provider} for it; otherwise it would keep
+ * the instance from the first scope it was created in, so its container refuses to build it.
+ *
+ * @since 0.11
+ * @author <a href="http://www.grouplens.org">GroupLens Research</a>
+ */
+@ThreadSafe
+public class InjectionScope implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InjectionScope.class);
+    private static final ThreadLocal<InjectionScope> activeScope = new ThreadLocal<InjectionScope>();
+    /**
+     * Marker for an empty slot, since {@code null} is a legitimate component instance.
+     */
+    private static final Object EMPTY = new Object();
+
+    private final InjectionContainer container;
+    private final LifecycleManager manager;
+    private Object[] slots;
+    private boolean closed;
+
+    InjectionScope(InjectionContainer ctr) {
+        container = ctr;
+        manager = new LifecycleManager(ctr.getInstrumentation());
+        slots = new Object[0];
+    }
+
+    /**
+     * Get the scope active on the current thread.
+     * @return The active scope, or {@code null} if no scope is active.
+     */
+    @Nullable
+    public static InjectionScope getActiveScope() {
+        return activeScope.get();
+    }
+
+    /**
+     * Get the container this scope belongs to.
+     * @return The scope's container.
+     */
+    public InjectionContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Get the lifecycle manager for components created in this scope.
+     * @return The scope's lifecycle manager.
+     */
+    public LifecycleManager getLifecycleManager() {
+        return manager;
+    }
+
+    /**
+     * Invoke an instantiator with this scope active on the current thread.  Any scoped component
+     * instantiated (directly or as a dependency) is memoized in this scope.
+     *
+     * @param itor The instantiator to invoke.
+     * @return The instantiated object.
+     * @throws ConstructionException if there is an error instantiating the object, or a scoped
+     *                               component is requested after the scope has been closed.
+     */
+    public Object instantiate(Instantiator itor) throws ConstructionException {
+        InjectionScope previous = activeScope.get();
+        activeScope.set(this);
+        try {
+            return itor.instantiate();
+        } finally {
+            if (previous == null) {
+                activeScope.remove();
+            } else {
+                activeScope.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Get the instance in a slot, instantiating it if necessary.  The instantiator runs without
+     * holding the scope's lock, so slow components do not block other slots; if two threads race
+     * to fill the same slot, the first instance published wins and is returned to both (the other
+     * instance is still torn down with the scope).
+     *
+     * @param slot The slot index.
+     * @param itor The instantiator to fill the slot.
+     * @return The slot's instance.
+     * @throws ConstructionException if there is an error instantiating the object, or the scope
+     *                               has been closed.
+     */
+    Object getOrCreate(int slot, Instantiator itor) throws ConstructionException {
+        Object instance = getSlot(slot, itor);
+        if (instance != EMPTY) {
+            return instance;
+        }
+
+        logger.debug("instantiating {} for scope slot {}", itor.getType(), slot);
+        instance = itor.instantiate();
+        synchronized (this) {
+            Object current = getSlot(slot, itor);
+            if (current != EMPTY) {
+                logger.debug("scope slot {} filled concurrently, discarding new instance", slot);
+                return current;
+            }
+            slots[slot] = instance;
+        }
+        return instance;
+    }
+
+    /**
+     * Get the current contents of a slot, growing the slot array if necessary.
+     * @return The slot's instance, or {@link #EMPTY} if it has not been filled.
+     * @throws ConstructionException if the scope has been closed.
+     */
+    private synchronized Object getSlot(int slot, Instantiator itor) throws ConstructionException {
+        if (closed) {
+            throw new ConstructionException(itor.getType(), "injection scope is closed", null);
+        }
+        if (slot >= slots.length) {
+            int oldLength = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, oldLength * 2));
+            Arrays.fill(slots, oldLength, slots.length, EMPTY);
+        }
+        return slots[slot];
+    }
+
+    /**
+     * Close the scope, tearing down all components created within it.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            slots = null;
+        }
+        manager.close();
+    }
+}
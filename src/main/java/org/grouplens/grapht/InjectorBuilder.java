@@ -25,10 +25,17 @@ import org.grouplens.grapht.solver.DefaultDesireBindingFunction;
 import org.grouplens.grapht.solver.DefaultInjector;
 import org.grouplens.grapht.solver.ProviderBindingFunction;
 import org.grouplens.grapht.context.ContextPattern;
+import org.grouplens.grapht.metrics.ComponentMetrics;
 import org.grouplens.grapht.util.ClassLoaders;
+import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
 import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -44,10 +51,17 @@ import java.lang.annotation.Annotation;
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public class InjectorBuilder extends AbstractContext {
+    private static final Logger logger = LoggerFactory.getLogger(InjectorBuilder.class);
     private final ClassLoader classLoader;
     private final BindingFunctionBuilder builder;
     private CachePolicy cachePolicy;
     private boolean enableProviderInjection;
+    private boolean enableDefaultsIndex;
+    private Instrumentation instrumentation;
+    private boolean enableMetrics;
+    private int teardownThreads = 1;
+    private PrototypeTracking prototypeTracking = PrototypeTracking.RETAIN;
+    private long teardownTimeout;
 
     /**
      * Create a new injector builder.
@@ -58,6 +72,9 @@ public class InjectorBuilder extends AbstractContext {
         builder = bld;
         cachePolicy = CachePolicy.MEMOIZE;
         enableProviderInjection = false;
+        enableDefaultsIndex = false;
+        instrumentation = Instrumentations.none();
+        enableMetrics = false;
     }
 
     /**
@@ -128,6 +145,89 @@ public class InjectorBuilder extends AbstractContext {
         enableProviderInjection = enable;
         return this;
     }
+
+    /**
+     * Set whether to index the {@code META-INF/grapht/defaults} directories of the class path
+     * up front instead of looking up defaults for each type as it is resolved.
+     *
+     * @param enable True if the injector should index defaults files
+     * @return This builder
+     * @see DefaultDesireBindingFunction#create(ClassLoader, boolean)
+     * @since 0.11
+     */
+    public InjectorBuilder setDefaultsIndexEnabled(boolean enable) {
+        enableDefaultsIndex = enable;
+        return this;
+    }
+    
+    /**
+     * Set the instrumentation that injectors created by this builder report their work to.
+     * The default is {@link Instrumentations#none()}.
+     *
+     * @param instr The instrumentation
+     * @return This builder
+     * @since 0.11
+     */
+    public InjectorBuilder setInstrumentation(Instrumentation instr) {
+        Preconditions.notNull("instrumentation", instr);
+        instrumentation = instr;
+        return this;
+    }
+    
+    /**
+     * Set whether injectors created by this builder collect per-component metrics.  Each such
+     * injector registers a {@link ComponentMetrics} MBean with the platform MBean server, which is
+     * unregistered when the injector is closed.  Child and reconfigured injectors report to the
+     * metrics of the injector they were derived from.
+     *
+     * @param enable True if the injector should collect metrics
+     * @return This builder
+     * @see ComponentMetrics#register()
+     * @since 0.11
+     */
+    public InjectorBuilder setMetricsEnabled(boolean enable) {
+        enableMetrics = enable;
+        return this;
+    }
+    
+    /**
+     * Set injectors created by this builder to tear their components down in parallel, in
+     * reverse dependency order, when they are closed.  Child and reconfigured injectors use the
+     * same settings.
+     *
+     * @param threads The maximum number of components to tear down at once.
+     * @param timeout How long closing the injector waits for teardown to finish.
+     * @param unit The unit of {@code timeout}.
+     * @return This builder
+     * @see LifecycleManager#setParallelTeardown(int, long, TimeUnit)
+     * @since 0.11
+     */
+    public InjectorBuilder setParallelTeardown(int threads, long timeout, TimeUnit unit) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("teardown needs at least one thread");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("teardown timeout must be positive");
+        }
+        teardownThreads = threads;
+        teardownTimeout = unit.toNanos(timeout);
+        return this;
+    }
+    
+    /**
+     * Set how injectors created by this builder track components with the
+     * {@link CachePolicy#NEW_INSTANCE} policy for teardown.  The default,
+     * {@link PrototypeTracking#RETAIN}, keeps every such component until the injector is closed.
+     *
+     * @param tracking The tracking mode.
+     * @return This builder
+     * @since 0.11
+     */
+    public InjectorBuilder setPrototypeTracking(PrototypeTracking tracking) {
+        Preconditions.notNull("prototype tracking", tracking);
+        prototypeTracking = tracking;
+        return this;
+    }
     
     @Override
     public <T> Binding<T> bind(Class<T> type) {
@@ -187,6 +287,47 @@ public class InjectorBuilder extends AbstractContext {
     }
 
     public Injector build() {
+        ComponentMetrics metrics = enableMetrics ? new ComponentMetrics() : null;
+        Instrumentation instr = instrumentation;
+        if (metrics != null) {
+            instr = Instrumentations.compose(instrumentation, metrics);
+        }
+        DefaultInjector injector = new DefaultInjector(cachePolicy, 100, instr, makeBindingFunctions());
+        injector.getLifecycleManager().setPrototypeTracking(prototypeTracking);
+        if (teardownThreads > 1) {
+            injector.getLifecycleManager().setParallelTeardown(teardownThreads, teardownTimeout,
+                                                               TimeUnit.NANOSECONDS);
+        }
+        if (metrics != null) {
+            try {
+                // the lifecycle manager unregisters the metrics when the injector is closed
+                injector.getLifecycleManager().registerComponent(metrics.register());
+            } catch (JMException e) {
+                logger.warn("could not register component metrics", e);
+            }
+        }
+        return injector;
+    }
+
+    /**
+     * Reconfigure an injector with this builder's bindings.  Components whose dependency
+     * subgraphs are unaffected by the new bindings keep their existing instances; the rest are
+     * shut down and re-created on demand.  See {@link DefaultInjector#reconfigure}.
+     *
+     * @param old The injector to reconfigure (must have been built by an {@link InjectorBuilder}).
+     *            It must not be used after this method returns.
+     * @return The reconfigured injector.
+     * @throws ResolutionException if there is an error resolving the new configuration.
+     * @since 0.11
+     */
+    public Injector reconfigure(Injector old) throws ResolutionException {
+        if (!(old instanceof DefaultInjector)) {
+            throw new IllegalArgumentException("injector " + old + " does not support reconfiguration");
+        }
+        return ((DefaultInjector) old).reconfigure(cachePolicy, makeBindingFunctions());
+    }
+
+    private BindingFunction[] makeBindingFunctions() {
         BindingFunction[] functions;
         if (enableProviderInjection) {
             functions = new BindingFunction[] { 
@@ -194,17 +335,37 @@ public class InjectorBuilder extends AbstractContext {
                 builder.build(RuleSet.INTERMEDIATE_TYPES),
                 builder.build(RuleSet.SUPER_TYPES),
                 new ProviderBindingFunction(), // insert extra provider injection
-                DefaultDesireBindingFunction.create(classLoader)
+                DefaultDesireBindingFunction.create(classLoader, enableDefaultsIndex)
             };
         } else {
             functions = new BindingFunction[] { 
                 builder.build(RuleSet.EXPLICIT),
                 builder.build(RuleSet.INTERMEDIATE_TYPES),
                 builder.build(RuleSet.SUPER_TYPES),
-                DefaultDesireBindingFunction.create(classLoader)
+                DefaultDesireBindingFunction.create(classLoader, enableDefaultsIndex)
             };
         }
-        
-        return new DefaultInjector(cachePolicy, 100, functions);
+        return functions;
+    }
+
+    /**
+     * Build a child injector that overlays this builder's bindings on a parent injector.  The
+     * child shares the parent's resolved graph and memoized components, re-resolving only the
+     * dependencies affected by this builder's bindings; see {@link DefaultInjector#createChild}.
+     * The parent's default and provider-injection bindings remain in effect, so this builder's
+     * cache policy and provider injection settings are ignored.
+     *
+     * @param parent The parent injector (must have been built by an {@link InjectorBuilder}).
+     * @return The child injector.
+     * @throws ResolutionException if there is an error re-resolving the affected dependencies.
+     * @since 0.11
+     */
+    public Injector buildChild(Injector parent) throws ResolutionException {
+        if (!(parent instanceof DefaultInjector)) {
+            throw new IllegalArgumentException("parent injector " + parent + " does not support children");
+        }
+        return ((DefaultInjector) parent).createChild(builder.build(RuleSet.EXPLICIT),
+                                                      builder.build(RuleSet.INTERMEDIATE_TYPES),
+                                                      builder.build(RuleSet.SUPER_TYPES));
     }
 }
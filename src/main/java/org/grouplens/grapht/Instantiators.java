@@ -21,13 +21,15 @@ package org.grouplens.grapht;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
-import org.grouplens.grapht.util.LogContext;
+import org.grouplens.grapht.util.DiagnosticContext;
 import org.grouplens.grapht.util.TypedProvider;
 import org.grouplens.grapht.util.Types;
+import javax.annotation.Nullable;
 import javax.inject.Provider;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
-import org.grouplens.grapht.util.LogContext;
+
+import java.lang.ref.SoftReference;
 
 /**
  * Utilities and methods for building and working with {@link org.grouplens.grapht.Instantiator}s.
@@ -110,9 +112,56 @@ public final class Instantiators {
      * @return An instantiator that memoizes {@code instantiator}.
      */
     public static Instantiator memoize(Instantiator instantiator) {
+        return memoize(instantiator, null);
+    }
+
+    /**
+     * Memoize an instantiator, reporting each request to a listener.
+     * @param instantiator The instantiator to memoize.
+     * @param listener The listener, or {@code null} for no listener.
+     * @return An instantiator that memoizes {@code instantiator}.
+     */
+    static Instantiator memoize(Instantiator instantiator, @Nullable MemoListener listener) {
+        Preconditions.checkNotNull(instantiator, "instantiator");
+        return new MemoizingInstantiator(instantiator, listener);
+    }
+
+    /**
+     * Create a memoizing instantiator that only holds its memoized instance through a soft
+     * reference.  If the instance is reclaimed, the next call re-instantiates it.
+     *
+     * @param instantiator The instantiator to memoize.
+     * @return An instantiator that softly memoizes {@code instantiator}.
+     * @see CachePolicy#SOFT_MEMOIZE
+     */
+    public static Instantiator softMemoize(Instantiator instantiator) {
+        return softMemoize(instantiator, null);
+    }
+
+    /**
+     * Softly memoize an instantiator, reporting each request to a listener.
+     * @param instantiator The instantiator to memoize.
+     * @param listener The listener, or {@code null} for no listener.
+     * @return An instantiator that softly memoizes {@code instantiator}.
+     */
+    static Instantiator softMemoize(Instantiator instantiator, @Nullable MemoListener listener) {
         Preconditions.checkNotNull(instantiator, "instantiator");
-        return new MemoizingInstantiator(instantiator);
+        return new SoftMemoizingInstantiator(instantiator, listener);
     }
+
+    /**
+     * Listener for requests to memoizing instantiators.
+     */
+    interface MemoListener {
+        /**
+         * Called after a memoizing instantiator returns an instance.
+         * @param type The instantiator's type.
+         * @param hit {@code true} if the memoized instance was returned, {@code false} if the
+         *            request created it.
+         */
+        void memoizedInstanceRequested(Class<?> type, boolean hit);
+    }
+
     private static final class InstanceInstantiator implements Instantiator {
         private final Object instance;
         private final Class<?> type;
@@ -146,15 +195,18 @@ public final class Instantiators {
         @Override
         public Object instantiate() throws ConstructionException {
             Provider<?> provider = (Provider) providerInstantiator.instantiate();
-            LogContext mdcContextProvider = LogContext.create();
-            logger.trace("invoking provider {}",provider);
+            DiagnosticContext context = DiagnosticContext.get();
+            int mark = context.push("org.grouplens.grapht.currentProvider", provider);
             try {
-                mdcContextProvider.put("org.grouplens.grapht.currentProvider", provider.toString());
+                if (logger.isTraceEnabled()) {
+                    context.exportToMDC();
+                    logger.trace("invoking provider {}", provider);
+                }
                 return provider.get();
             } catch (Throwable th) {
                 throw new ConstructionException(getType(), "Error invoking provider " + providerInstantiator, th);
             } finally {
-                mdcContextProvider.finish();
+                context.pop(mark);
             }
         }
         @SuppressWarnings("unchecked")
@@ -167,16 +219,20 @@ public final class Instantiators {
 
     private static class MemoizingInstantiator implements Instantiator {
         private final Instantiator delegate;
+        @Nullable
+        private final MemoListener listener;
         private volatile boolean instantiated = false;
         private Object instance = null;
         private Throwable error = null;
 
-        public MemoizingInstantiator(Instantiator inst) {
+        public MemoizingInstantiator(Instantiator inst, @Nullable MemoListener l) {
             delegate = inst;
+            listener = l;
         }
 
         @Override
         public Object instantiate() throws ConstructionException {
+            boolean created = false;
             if (!instantiated) {
                 synchronized (this) {
                     if (!instantiated) {
@@ -186,6 +242,7 @@ public final class Instantiators {
                             error = th;
                         }
                         instantiated = true;
+                        created = true;
                     }
                 }
             }
@@ -195,6 +252,9 @@ public final class Instantiators {
                 // shouldn't happen, but hey.
                 throw Throwables.propagate(error);
             } else {
+                if (listener != null) {
+                    listener.memoizedInstanceRequested(getType(), !created);
+                }
                 return instance;
             }
         }
@@ -205,6 +265,60 @@ public final class Instantiators {
         }
     }
 
+    private static class SoftMemoizingInstantiator implements Instantiator {
+        /**
+         * Placeholder for memoized null instances, which cannot be held in a soft reference.
+         */
+        private static final Object NULL_INSTANCE = new Object();
+
+        private final Instantiator delegate;
+        @Nullable
+        private final MemoListener listener;
+        private SoftReference<Object> instance = null;
+        private Throwable error = null;
+
+        public SoftMemoizingInstantiator(Instantiator inst, @Nullable MemoListener l) {
+            delegate = inst;
+            listener = l;
+        }
+
+        @Override
+        public synchronized Object instantiate() throws ConstructionException {
+            if (error != null) {
+                Throwables.propagateIfPossible(error, ConstructionException.class);
+                throw Throwables.propagate(error);
+            }
+
+            Object obj = instance == null ? null : instance.get();
+            boolean created = obj == null;
+            if (obj == null) {
+                if (instance != null) {
+                    logger.debug("memoized instance of {} was reclaimed, rebuilding", delegate.getType());
+                }
+                try {
+                    obj = delegate.instantiate();
+                } catch (Throwable th) {
+                    error = th;
+                    Throwables.propagateIfPossible(th, ConstructionException.class);
+                    throw Throwables.propagate(th);
+                }
+                if (obj == null) {
+                    obj = NULL_INSTANCE;
+                }
+                instance = new SoftReference<Object>(obj);
+            }
+            if (listener != null) {
+                listener.memoizedInstanceRequested(getType(), !created);
+            }
+            return obj == NULL_INSTANCE ? null : obj;
+        }
+
+        @Override
+        public Class getType() {
+            return delegate.getType();
+        }
+    }
+
     private static class InstantiatorProvider implements TypedProvider {
         private final Instantiator instantiator;
 
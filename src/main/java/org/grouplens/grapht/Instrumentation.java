@@ -0,0 +1,99 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.grouplens.grapht.graph.DAGNode;
+import org.grouplens.grapht.reflect.Desire;
+
+/**
+ * Hooks for observing the work done by an injector.  The dependency solver, injection container,
+ * component instantiators and lifecycle manager report each unit of work to an instrumentation
+ * object along with its duration, so that slow resolutions, constructors or teardowns can be
+ * found in production.
+ *
+ * <p>Callers only measure durations when {@link #isEnabled()} returns {@code true}, so a disabled
+ * instrumentation (such as {@link Instrumentations#none()}) costs a single method call per unit of
+ * work.  Implementations must be thread-safe, and should not throw exceptions.</p>
+ *
+ * @see Instrumentations
+ * @see InjectorBuilder#setInstrumentation(Instrumentation)
+ * @since 0.11
+ */
+public interface Instrumentation {
+    /**
+     * Query whether this instrumentation wants to receive events.
+     * @return {@code true} if the hooks should be called.
+     */
+    boolean isEnabled();
+
+    /**
+     * Record the resolution of a desire by the dependency solver.
+     *
+     * @param desire The desire.
+     * @param node The node the desire resolved to.
+     * @param nanos The time taken to resolve the desire and its dependencies, in nanoseconds.
+     */
+    void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos);
+
+    /**
+     * Record the merge of a resolved graph into the dependency solver's merge pool.
+     *
+     * @param graph The merged graph.
+     * @param nanos The time taken by the merge, in nanoseconds.
+     */
+    void graphMerged(DAGNode<Component, Dependency> graph, long nanos);
+
+    /**
+     * Record the construction of the instantiator for a graph node.
+     *
+     * @param node The node.
+     * @param nanos The time taken to build the instantiator, in nanoseconds.  This does not include
+     *              the instantiators of the node's dependencies.
+     */
+    void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos);
+
+    /**
+     * Record the construction of a component.
+     *
+     * @param type The component's class.
+     * @param nanos The time taken to construct and inject the component, in nanoseconds.  This
+     *              includes the construction of dependencies that were not already available.
+     * @param selfNanos The time taken to construct and inject the component, excluding the time
+     *                  taken to construct its dependencies.
+     */
+    void componentInstantiated(Class<?> type, long nanos, long selfNanos);
+
+    /**
+     * Record a request for a memoized component.
+     *
+     * @param type The component's type.
+     * @param hit {@code true} if the request was satisfied by an existing instance, {@code false}
+     *            if the component had to be instantiated.
+     */
+    void memoizedInstanceRequested(Class<?> type, boolean hit);
+
+    /**
+     * Record the teardown of a component.
+     *
+     * @param type The component's class.
+     * @param nanos The time taken to tear the component down, in nanoseconds.
+     */
+    void componentDestroyed(Class<?> type, long nanos);
+}
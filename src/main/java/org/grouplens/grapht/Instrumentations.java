@@ -0,0 +1,258 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.grouplens.grapht.graph.DAGNode;
+import org.grouplens.grapht.reflect.Desire;
+import org.grouplens.grapht.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilities for building and working with {@link Instrumentation}s.
+ *
+ * @since 0.11
+ */
+public final class Instrumentations {
+    private Instrumentations() {}
+
+    /**
+     * Get an instrumentation that ignores all events.  This is the default instrumentation.
+     * @return The disabled instrumentation.
+     */
+    public static Instrumentation none() {
+        return NoInstrumentation.INSTANCE;
+    }
+
+    /**
+     * Get an instrumentation that logs each event, with its duration, to the
+     * {@code org.grouplens.grapht.Instrumentation} logger.  It is only enabled if that logger
+     * has debug logging enabled.
+     *
+     * @return An instrumentation that logs events.
+     */
+    public static Instrumentation logging() {
+        return logging(LoggerFactory.getLogger(Instrumentation.class));
+    }
+
+    /**
+     * Get an instrumentation that logs each event, with its duration, to a logger at debug level.
+     *
+     * @param logger The logger.
+     * @return An instrumentation that logs events.
+     */
+    public static Instrumentation logging(Logger logger) {
+        Preconditions.notNull("logger", logger);
+        return new LoggingInstrumentation(logger);
+    }
+
+    /**
+     * Combine several instrumentations.  The combined instrumentation is enabled if any of them
+     * is enabled, and passes each event to all of the enabled ones.
+     *
+     * @param instrs The instrumentations to combine.
+     * @return An instrumentation that reports to each of {@code instrs}.
+     */
+    public static Instrumentation compose(Instrumentation... instrs) {
+        List<Instrumentation> list = new ArrayList<Instrumentation>(instrs.length);
+        for (Instrumentation instr: instrs) {
+            Preconditions.notNull("instrumentation", instr);
+            if (instr != NoInstrumentation.INSTANCE) {
+                list.add(instr);
+            }
+        }
+        switch (list.size()) {
+        case 0:
+            return none();
+        case 1:
+            return list.get(0);
+        default:
+            return new CompositeInstrumentation(list);
+        }
+    }
+
+    private static enum NoInstrumentation implements Instrumentation {
+        INSTANCE;
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos) {}
+
+        @Override
+        public void graphMerged(DAGNode<Component, Dependency> graph, long nanos) {}
+
+        @Override
+        public void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos) {}
+
+        @Override
+        public void componentInstantiated(Class<?> type, long nanos, long selfNanos) {}
+
+        @Override
+        public void memoizedInstanceRequested(Class<?> type, boolean hit) {}
+
+        @Override
+        public void componentDestroyed(Class<?> type, long nanos) {}
+
+        @Override
+        public String toString() {
+            return "Instrumentations.none()";
+        }
+    }
+
+    private static class LoggingInstrumentation implements Instrumentation {
+        private final Logger logger;
+
+        public LoggingInstrumentation(Logger log) {
+            logger = log;
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return logger.isDebugEnabled();
+        }
+
+        @Override
+        public void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos) {
+            logger.debug("resolved {} to {} in {}ms",
+                         desire, node.getLabel(), millis(nanos));
+        }
+
+        @Override
+        public void graphMerged(DAGNode<Component, Dependency> graph, long nanos) {
+            logger.debug("merged graph of {} in {}ms", graph.getLabel(), millis(nanos));
+        }
+
+        @Override
+        public void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos) {
+            logger.debug("built instantiator for {} in {}ms", node.getLabel(), millis(nanos));
+        }
+
+        @Override
+        public void componentInstantiated(Class<?> type, long nanos, long selfNanos) {
+            logger.debug("instantiated {} in {}ms ({}ms excluding dependencies)",
+                         type.getName(), millis(nanos), millis(selfNanos));
+        }
+
+        @Override
+        public void memoizedInstanceRequested(Class<?> type, boolean hit) {
+            logger.trace("memoized {} requested, hit: {}", type.getName(), hit);
+        }
+
+        @Override
+        public void componentDestroyed(Class<?> type, long nanos) {
+            logger.debug("destroyed {} in {}ms", type.getName(), millis(nanos));
+        }
+
+        @Override
+        public String toString() {
+            return "Instrumentations.logging(" + logger.getName() + ")";
+        }
+    }
+
+    private static class CompositeInstrumentation implements Instrumentation {
+        private final Instrumentation[] delegates;
+
+        public CompositeInstrumentation(List<Instrumentation> instrs) {
+            delegates = instrs.toArray(new Instrumentation[instrs.size()]);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.desireResolved(desire, node, nanos);
+                }
+            }
+        }
+
+        @Override
+        public void graphMerged(DAGNode<Component, Dependency> graph, long nanos) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.graphMerged(graph, nanos);
+                }
+            }
+        }
+
+        @Override
+        public void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.instantiatorBuilt(node, nanos);
+                }
+            }
+        }
+
+        @Override
+        public void componentInstantiated(Class<?> type, long nanos, long selfNanos) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.componentInstantiated(type, nanos, selfNanos);
+                }
+            }
+        }
+
+        @Override
+        public void memoizedInstanceRequested(Class<?> type, boolean hit) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.memoizedInstanceRequested(type, hit);
+                }
+            }
+        }
+
+        @Override
+        public void componentDestroyed(Class<?> type, long nanos) {
+            for (Instrumentation instr: delegates) {
+                if (instr.isEnabled()) {
+                    instr.componentDestroyed(type, nanos);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Instrumentations.compose" + Arrays.toString(delegates);
+        }
+    }
+}
@@ -20,20 +20,148 @@
 package org.grouplens.grapht;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.lang3.reflect.MethodUtils;
+import org.grouplens.grapht.graph.DAGNode;
+import org.grouplens.grapht.reflect.internal.InjectionIndex;
+import org.grouplens.grapht.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LifecycleManager implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(LifecycleManager.class);
-    private Deque<TeardownAction> actions = new LinkedList<TeardownAction>();
+    /**
+     * Cache of the pre-destroy methods of component classes.
+     */
+    private static final ClassValue<List<Method>> PRE_DESTROY_METHODS = new ClassValue<List<Method>>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+            InjectionIndex index = InjectionIndex.forClass(type);
+            if (index != null) {
+                return index.getPreDestroyMethods();
+            } else {
+                return Collections.unmodifiableList(MethodUtils.getMethodsListWithAnnotation(type, PreDestroy.class));
+            }
+        }
+    };
+
+    // registration order; a linked set so reclaimed components can be forgotten in constant time
+    private final Set<TeardownAction> actions = new LinkedHashSet<TeardownAction>();
+    private final ReferenceQueue<Object> reclaimed = new ReferenceQueue<Object>();
+    private final Map<Reference<?>,TeardownAction> reclaimableActions = new HashMap<Reference<?>, TeardownAction>();
+    private final Instrumentation instrumentation;
+    private int teardownThreads = 1;
+    private long teardownTimeout;
+    private PrototypeTracking prototypeTracking = PrototypeTracking.RETAIN;
+
+    /**
+     * Create a lifecycle manager without instrumentation.
+     */
+    public LifecycleManager() {
+        this(Instrumentations.none());
+    }
+
+    /**
+     * Create a lifecycle manager that reports component teardown to an instrumentation.  Component
+     * instantiators registering with the manager also report to its instrumentation.
+     *
+     * @param instr The instrumentation.
+     * @since 0.11
+     */
+    public LifecycleManager(Instrumentation instr) {
+        Preconditions.notNull("instrumentation", instr);
+        instrumentation = instr;
+    }
+
+    /**
+     * Get the instrumentation for components managed by this lifecycle manager.
+     * @return The instrumentation.
+     * @since 0.11
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Tear components down in parallel when the manager is closed.  Components registered on
+     * behalf of graph nodes are torn down in reverse dependency order: a component is only torn
+     * down once the components of all nodes that depend on its node have been torn down, and
+     * independent components are torn down at the same time.  Several teardown actions for the
+     * same node, and all unowned components, are run one after another in registration order.
+     *
+     * <p>If teardown does not finish within the timeout, {@link #close()} stops waiting, interrupts
+     * the teardown threads, and fails with a {@link TimeoutException} naming the components that
+     * were not torn down.
+     *
+     * @param threads The maximum number of components to tear down at once.  1 restores the
+     *                default sequential teardown.
+     * @param timeout How long {@link #close()} waits for teardown to finish.
+     * @param unit The unit of {@code timeout}.
+     * @since 0.11
+     */
+    public void setParallelTeardown(int threads, long timeout, TimeUnit unit) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("teardown needs at least one thread");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("teardown timeout must be positive");
+        }
+        teardownThreads = threads;
+        teardownTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Get the number of threads used to tear down components.
+     * @return The number of teardown threads; 1 if components are torn down sequentially.
+     * @see #setParallelTeardown(int, long, TimeUnit)
+     * @since 0.11
+     */
+    public int getTeardownThreads() {
+        return teardownThreads;
+    }
+
+    /**
+     * Get the timeout for parallel teardown.
+     * @param unit The unit in which to return the timeout.
+     * @return The teardown timeout, or 0 if components are torn down sequentially.
+     * @see #setParallelTeardown(int, long, TimeUnit)
+     * @since 0.11
+     */
+    public long getTeardownTimeout(TimeUnit unit) {
+        return unit.convert(teardownTimeout, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Set how components with the {@link CachePolicy#NEW_INSTANCE} policy are tracked.
+     * @param tracking The tracking mode.
+     * @since 0.11
+     */
+    public void setPrototypeTracking(PrototypeTracking tracking) {
+        Preconditions.notNull("prototype tracking", tracking);
+        prototypeTracking = tracking;
+    }
+
+    /**
+     * Get how components with the {@link CachePolicy#NEW_INSTANCE} policy are tracked.
+     * @return The tracking mode.
+     * @since 0.11
+     */
+    public PrototypeTracking getPrototypeTracking() {
+        return prototypeTracking;
+    }
 
     /**
      * Register a component with the lifecycle manager.  The component will be torn down when the lifecycle manager
@@ -42,15 +170,130 @@ public class LifecycleManager implements AutoCloseable {
      * @param instance The component to register.
      */
     public void registerComponent(Object instance) {
+        registerComponent(instance, null);
+    }
+
+    /**
+     * Register a component on behalf of an owner (such as the graph node that instantiated it).
+     * Owners allow a subset of the managed components to be retained by {@link #handOff(Set, LifecycleManager)}.
+     *
+     * @param instance The component to register.
+     * @param owner The component's owner, or {@code null} if it is unowned.
+     */
+    synchronized void registerComponent(Object instance, @Nullable Object owner) {
         if (instance == null) {
             return;
         }
 
+        forgetReclaimed();
         if (instance instanceof AutoCloseable) {
-            actions.add(new CloseAction((AutoCloseable) instance));
+            actions.add(new CloseAction((AutoCloseable) instance, owner));
+        }
+        for (Method m: getPreDestroyMethods(instance.getClass())) {
+            actions.add(new PreDestroyAction(instance, m, owner));
         }
-        for (Method m: MethodUtils.getMethodsListWithAnnotation(instance.getClass(), PreDestroy.class)) {
-            actions.add(new PreDestroyAction(instance, m));
+    }
+
+    /**
+     * Register a component that may be reclaimed by the garbage collector.  The lifecycle manager
+     * only holds the component through a soft reference, so it does not keep the component alive;
+     * if the component is still alive when the manager is closed, it is torn down as usual.
+     * Components reclaimed before then are <em>not</em> torn down.
+     *
+     * @param instance The component to register.
+     * @param owner The component's owner, or {@code null} if it is unowned.
+     * @see CachePolicy#SOFT_MEMOIZE
+     */
+    void registerReclaimableComponent(Object instance, @Nullable Object owner) {
+        if (instance == null) {
+            return;
+        }
+        if (instance instanceof AutoCloseable || !getPreDestroyMethods(instance.getClass()).isEmpty()) {
+            registerReference(new SoftReference<Object>(instance, reclaimed), instance.getClass(), owner);
+        }
+    }
+
+    /**
+     * Register a component with the {@link CachePolicy#NEW_INSTANCE} policy, tracking it as
+     * configured by {@link #setPrototypeTracking(PrototypeTracking)}.
+     *
+     * @param instance The component to register.
+     * @param owner The component's owner, or {@code null} if it is unowned.
+     */
+    void registerPrototype(Object instance, @Nullable Object owner) {
+        if (instance == null) {
+            return;
+        }
+        if (prototypeTracking == PrototypeTracking.RETAIN) {
+            registerComponent(instance, owner);
+            return;
+        }
+
+        if (prototypeTracking == PrototypeTracking.SCOPE) {
+            InjectionScope scope = InjectionScope.getActiveScope();
+            if (scope != null) {
+                scope.getLifecycleManager().registerComponent(instance);
+                return;
+            }
+        }
+        if (instance instanceof AutoCloseable || !getPreDestroyMethods(instance.getClass()).isEmpty()) {
+            registerReference(newWeakReference(instance, reclaimed), instance.getClass(), owner);
+        }
+    }
+
+    /**
+     * Create the weak reference that tracks a component.  Tests override this to observe the
+     * references and simulate their collection.
+     *
+     * @param instance The component.
+     * @param queue The queue to register the reference with.
+     * @return A weak reference to {@code instance}.
+     */
+    Reference<Object> newWeakReference(Object instance, ReferenceQueue<Object> queue) {
+        return new WeakReference<Object>(instance, queue);
+    }
+
+    /**
+     * Get the number of teardown actions this manager holds, after forgetting reclaimed components.
+     * @return The number of teardown actions.
+     */
+    synchronized int getActionCount() {
+        forgetReclaimed();
+        return actions.size();
+    }
+
+    /**
+     * Get the owners of the components this manager holds.
+     * @return The set of (non-null) component owners.
+     */
+    synchronized Set<Object> getOwners() {
+        forgetReclaimed();
+        Set<Object> owners = new HashSet<Object>();
+        for (TeardownAction action: actions) {
+            if (action.getOwner() != null) {
+                owners.add(action.getOwner());
+            }
+        }
+        return owners;
+    }
+
+    private synchronized void registerReference(Reference<Object> ref, Class<?> type, @Nullable Object owner) {
+        forgetReclaimed();
+        TeardownAction action = new ReclaimableAction(ref, type, owner);
+        actions.add(action);
+        reclaimableActions.put(ref, action);
+    }
+
+    /**
+     * Forget components that have been reclaimed by the garbage collector.
+     */
+    private void forgetReclaimed() {
+        Reference<?> ref;
+        while ((ref = reclaimed.poll()) != null) {
+            TeardownAction action = reclaimableActions.remove(ref);
+            if (action != null) {
+                actions.remove(action);
+            }
         }
     }
 
@@ -58,22 +301,273 @@ public class LifecycleManager implements AutoCloseable {
      * Close the lifecycle manager, shutting down all components it manages.
      */
     @Override
-    public void close() {
+    public synchronized void close() {
         Throwable error = null;
+        forgetReclaimed();
+        reclaimableActions.clear();
+        if (teardownThreads > 1 && actions.size() > 1) {
+            List<TeardownAction> toDestroy = new ArrayList<TeardownAction>(actions);
+            actions.clear();
+            error = new ParallelTeardown(toDestroy).run();
+        }
         while (!actions.isEmpty()) {
-            TeardownAction action = actions.removeFirst();
+            Iterator<TeardownAction> iter = actions.iterator();
+            TeardownAction action = iter.next();
+            iter.remove();
+            error = destroy(action, error);
+        }
+        if (error != null) {
+            throw Throwables.propagate(error);
+        }
+    }
+
+    /**
+     * Hand this manager's components over to a successor, shutting down those whose owners are
+     * not in a set of retained owners.  Components of retained owners, and unowned components,
+     * are moved to the successor and will be shut down when it is closed; this manager is left
+     * empty.  This is used when an injector is reconfigured.
+     *
+     * @param retained The owners whose components should be retained.
+     * @param successor The manager to take over the retained components.
+     */
+    synchronized void handOff(Set<?> retained, LifecycleManager successor) {
+        Throwable error = null;
+        forgetReclaimed();
+        reclaimableActions.clear();
+        List<TeardownAction> moved = new ArrayList<TeardownAction>();
+        Iterator<TeardownAction> iter = actions.iterator();
+        while (iter.hasNext()) {
+            TeardownAction action = iter.next();
+            iter.remove();
+            Object owner = action.getOwner();
+            if (owner != null && !retained.contains(owner)) {
+                error = destroy(action, error);
+            } else {
+                moved.add(action);
+            }
+        }
+        successor.adopt(moved);
+        if (error != null) {
+            throw Throwables.propagate(error);
+        }
+    }
+
+    /**
+     * Take over teardown actions from another manager.  Actions on reclaimable components are
+     * re-registered against this manager's reference queue.
+     */
+    private synchronized void adopt(List<TeardownAction> moved) {
+        forgetReclaimed();
+        for (TeardownAction action: moved) {
+            if (action instanceof ReclaimableAction) {
+                ReclaimableAction ra = (ReclaimableAction) action;
+                Object inst = ra.instance.get();
+                if (inst != null) {
+                    Reference<Object> ref;
+                    if (ra.instance instanceof SoftReference) {
+                        ref = new SoftReference<Object>(inst, reclaimed);
+                    } else {
+                        ref = newWeakReference(inst, reclaimed);
+                    }
+                    registerReference(ref, ra.type, ra.owner);
+                }
+            } else {
+                actions.add(action);
+            }
+        }
+    }
+
+    /**
+     * Get the pre-destroy methods of a class, from its injection index if it has one.  The
+     * methods are computed once per class.
+     */
+    private static List<Method> getPreDestroyMethods(Class<?> type) {
+        return PRE_DESTROY_METHODS.get(type);
+    }
+
+    /**
+     * Run a teardown action, accumulating any error it throws.
+     * @param action The action.
+     * @param error The error accumulated so far, or {@code null}.
+     * @return The accumulated error, or {@code null} if there has been no error.
+     */
+    private Throwable destroy(TeardownAction action, Throwable error) {
+        long start = instrumentation.isEnabled() ? System.nanoTime() : 0;
+        try {
+            action.destroy();
+            if (instrumentation.isEnabled()) {
+                instrumentation.componentDestroyed(action.getComponentType(), System.nanoTime() - start);
+            }
+        } catch (Throwable th) {
+            if (error == null) {
+                error = th;
+            } else {
+                error.addSuppressed(th);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Tears down a set of components in parallel, in reverse dependency order.
+     */
+    private class ParallelTeardown {
+        private final List<TeardownGroup> groups;
+        private final ExecutorService executor;
+        private final CountDownLatch done;
+        private final Queue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+
+        ParallelTeardown(List<TeardownAction> toDestroy) {
+            // group the actions by owner, keeping registration order within each group
+            Map<Object,TeardownGroup> byOwner = new LinkedHashMap<Object, TeardownGroup>();
+            for (TeardownAction action: toDestroy) {
+                TeardownGroup group = byOwner.get(action.getOwner());
+                if (group == null) {
+                    group = new TeardownGroup(action.getOwner());
+                    byOwner.put(action.getOwner(), group);
+                }
+                group.actions.add(action);
+            }
+            groups = new ArrayList<TeardownGroup>(byOwner.values());
+
+            // a node's components wait for the components of every node that depends on it
+            for (TeardownGroup group: groups) {
+                if (group.owner instanceof DAGNode) {
+                    Set<?> dependencies = ((DAGNode<?,?>) group.owner).getReachableNodes();
+                    for (TeardownGroup other: groups) {
+                        if (other != group && other.owner != null && dependencies.contains(other.owner)) {
+                            group.dependents.add(other);
+                            other.pending.incrementAndGet();
+                        }
+                    }
+                }
+            }
+
+            executor = Executors.newFixedThreadPool(Math.min(teardownThreads, groups.size()),
+                                                    new ThreadFactoryBuilder().setDaemon(true)
+                                                                              .setNameFormat("grapht-teardown-%d")
+                                                                              .build());
+            done = new CountDownLatch(groups.size());
+        }
+
+        /**
+         * Tear down the components.
+         * @return The accumulated error, or {@code null} if there has been no error.
+         */
+        Throwable run() {
+            long start = System.nanoTime();
+            Throwable error = null;
             try {
-                action.destroy();
-            } catch (Throwable th) {
+                for (TeardownGroup group: groups) {
+                    if (group.pending.get() == 0) {
+                        executor.execute(group);
+                    }
+                }
+                if (!done.await(teardownTimeout, TimeUnit.NANOSECONDS)) {
+                    error = new TimeoutException("components not torn down within timeout: "
+                                                         + getUnfinishedTypes());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+            } finally {
+                // interrupt teardown actions that are still running
+                executor.shutdownNow();
+            }
+
+            // interrupted teardown actions may add their own errors after the timeout
+            for (Throwable th: errors) {
                 if (error == null) {
                     error = th;
                 } else {
                     error.addSuppressed(th);
                 }
             }
+            logReport(System.nanoTime() - start);
+            return error;
         }
-        if (error != null) {
-            throw Throwables.propagate(error);
+
+        private List<Class<?>> getUnfinishedTypes() {
+            List<Class<?>> unfinished = new ArrayList<Class<?>>();
+            for (TeardownGroup group: groups) {
+                if (!group.finished) {
+                    for (TeardownAction action: group.actions) {
+                        unfinished.add(action.getComponentType());
+                    }
+                }
+            }
+            return unfinished;
+        }
+
+        private void logReport(long nanos) {
+            if (!logger.isInfoEnabled()) {
+                return;
+            }
+            List<TeardownGroup> sorted = new ArrayList<TeardownGroup>(groups);
+            Collections.sort(sorted, new Comparator<TeardownGroup>() {
+                @Override
+                public int compare(TeardownGroup g1, TeardownGroup g2) {
+                    return g1.nanos > g2.nanos ? -1 : (g1.nanos < g2.nanos ? 1 : 0);
+                }
+            });
+            StringBuilder sb = new StringBuilder();
+            sb.append("tore down ")
+              .append(groups.size())
+              .append(" components in ")
+              .append(TimeUnit.NANOSECONDS.toMillis(nanos))
+              .append(" ms");
+            for (TeardownGroup group: sorted) {
+                sb.append("\n  ");
+                if (group.finished) {
+                    sb.append(TimeUnit.NANOSECONDS.toMillis(group.nanos))
+                      .append(" ms: ");
+                } else {
+                    sb.append("unfinished: ");
+                }
+                sb.append(group.actions.get(0).getComponentType().getName());
+            }
+            logger.info("{}", sb);
+        }
+
+        /**
+         * The teardown actions for one owner.
+         */
+        private class TeardownGroup implements Runnable {
+            private final Object owner;
+            private final List<TeardownAction> actions = new ArrayList<TeardownAction>();
+            private final List<TeardownGroup> dependents = new ArrayList<TeardownGroup>();
+            private final AtomicInteger pending = new AtomicInteger();
+            private volatile long nanos;
+            private volatile boolean finished;
+
+            TeardownGroup(@Nullable Object own) {
+                owner = own;
+            }
+
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                Throwable error = null;
+                for (TeardownAction action: actions) {
+                    error = destroy(action, error);
+                }
+                if (error != null) {
+                    errors.add(error);
+                }
+                nanos = System.nanoTime() - start;
+                finished = true;
+                done.countDown();
+                for (TeardownGroup dep: dependents) {
+                    if (dep.pending.decrementAndGet() == 0) {
+                        try {
+                            executor.execute(dep);
+                        } catch (RejectedExecutionException e) {
+                            // we have timed out, and the dependent will not be torn down
+                            logger.debug("teardown of {} abandoned", dep.owner);
+                        }
+                    }
+                }
+            }
         }
     }
 
@@ -82,15 +576,40 @@ public class LifecycleManager implements AutoCloseable {
      */
     interface TeardownAction {
         void destroy();
+
+        /**
+         * Get the type of the component this action tears down.
+         * @return The component type.
+         */
+        Class<?> getComponentType();
+
+        /**
+         * Get the owner of the component this action tears down.
+         * @return The owner, or {@code null} if the component is unowned.
+         */
+        @Nullable
+        Object getOwner();
     }
 
     static class PreDestroyAction implements TeardownAction {
         private final Object instance;
         private final Method method;
+        private final Object owner;
 
-        public PreDestroyAction(Object inst, Method m) {
+        public PreDestroyAction(Object inst, Method m, @Nullable Object own) {
             instance = inst;
             method = m;
+            owner = own;
+        }
+
+        @Override
+        public Class<?> getComponentType() {
+            return instance.getClass();
+        }
+
+        @Override
+        public Object getOwner() {
+            return owner;
         }
 
         @Override
@@ -106,11 +625,60 @@ public class LifecycleManager implements AutoCloseable {
         }
     }
 
+    /**
+     * Action that tears down a softly- or weakly-referenced component if it has not been reclaimed.
+     */
+    static class ReclaimableAction implements TeardownAction {
+        private final Reference<Object> instance;
+        private final Class<?> type;
+        private final Object owner;
+
+        public ReclaimableAction(Reference<Object> ref, Class<?> type, @Nullable Object own) {
+            instance = ref;
+            this.type = type;
+            owner = own;
+        }
+
+        @Override
+        public Class<?> getComponentType() {
+            return type;
+        }
+
+        @Override
+        public Object getOwner() {
+            return owner;
+        }
+
+        @Override
+        public void destroy() {
+            Object inst = instance.get();
+            if (inst == null) {
+                logger.debug("component already reclaimed, not tearing down");
+                return;
+            }
+            LifecycleManager mgr = new LifecycleManager();
+            mgr.registerComponent(inst);
+            mgr.close();
+        }
+    }
+
     static class CloseAction implements TeardownAction {
         private final AutoCloseable instance;
+        private final Object owner;
 
-        public CloseAction(AutoCloseable inst) {
+        public CloseAction(AutoCloseable inst, @Nullable Object own) {
             instance = inst;
+            owner = own;
+        }
+
+        @Override
+        public Class<?> getComponentType() {
+            return instance.getClass();
+        }
+
+        @Override
+        public Object getOwner() {
+            return owner;
         }
 
         @Override
@@ -0,0 +1,47 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+/**
+ * How a {@link LifecycleManager} tracks components with the {@link CachePolicy#NEW_INSTANCE}
+ * policy that need to be torn down.  Services that create such components for every request
+ * should not use {@link #RETAIN}, since the manager would keep every instance until it is closed.
+ *
+ * @see InjectorBuilder#setPrototypeTracking(PrototypeTracking)
+ * @since 0.11
+ */
+public enum PrototypeTracking {
+    /**
+     * Keep every instance, and tear it down when the lifecycle manager is closed.  This is the
+     * default.
+     */
+    RETAIN,
+    /**
+     * Only hold instances through weak references.  Instances still alive when the lifecycle
+     * manager is closed are torn down; instances reclaimed by the garbage collector before then
+     * are not, so components that hold external resources should close themselves.
+     */
+    WEAK,
+    /**
+     * Tear instances created within an {@linkplain InjectionScope injection scope} down when the
+     * scope is closed.  Instances created outside a scope are tracked {@linkplain #WEAK weakly}.
+     */
+    SCOPE
+}
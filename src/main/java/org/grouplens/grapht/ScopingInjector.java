@@ -0,0 +1,38 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+/**
+ * An injector that can open {@linkplain InjectionScope injection scopes}.  Injectors created by
+ * {@link InjectorBuilder} implement this interface.
+ *
+ * @since 0.11
+ */
+public interface ScopingInjector extends Injector {
+    /**
+     * Open an injection scope.  The returned injector shares this injector's configuration and
+     * memoized components, but components with the {@link CachePolicy#SCOPED} policy are shared
+     * only within it.  Closing the returned injector closes the scope, shutting down the components
+     * created in it; it does not close this injector.
+     *
+     * @return An injector operating within a new scope.
+     */
+    ScopingInjector openScope();
+}
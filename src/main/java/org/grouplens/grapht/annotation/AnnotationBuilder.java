@@ -19,6 +19,9 @@
  */
 package org.grouplens.grapht.annotation;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import javax.inject.Named;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -49,12 +52,16 @@ import java.util.Map;
  * forced to provide an actual annotation implementation that can be used to
  * create instances.
  * <p>The proxies returned by this builder are immutable and serializable, like
- * those returned by {@link java.lang.reflect.AnnotatedElement}.
+ * those returned by {@link java.lang.reflect.AnnotatedElement}.  They are also
+ * interned, so building equal annotations returns the same instance; this makes
+ * comparing built qualifiers (as the dependency solver does frequently) cheap.
  * 
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  * @param <T> The annotation type created
  */
 public final class AnnotationBuilder<T extends Annotation> {
+    private static final Interner<Annotation> interner = Interners.newWeakInterner();
+
     private final Map<String, Object> attributes;
     private final Class<T> type;
     
@@ -608,7 +615,8 @@ public final class AnnotationBuilder<T extends Annotation> {
                 }
             }
         }
-        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, 
-                                                new AnnotationProxy<T>(type, attributes)));
+        Annotation proxy = (Annotation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                                                               new AnnotationProxy<T>(type, attributes));
+        return type.cast(interner.intern(proxy));
     }
 }
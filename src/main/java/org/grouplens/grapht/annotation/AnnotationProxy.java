@@ -28,6 +28,7 @@ import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -43,6 +44,7 @@ class AnnotationProxy<T extends Annotation> implements InvocationHandler, Serial
     private final ClassProxy annotationType;
     private final ImmutableMap<String, Object> attributes;
     private transient Class<T> cachedType;
+    private transient volatile int hashCode;
 
     public AnnotationProxy(Class<T> type, Map<String, Object> attrs) {
         annotationType = ClassProxy.of(type);
@@ -121,13 +123,45 @@ class AnnotationProxy<T extends Annotation> implements InvocationHandler, Serial
     }
 
     private int proxyHashCode(Object proxy) {
-        return AnnotationUtils.hashCode((Annotation) proxy);
+        // the attributes are immutable, so the hash code only needs to be computed once
+        int h = hashCode;
+        if (h == 0) {
+            h = AnnotationUtils.hashCode((Annotation) proxy);
+            hashCode = h;
+        }
+        return h;
     }
 
     private boolean proxyEquals(Object o1, Object o2) {
+        if (o1 == o2) {
+            return true;
+        }
+        AnnotationProxy<?> other = getHandler(o2);
+        if (other != null) {
+            // cheap rejection using the other proxy's cached type and hash code
+            if (!cachedType.equals(other.cachedType)
+                    || proxyHashCode(o1) != other.proxyHashCode(o2)) {
+                return false;
+            }
+        }
         return AnnotationUtils.equals((Annotation) o1, (Annotation) o2);
     }
 
+    /**
+     * Get the annotation proxy handler of an object.
+     * @param o The object.
+     * @return The object's annotation proxy, or {@code null} if it is not an annotation proxy.
+     */
+    static AnnotationProxy<?> getHandler(Object o) {
+        if (o != null && Proxy.isProxyClass(o.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(o);
+            if (handler instanceof AnnotationProxy) {
+                return (AnnotationProxy<?>) handler;
+            }
+        }
+        return null;
+    }
+
     /**
      * Safe clone of an object.  If the object is an array, it is copied; otherwise, it is
      * returned as-is.  This object is only applicable to valid annotation value types, which
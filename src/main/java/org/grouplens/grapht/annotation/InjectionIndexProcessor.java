@@ -0,0 +1,284 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.annotation;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Annotation processor that writes an index of the injection metadata of the classes being
+ * compiled, so that Grapht can look up a class's injection points and lifecycle methods without
+ * scanning all of its members reflectively.  For each concrete class, the index records the
+ * {@code @Inject} constructor, the {@code @Inject} fields and methods (in injection order,
+ * accounting for overridden methods), and the public {@code @PostConstruct} and
+ * {@code @PreDestroy} methods.  Qualifiers, attributes and nullability are not recorded; they
+ * are read from the indexed members when their injection points are created.  Each entry also
+ * records the class's superclass chain, so that an entry whose superclasses were compiled
+ * separately (and may have changed since) is not trusted at run time.
+ *
+ * <p>The index is written to {@value #INDEX_RESOURCE} and read by
+ * {@link org.grouplens.grapht.reflect.internal.InjectionIndex}.  Classes that are not in an index
+ * are scanned reflectively as before.
+ *
+ * @since 0.11
+ */
+public class InjectionIndexProcessor extends AbstractProcessor {
+    /**
+     * The resource to which the index is written.
+     */
+    public static final String INDEX_RESOURCE = "META-INF/grapht/injection.index";
+
+    private static final String INJECT = "javax.inject.Inject";
+    private static final String POST_CONSTRUCT = "javax.annotation.PostConstruct";
+    private static final String PRE_DESTROY = "javax.annotation.PreDestroy";
+
+    private final Map<String, List<String>> entries = new TreeMap<String, List<String>>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        // same version policy as the annotation validator
+        SourceVersion[] versions = SourceVersion.values();
+        SourceVersion v6 = SourceVersion.RELEASE_6;
+        assert v6.ordinal() < versions.length;
+        return versions[Math.min(v6.ordinal() + 2, versions.length - 1)];
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // every root class is indexed in the rounds that use these annotations; compilations
+        // that do not use them have nothing worth indexing
+        return new HashSet<String>(Arrays.asList(INJECT, POST_CONSTRUCT, PRE_DESTROY));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty()) {
+                writeIndex();
+            }
+        } else {
+            for (TypeElement type: ElementFilter.typesIn(roundEnv.getRootElements())) {
+                scanType(type);
+            }
+        }
+        return false; // let other processors work too
+    }
+
+    private void scanType(TypeElement type) {
+        Set<Modifier> mods = type.getModifiers();
+        if (type.getKind() == ElementKind.CLASS && !mods.contains(Modifier.ABSTRACT)
+                && (type.getNestingKind() == NestingKind.TOP_LEVEL || mods.contains(Modifier.STATIC))) {
+            List<String> lines = indexClass(type);
+            if (lines != null) {
+                entries.put(binaryName(type), lines);
+            }
+        }
+        for (TypeElement nested: ElementFilter.typesIn(type.getEnclosedElements())) {
+            scanType(nested);
+        }
+    }
+
+    /**
+     * Compute the index lines for a class.
+     * @param type The class.
+     * @return The index lines, or {@code null} if the class should not be indexed.
+     */
+    private List<String> indexClass(TypeElement type) {
+        List<String> lines = new ArrayList<String>();
+
+        StringBuilder chain = new StringBuilder("super");
+        for (TypeElement t = superclass(type); t != null; t = superclass(t)) {
+            if (!t.getQualifiedName().contentEquals("java.lang.Object")) {
+                chain.append('\t').append(binaryName(t));
+            }
+        }
+        lines.add(chain.toString());
+
+        ExecutableElement ctor = null;
+        for (ExecutableElement c: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (hasAnnotation(c, INJECT)) {
+                if (ctor != null) {
+                    // leave the error to be reported at injection time
+                    return null;
+                }
+                ctor = c;
+            }
+        }
+        if (ctor != null) {
+            lines.add("constructor" + parameters(ctor));
+        }
+
+        // Collect members from the class up through its superclasses, then reverse, so that
+        // superclass members are injected first and fields before methods (JSR 330).
+        List<String> group = new ArrayList<String>();
+        List<ExecutableElement> seen = new ArrayList<ExecutableElement>();
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            List<ExecutableElement> methods = ElementFilter.methodsIn(t.getEnclosedElements());
+            List<String> tgroup = new ArrayList<String>();
+            for (ExecutableElement m: methods) {
+                if (hasAnnotation(m, INJECT) && !m.getModifiers().contains(Modifier.STATIC)
+                        && !isOverridden(m, seen)) {
+                    tgroup.add("method\t" + binaryName(t) + "\t" + m.getSimpleName() + parameters(m));
+                }
+            }
+            seen.addAll(methods);
+            for (VariableElement f: ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (hasAnnotation(f, INJECT) && !f.getModifiers().contains(Modifier.STATIC)) {
+                    tgroup.add("field\t" + binaryName(t) + "\t" + f.getSimpleName());
+                }
+            }
+            group.addAll(tgroup);
+        }
+        Collections.reverse(group);
+        lines.addAll(group);
+
+        for (ExecutableElement m: ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!m.getModifiers().contains(Modifier.PUBLIC) || !m.getParameters().isEmpty()) {
+                continue;
+            }
+            TypeElement owner = (TypeElement) m.getEnclosingElement();
+            if (hasAnnotation(m, POST_CONSTRUCT)) {
+                lines.add("postconstruct\t" + binaryName(owner) + "\t" + m.getSimpleName());
+            }
+            if (hasAnnotation(m, PRE_DESTROY)) {
+                lines.add("predestroy\t" + binaryName(owner) + "\t" + m.getSimpleName());
+            }
+        }
+        return lines;
+    }
+
+    private boolean isOverridden(ExecutableElement method, List<ExecutableElement> candidates) {
+        Elements elts = processingEnv.getElementUtils();
+        for (ExecutableElement m: candidates) {
+            if (elts.overrides(m, method, (TypeElement) m.getEnclosingElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror sup = type.getSuperclass();
+        if (sup.getKind() == TypeKind.DECLARED) {
+            return (TypeElement) ((DeclaredType) sup).asElement();
+        } else {
+            return null;
+        }
+    }
+
+    private static boolean hasAnnotation(Element elt, String annotation) {
+        for (AnnotationMirror mirror: elt.getAnnotationMirrors()) {
+            Element atype = mirror.getAnnotationType().asElement();
+            if (atype instanceof TypeElement
+                    && ((TypeElement) atype).getQualifiedName().contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Format the parameter types of a method or constructor as tab-prefixed class names.
+     */
+    private String parameters(ExecutableElement exe) {
+        StringBuilder sb = new StringBuilder();
+        for (VariableElement param: exe.getParameters()) {
+            sb.append('\t').append(className(param.asType()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the name of the erasure of a type, in the form returned by {@link Class#getName()}.
+     */
+    private String className(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror erased = types.erasure(type);
+        switch (erased.getKind()) {
+        case ARRAY:
+            return descriptor(erased);
+        case DECLARED:
+            return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+        default:
+            return erased.toString();
+        }
+    }
+
+    /**
+     * Get the JVM descriptor of a type, as used for array class names.
+     */
+    private String descriptor(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        switch (erased.getKind()) {
+        case BOOLEAN: return "Z";
+        case BYTE: return "B";
+        case CHAR: return "C";
+        case SHORT: return "S";
+        case INT: return "I";
+        case LONG: return "J";
+        case FLOAT: return "F";
+        case DOUBLE: return "D";
+        case ARRAY: return "[" + descriptor(((ArrayType) erased).getComponentType());
+        default: return "L" + className(erased) + ";";
+        }
+    }
+
+    private void writeIndex() {
+        Messager log = processingEnv.getMessager();
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(file.openOutputStream(), "UTF-8"));
+            try {
+                out.println("# Grapht injection index, generated by " + getClass().getName());
+                for (Map.Entry<String, List<String>> e: entries.entrySet()) {
+                    out.println("class\t" + e.getKey());
+                    for (String line: e.getValue()) {
+                        out.println(line);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.printMessage(Diagnostic.Kind.WARNING, "cannot write injection index: " + e);
+        }
+    }
+}
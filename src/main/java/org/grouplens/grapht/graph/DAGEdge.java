@@ -31,6 +31,8 @@ import java.io.Serializable;
  * Edges in DAGs.  These arise from building nodes with a {@link DAGNodeBuilder}.
  *
  * <p>Two edges are equal if they connect the same pair of nodes and have the same label.
+ * Nodes create their edge objects on demand, so the same edge may be represented by several
+ * distinct (but equal) objects.
  *
  * @param <V> The type of node labels.
  * @param <E> The type of edge labels.
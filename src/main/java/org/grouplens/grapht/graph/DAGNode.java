@@ -26,15 +26,14 @@ import org.apache.commons.lang3.tuple.Pair;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
 /**
  * A node in a (rooted) DAG.  Since DAGs are rooted, a full graph is just represented by its root
  * node.  Nodes are compared using reference equality, so distinct nodes do not compare equal even
- * if they have identical labels and edge sets.
+ * if they have identical labels and edge sets.  To compare the graphs rooted at two nodes, use
+ * {@link #structurallyEquals(DAGNode)}.
  *
  * <p>Nodes and edges may not have null labels.  There <em>may</em> be multiple edges from one
  * node to another, so long as those edges have distinct labels.
@@ -54,14 +53,39 @@ public class DAGNode<V,E> implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Nonnull
-    @SuppressWarnings("squid:S1948") // serializable warning; node is serializable iff its label type is
-    private final V label;
+    private final transient V label;
+    /**
+     * The tails of the outgoing edges, parallel to {@link #edgeLabels}.  Edge objects are only
+     * created when they are asked for, so a node costs two arrays rather than a set of edges.
+     */
+    @Nonnull
+    private final transient DAGNode<V,E>[] tails;
     @Nonnull
-    private final ImmutableSet<DAGEdge<V,E>> outgoingEdges;
+    private final transient Object[] edgeLabels;
+    /**
+     * Earlier outgoing edges of nodes built by {@link #withEdge(DAGNode, Object)}, in full chunks
+     * shared with the node they were extended from.  These edges come before those in the arrays.
+     * This is {@code null} for nodes built any other way.
+     */
+    @Nullable
+    private final transient EdgeTrie edgePrefix;
 
-    private transient Supplier<SetMultimap<DAGNode<V,E>,DAGEdge<V,E>>> reverseEdgeCache;
-    private transient Supplier<Set<DAGNode<V,E>>> reachableNodeCache;
-    private transient Supplier<List<DAGNode<V,E>>> topologicalSortCache;
+    private transient volatile Caches<V,E> caches;
+    private transient volatile int structuralHash;
+    /**
+     * The fields read by {@link #readObject(ObjectInputStream)}, held only until
+     * {@link #readResolve()} replaces the deserialized object with a fully-built node.
+     */
+    @Nullable
+    private transient Pair<V, Set<DAGEdge<V,E>>> serialFields;
+
+    /**
+     * The serialized form is the historical one, with the outgoing edges stored as a set.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("label", Object.class),
+            new ObjectStreamField("outgoingEdges", ImmutableSet.class)
+    };
 
     /**
      * Create a new DAG node with no outgoing edges.
@@ -104,50 +128,185 @@ public class DAGNode<V,E> implements Serializable {
      */
     public static <V,E> DAGNodeBuilder<V,E> copyBuilder(DAGNode<V,E> node) {
         DAGNodeBuilder<V,E> bld = newBuilder(node.getLabel());
-        for (DAGEdge<V,E> edge: node.getOutgoingEdges()) {
-            bld.addEdge(edge.getTail(), edge.getLabel());
+        for (EdgeCursor<V,E> c = cursor(node); c.next(); ) {
+            bld.addEdge(Pair.of(c.tail(), c.label()));
         }
         return bld;
     }
 
+    /**
+     * Create a copy of this node with an additional outgoing edge.  Unlike building the copy with
+     * {@link #copyBuilder(DAGNode)}, this does not copy all of the existing edges: the new node
+     * shares them with this one in chunks of 32.  Adding an edge to a node built this way copies
+     * at most 32 edges plus one path through the trie of shared chunks, rather than every edge.
+     * <p>
+     * This method does not check whether the node already has the edge; the caller must ensure
+     * that it does not (for example, by keeping a set of the edges it has added), since a node
+     * may not have two edges with the same tail and label.
+     *
+     * @param tail The target of the new edge.
+     * @param edgeLabel The label of the new edge.
+     * @return A node with this node's label and edges, plus the new edge.
+     * @since 0.11
+     */
+    public DAGNode<V,E> withEdge(@Nonnull DAGNode<V,E> tail, @Nonnull E edgeLabel) {
+        Preconditions.checkNotNull(tail, "edge target");
+        Preconditions.checkNotNull(edgeLabel, "edge label");
+
+        // move full chunks of the edge arrays into the trie; for nodes previously built with
+        // this method, there is at most one
+        EdgeTrie prefix = edgePrefix;
+        int start = 0;
+        while (tails.length - start >= EdgeTrie.CHUNK_SIZE) {
+            prefix = EdgeTrie.push(prefix, tails, edgeLabels, start);
+            start += EdgeTrie.CHUNK_SIZE;
+        }
+        int rest = tails.length - start;
+        DAGNode<V,E>[] newTails = newTailArray(rest + 1);
+        Object[] newLabels = new Object[rest + 1];
+        System.arraycopy(tails, start, newTails, 0, rest);
+        System.arraycopy(edgeLabels, start, newLabels, 0, rest);
+        newTails[rest] = tail;
+        newLabels[rest] = edgeLabel;
+        return new DAGNode<V,E>(label, prefix, newTails, newLabels);
+    }
+
+    /**
+     * Construct a new DAG node from its edge storage.
+     */
+    private DAGNode(@Nonnull V lbl, @Nullable EdgeTrie prefix,
+                    DAGNode<V,E>[] tls, Object[] labels) {
+        label = lbl;
+        edgePrefix = prefix;
+        tails = tls;
+        edgeLabels = labels;
+    }
+
     /**
      * Construct a new DAG node.
      * @param lbl The label.
-     * @param edges The edges.  This takes pairs, not actual edge objects, because the edge objects
-     *              need to be constructed within the constructor in order to create the circular
-     *              references back to the head nodes properly.
+     * @param edges The edges, as (tail, label) pairs.  Edge objects are created on demand with
+     *              this node as their head.
      */
+    @SuppressWarnings("unchecked")
     DAGNode(@Nonnull V lbl, Iterable<Pair<DAGNode<V,E>,E>> edges) {
         label = lbl;
-        ImmutableSet.Builder<DAGEdge<V,E>> bld = ImmutableSet.builder();
-        for (Pair<DAGNode<V,E>,E> pair: edges) {
-            DAGEdge<V,E> edge = new DAGEdge<V, E>(this, pair.getLeft(), pair.getRight());
-            bld.add(edge);
+        edgePrefix = null;
+        Collection<Pair<DAGNode<V,E>,E>> distinct;
+        if (edges instanceof Set) {
+            distinct = (Set<Pair<DAGNode<V,E>,E>>) edges;
+        } else {
+            distinct = Sets.newLinkedHashSet(edges);
+        }
+        tails = newTailArray(distinct.size());
+        edgeLabels = newLabelArray(distinct.size());
+        int i = 0;
+        for (Pair<DAGNode<V,E>,E> pair: distinct) {
+            tails[i] = pair.getLeft();
+            edgeLabels[i] = pair.getRight();
+            i++;
+        }
+    }
+
+    private static final DAGNode<?,?>[] NO_TAILS = {};
+    private static final Object[] NO_LABELS = {};
+
+    /**
+     * Allocate an array of edge tails.  Leaf nodes share an empty array.
+     * @param n The array length.
+     * @return An array of {@code n} tails.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V,E> DAGNode<V,E>[] newTailArray(int n) {
+        return n == 0 ? (DAGNode<V,E>[]) NO_TAILS : new DAGNode[n];
+    }
+
+    /**
+     * Allocate an array of edge labels.  Leaf nodes share an empty array.
+     * @param n The array length.
+     * @return An array of {@code n} labels.
+     */
+    private static Object[] newLabelArray(int n) {
+        return n == 0 ? NO_LABELS : new Object[n];
+    }
+
+    /**
+     * Get the number of outgoing edges.
+     * @return The number of outgoing edges.
+     */
+    private int edgeCount() {
+        return edgePrefix == null ? tails.length : edgePrefix.count + tails.length;
+    }
+
+    /**
+     * Get the traversal caches for this node, allocating them on first use.
+     * @return The node's caches.
+     */
+    private Caches<V,E> getCaches() {
+        Caches<V,E> c = caches;
+        if (c == null) {
+            // a race may allocate two holders; they compute equal values, so either may win
+            c = new Caches<V,E>();
+            caches = c;
         }
-        outgoingEdges = bld.build();
-        initializeCaches();
+        return c;
     }
 
     /**
-     * Initialize caches for traversing this node.
+     * Write the node in its historical serialized form, with an explicit set of edges.
+     *
+     * @param stream The stream to write to.
+     * @throws IOException If an I/O exception occurs serializing the object.
      */
-    private void initializeCaches() {
-        reverseEdgeCache = Suppliers.memoize(new EdgeMapSupplier());
-        reachableNodeCache = Suppliers.memoize(new NodeSetSupplier());
-        topologicalSortCache = Suppliers.memoize(new TopologicalSortSupplier());
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        ObjectOutputStream.PutField fields = stream.putFields();
+        fields.put("label", label);
+        fields.put("outgoingEdges", ImmutableSet.copyOf(getOutgoingEdges()));
+        stream.writeFields();
     }
 
     /**
-     * Override the object reading protocol to make sure caches are instantiated.  This just calls
-     * {@link #initializeCaches()} after doing the default object-reading.
+     * Read the node's historical fields.  The deserialized object is only a placeholder for them,
+     * since the node's fields are final; {@link #readResolve()} builds the real node.
      *
      * @param stream The stream to read from.
      * @throws IOException If an I/O exception occurs deserializing the object.
      * @throws ClassNotFoundException If there is a missing class deserializing the object.
      */
+    @SuppressWarnings("unchecked")
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
-        stream.defaultReadObject();
-        initializeCaches();
+        ObjectInputStream.GetField fields = stream.readFields();
+        V lbl = (V) fields.get("label", null);
+        Set<DAGEdge<V,E>> edges = (Set<DAGEdge<V,E>>) fields.get("outgoingEdges", null);
+        if (lbl == null || edges == null) {
+            throw new InvalidObjectException("node missing label or edges");
+        }
+        serialFields = Pair.of(lbl, edges);
+    }
+
+    /**
+     * Replace a deserialized placeholder with a node built from its serialized label and edges.
+     * Edges in the serialized set have the placeholder as their head, so only their tails and
+     * labels are kept.
+     *
+     * @return The deserialized node.
+     * @throws ObjectStreamException If the placeholder was not read from a stream.
+     */
+    private Object readResolve() throws ObjectStreamException {
+        Pair<V, Set<DAGEdge<V,E>>> fields = serialFields;
+        if (fields == null) {
+            throw new InvalidObjectException("node was not read from a stream");
+        }
+        Set<DAGEdge<V,E>> edges = fields.getRight();
+        DAGNode<V,E>[] tls = newTailArray(edges.size());
+        Object[] labels = newLabelArray(edges.size());
+        int i = 0;
+        for (DAGEdge<V,E> edge: edges) {
+            tls[i] = edge.getTail();
+            labels[i] = edge.getLabel();
+            i++;
+        }
+        return new DAGNode<V,E>(fields.getLeft(), null, tls, labels);
     }
 
     /**
@@ -165,7 +324,7 @@ public class DAGNode<V,E> implements Serializable {
      */
     @Nonnull
     public Set<DAGEdge<V,E>> getOutgoingEdges() {
-        return outgoingEdges;
+        return new EdgeSet();
     }
 
     /**
@@ -176,9 +335,9 @@ public class DAGNode<V,E> implements Serializable {
      * {@code null} if no such edge exists.
      */
     public DAGEdge<V,E> getOutgoingEdge(DAGNode<V,E> target, E label) {
-        for (DAGEdge<V,E> edge: outgoingEdges) {
-            if (edge.getTail().equals(target) && edge.getLabel().equals(label)) {
-                return edge;
+        for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+            if (c.tail().equals(target) && c.label().equals(label)) {
+                return c.edge();
             }
         }
         return null;
@@ -204,8 +363,12 @@ public class DAGNode<V,E> implements Serializable {
      *         added.
      */
     public DAGEdge<V, E> getOutgoingEdgeWithLabel(Predicate<? super E> predicate) {
-        Predicate<DAGEdge<?, E>> edgePred = DAGEdge.labelMatches(predicate);
-        return Iterables.find(outgoingEdges, edgePred, null);
+        for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+            if (predicate.apply(c.label())) {
+                return c.edge();
+            }
+        }
+        return null;
     }
 
     /**
@@ -213,9 +376,11 @@ public class DAGNode<V,E> implements Serializable {
      * @return The set of adjacent nodes.
      */
     public Set<DAGNode<V,E>> getAdjacentNodes() {
-        return FluentIterable.from(outgoingEdges)
-                             .transform(DAGEdge.<V, E>extractTail())
-                             .toSet();
+        ImmutableSet.Builder<DAGNode<V,E>> bld = ImmutableSet.builder();
+        for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+            bld.add(c.tail());
+        }
+        return bld.build();
     }
 
     /**
@@ -226,12 +391,29 @@ public class DAGNode<V,E> implements Serializable {
      */
     @Nonnull
     private SetMultimap<DAGNode<V,E>,DAGEdge<V,E>> getIncomingEdgeMap() {
-        return reverseEdgeCache.get();
+        Caches<V,E> c = getCaches();
+        SetMultimap<DAGNode<V,E>,DAGEdge<V,E>> map = c.incomingEdges;
+        if (map == null) {
+            ImmutableSetMultimap.Builder<DAGNode<V,E>,DAGEdge<V,E>> bld = ImmutableSetMultimap.builder();
+            for (EdgeCursor<V,E> cur = cursor(this); cur.next(); ) {
+                bld.put(cur.tail(), cur.edge());
+                bld.putAll(cur.tail().getIncomingEdgeMap());
+            }
+            map = bld.build();
+            c.incomingEdges = map;
+        }
+        return map;
     }
 
     @Nonnull
     public Set<DAGNode<V,E>> getReachableNodes() {
-        return reachableNodeCache.get();
+        Caches<V,E> c = getCaches();
+        Set<DAGNode<V,E>> nodes = c.reachableNodes;
+        if (nodes == null) {
+            nodes = ImmutableSet.copyOf(getSortedNodes());
+            c.reachableNodes = nodes;
+        }
+        return nodes;
     }
 
     /**
@@ -245,11 +427,19 @@ public class DAGNode<V,E> implements Serializable {
      */
     @Nonnull
     public List<DAGNode<V,E>> getSortedNodes() {
-        return topologicalSortCache.get();
+        Caches<V,E> c = getCaches();
+        List<DAGNode<V,E>> sorted = c.sortedNodes;
+        if (sorted == null) {
+            LinkedHashSet<DAGNode<V,E>> visited = Sets.newLinkedHashSet();
+            sortVisit(visited);
+            sorted = ImmutableList.copyOf(visited);
+            c.sortedNodes = sorted;
+        }
+        return sorted;
     }
 
     /**
-     * Helper mode for {@link #getSortedNodes()}, via {@link TopologicalSortSupplier}.  This method
+     * Helper method for {@link #getSortedNodes()}.  This method
      * does a depth-first traversal of the nodes, adding each to the {@code visited} set when it is
      * left.  This results in {@code visited} being a topological sort.
      *
@@ -257,8 +447,8 @@ public class DAGNode<V,E> implements Serializable {
      */
     private void sortVisit(LinkedHashSet<DAGNode<V,E>> visited) {
         if (!visited.contains(this)) {
-            for (DAGEdge<V,E> nbr: outgoingEdges) {
-                nbr.getTail().sortVisit(visited);
+            for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+                c.tail().sortVisit(visited);
             }
             // neighbors won't have added this, or we have an impossible cycle
             assert !visited.contains(this);
@@ -298,9 +488,9 @@ public class DAGNode<V,E> implements Serializable {
             return memory.get(this);
         } else if (getReachableNodes().contains(node)) {
             DAGNodeBuilder<V,E> bld = newBuilder(label);
-            for (DAGEdge<V,E> edge: outgoingEdges) {
-                DAGNode<V,E> newTail = edge.getTail().replaceNode(node, replacement, memory);
-                bld.addEdge(newTail, edge.getLabel());
+            for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+                DAGNode<V,E> newTail = c.tail().replaceNode(node, replacement, memory);
+                bld.addEdge(newTail, c.label());
             }
             DAGNode<V,E> repl = bld.build();
             memory.put(this, repl);
@@ -390,8 +580,9 @@ public class DAGNode<V,E> implements Serializable {
         // builder for new node
         DAGNodeBuilder<V,E> builder = null;
         // intact edges (unmodified edges)
-        List<DAGEdge<V,E>> intact = Lists.newArrayListWithCapacity(outgoingEdges.size());
-        for (DAGEdge<V,E> edge: outgoingEdges) {
+        List<DAGEdge<V,E>> intact = Lists.newArrayListWithCapacity(edgeCount());
+        for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+            DAGEdge<V,E> edge = c.edge();
             DAGNode<V,E> tail = edge.getTail();
             DAGNode<V,E> transformedTail = tail.transformEdges(function);
             DAGEdge<V,E> toQuery = edge;
@@ -429,6 +620,87 @@ public class DAGNode<V,E> implements Serializable {
         }
     }
 
+    /**
+     * Get a hash code for the structure of the graph rooted at this node.  The hash depends only
+     * on the node's label and on the labels and (structural) tails of its outgoing edges, so nodes
+     * that are {@linkplain #structurallyEquals(DAGNode) structurally equal} have the same
+     * structural hash even if they belong to independently-built graphs.  The hash is computed
+     * on first use and cached, so each node in a graph is hashed only once.
+     *
+     * @return The structural hash code.
+     * @since 0.11
+     */
+    public int structuralHashCode() {
+        int h = structuralHash;
+        if (h == 0) {
+            h = label.hashCode();
+            int edgeHash = 0;
+            for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+                // sum the edge hashes so the result does not depend on edge order
+                edgeHash += c.label().hashCode() * 31 + c.tail().structuralHashCode();
+            }
+            h = h * 31 + edgeHash;
+            if (h == 0) {
+                // reserve 0 for 'not yet computed'
+                h = 1;
+            }
+            structuralHash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Query whether the graph rooted at this node is structurally equal to the graph rooted at
+     * another node.  Two nodes are structurally equal if they have equal labels and, for each
+     * outgoing edge of one, the other has an outgoing edge with an equal label whose tail is
+     * structurally equal to the first edge's tail.  Structural hashes are compared first, so
+     * nodes that differ are usually rejected without traversing their graphs.
+     *
+     * @param other The node to compare with.
+     * @return {@code true} if the two graphs have the same structure.
+     * @since 0.11
+     */
+    public boolean structurallyEquals(@Nullable DAGNode<?,?> other) {
+        return structurallyEquals(other, new HashSet<Pair<DAGNode<?,?>, DAGNode<?,?>>>());
+    }
+
+    /**
+     * Implementation of {@link #structurallyEquals(DAGNode)}.
+     * @param other The node to compare with.
+     * @param known Pairs of nodes already known to be structurally equal, so shared subgraphs
+     *              are only compared once.
+     */
+    private boolean structurallyEquals(@Nullable DAGNode<?,?> other, Set<Pair<DAGNode<?,?>, DAGNode<?,?>>> known) {
+        if (this == other) {
+            return true;
+        } else if (other == null
+                   || structuralHashCode() != other.structuralHashCode()
+                   || edgeCount() != other.edgeCount()
+                   || !label.equals(other.label)) {
+            return false;
+        }
+
+        Pair<DAGNode<?,?>, DAGNode<?,?>> key = Pair.<DAGNode<?,?>, DAGNode<?,?>>of(this, other);
+        if (known.contains(key)) {
+            return true;
+        }
+        for (EdgeCursor<V,E> c = cursor(this); c.next(); ) {
+            boolean found = false;
+            for (EdgeCursor<?,?> oc = cursor(other); oc.next(); ) {
+                if (c.label().equals(oc.label())
+                        && c.tail().structurallyEquals(oc.tail(), known)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        known.add(key);
+        return true;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -437,7 +709,7 @@ public class DAGNode<V,E> implements Serializable {
           .append(" with ")
           .append(getReachableNodes().size())
           .append(" nodes and ")
-          .append(outgoingEdges.size())
+          .append(edgeCount())
           .append(" edges");
         return sb.toString();
     }
@@ -453,36 +725,217 @@ public class DAGNode<V,E> implements Serializable {
     }
 
     /**
-     * Supplier to compute the map of incoming edges.  Used to implement {@link #getIncomingEdgeMap()}.
+     * Create a cursor over a node's outgoing edges.
+     * @param node The node.
+     * @return A cursor positioned before the node's first edge.
      */
-    private class EdgeMapSupplier implements Supplier<SetMultimap<DAGNode<V, E>, DAGEdge<V, E>>> {
-        @Override
-        public SetMultimap<DAGNode<V, E>, DAGEdge<V, E>> get() {
-            ImmutableSetMultimap.Builder<DAGNode<V,E>,DAGEdge<V,E>> bld = ImmutableSetMultimap.builder();
-            for (DAGEdge<V,E> nbr: outgoingEdges) {
-                bld.put(nbr.getTail(), nbr);
-                bld.putAll(nbr.getTail().getIncomingEdgeMap());
+    private static <V,E> EdgeCursor<V,E> cursor(DAGNode<V,E> node) {
+        return new EdgeCursor<V,E>(node);
+    }
+
+    /**
+     * Cursor over the outgoing edges of a node.  It walks the shared trie of a node built by
+     * {@link #withEdge(DAGNode, Object)} once per chunk of edges, rather than once per edge.
+     */
+    private static final class EdgeCursor<V,E> {
+        private final DAGNode<V,E> node;
+        private final int prefixCount;
+        private final int count;
+        private int index = -1;
+        @Nullable
+        private Object[] chunk;
+
+        EdgeCursor(DAGNode<V,E> n) {
+            node = n;
+            prefixCount = n.edgePrefix == null ? 0 : n.edgePrefix.count;
+            count = prefixCount + n.tails.length;
+        }
+
+        /**
+         * Advance to the next edge.
+         * @return {@code true} if there is another edge, {@code false} if the edges are exhausted.
+         */
+        boolean next() {
+            if (index >= count) {
+                return false;
+            }
+            index++;
+            if (index < prefixCount && (index & EdgeTrie.MASK) == 0) {
+                chunk = node.edgePrefix.getChunk(index);
+            }
+            return index < count;
+        }
+
+        @SuppressWarnings("unchecked")
+        DAGNode<V,E> tail() {
+            if (index < prefixCount) {
+                return (DAGNode<V,E>) chunk[EdgeTrie.tailSlot(index)];
+            } else {
+                return node.tails[index - prefixCount];
             }
-            return bld.build();
+        }
+
+        @SuppressWarnings("unchecked")
+        E label() {
+            if (index < prefixCount) {
+                return (E) chunk[EdgeTrie.tailSlot(index) + 1];
+            } else {
+                return (E) node.edgeLabels[index - prefixCount];
+            }
+        }
+
+        DAGEdge<V,E> edge() {
+            return new DAGEdge<V,E>(node, tail(), label());
         }
     }
 
     /**
-     * Supplier to compute the set of reachable nodes.
+     * View of the outgoing edges, creating edge objects as they are iterated.
      */
-    private class NodeSetSupplier implements Supplier<Set<DAGNode<V, E>>> {
+    private class EdgeSet extends AbstractSet<DAGEdge<V,E>> {
         @Override
-        public ImmutableSet<DAGNode<V, E>> get() {
-            return ImmutableSet.copyOf(getSortedNodes());
+        public int size() {
+            return edgeCount();
         }
-    }
 
-    private class TopologicalSortSupplier implements Supplier<List<DAGNode<V,E>>> {
         @Override
-        public List<DAGNode<V, E>> get() {
-            LinkedHashSet<DAGNode<V,E>> visited = Sets.newLinkedHashSet();
-            sortVisit(visited);
-            return ImmutableList.copyOf(visited);
+        public boolean contains(Object o) {
+            if (o instanceof DAGEdge) {
+                DAGEdge<?,?> edge = (DAGEdge<?,?>) o;
+                if (edge.getHead() == DAGNode.this) {
+                    for (EdgeCursor<V,E> c = cursor(DAGNode.this); c.next(); ) {
+                        if (c.tail().equals(edge.getTail()) && c.label().equals(edge.getLabel())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<DAGEdge<V,E>> iterator() {
+            return new UnmodifiableIterator<DAGEdge<V,E>>() {
+                final EdgeCursor<V,E> cursor = cursor(DAGNode.this);
+                boolean ready = false;
+
+                @Override
+                public boolean hasNext() {
+                    if (!ready) {
+                        ready = cursor.next();
+                    }
+                    return ready;
+                }
+
+                @Override
+                public DAGEdge<V,E> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ready = false;
+                    return cursor.edge();
+                }
+            };
+        }
+    }
+
+    /**
+     * Persistent 32-way trie of edge chunks, used to share the edges of nodes built with
+     * {@link #withEdge(DAGNode, Object)}.  Leaves are chunks of {@link #CHUNK_SIZE} edges stored
+     * as alternating tails and labels; pushing a chunk copies only the path to the new leaf.
+     */
+    private static final class EdgeTrie {
+        static final int CHUNK_SIZE = 32;
+        private static final int BITS = 5;
+        static final int MASK = CHUNK_SIZE - 1;
+
+        /**
+         * The number of edges in the trie (always a multiple of the chunk size).
+         */
+        final int count;
+        private final int shift;
+        private final Object[] root;
+
+        private EdgeTrie(int n, int sh, Object[] rt) {
+            count = n;
+            shift = sh;
+            root = rt;
+        }
+
+        /**
+         * Get the position of an edge's tail in its chunk; its label immediately follows.
+         * @param i The edge index.
+         * @return The index of the edge's tail in its chunk.
+         */
+        static int tailSlot(int i) {
+            return (i & MASK) * 2;
         }
+
+        /**
+         * Get the chunk containing an edge.
+         * @param i The edge index.
+         * @return The chunk containing edge {@code i}.
+         */
+        Object[] getChunk(int i) {
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Object[]) node[(i >>> level) & MASK];
+            }
+            return node;
+        }
+
+        /**
+         * Add a chunk of edges to a trie.
+         * @param trie The trie, or {@code null} for an empty trie.
+         * @param tails The edge tails.
+         * @param labels The edge labels.
+         * @param start The index in {@code tails} and {@code labels} of the chunk's first edge.
+         * @return A new trie with the chunk added.
+         */
+        static EdgeTrie push(@Nullable EdgeTrie trie, Object[] tails, Object[] labels, int start) {
+            Object[] chunk = new Object[CHUNK_SIZE * 2];
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                chunk[i * 2] = tails[start + i];
+                chunk[i * 2 + 1] = labels[start + i];
+            }
+            if (trie == null) {
+                return new EdgeTrie(CHUNK_SIZE, 0, chunk);
+            } else if (trie.count == 1 << (trie.shift + BITS)) {
+                // the root is full, grow the trie by a level
+                Object[] root = {trie.root, newPath(trie.shift, chunk)};
+                return new EdgeTrie(trie.count + CHUNK_SIZE, trie.shift + BITS, root);
+            } else {
+                Object[] root = pushChunk(trie.shift, trie.root, chunk, trie.count);
+                return new EdgeTrie(trie.count + CHUNK_SIZE, trie.shift, root);
+            }
+        }
+
+        private static Object[] pushChunk(int level, Object[] node, Object[] chunk, int index) {
+            int slot = (index >>> level) & MASK;
+            Object[] copy = Arrays.copyOf(node, Math.max(node.length, slot + 1));
+            if (level == BITS) {
+                copy[slot] = chunk;
+            } else if (slot < node.length) {
+                copy[slot] = pushChunk(level - BITS, (Object[]) node[slot], chunk, index);
+            } else {
+                copy[slot] = newPath(level - BITS, chunk);
+            }
+            return copy;
+        }
+
+        private static Object[] newPath(int level, Object[] chunk) {
+            return level == 0 ? chunk : new Object[]{newPath(level - BITS, chunk)};
+        }
+    }
+
+    /**
+     * Lazily-computed traversal caches, allocated on first traversal so that nodes that are never
+     * traversed from do not pay for them.  Values are immutable and deterministic, so racing
+     * threads may compute them twice but will store equal results.
+     */
+    private static class Caches<V,E> {
+        volatile SetMultimap<DAGNode<V,E>,DAGEdge<V,E>> incomingEdges;
+        volatile Set<DAGNode<V,E>> reachableNodes;
+        volatile List<DAGNode<V,E>> sortedNodes;
     }
 }
@@ -19,14 +19,16 @@
  */
 package org.grouplens.grapht.graph;
 
-import com.google.common.base.Functions;
+import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,9 +48,11 @@ public class MergePool<V,E> {
     private static final Logger logger = LoggerFactory.getLogger(MergePool.class);
 
     private final Set<DAGNode<V,E>> pool;
+    private final Map<Pair<V,Set<DAGNode<V,E>>>, DAGNode<V,E>> nodeTable;
 
     private MergePool() {
-        pool = Sets.newLinkedHashSet();
+        pool = Sets.newHashSet();
+        nodeTable = Maps.newHashMap();
     }
 
     /**
@@ -62,10 +66,31 @@ public class MergePool<V,E> {
         return new MergePool<V, E>();
     }
 
+    /**
+     * Add the nodes of a graph to this pool without merging it, so that later merges reuse them.
+     * This is cheaper than {@link #merge(DAGNode)}, but does not simplify the graph; it should
+     * only be used with graphs that have already been merged.  If the graph contains equivalent
+     * nodes, the first one encountered is reused.
+     *
+     * @param graph The graph whose nodes should be added.
+     */
+    public void addGraph(DAGNode<V,E> graph) {
+        for (DAGNode<V,E> node: graph.getReachableNodes()) {
+            if (pool.add(node)) {
+                Pair<V,Set<DAGNode<V,E>>> key = Pair.of(node.getLabel(), node.getAdjacentNodes());
+                if (!nodeTable.containsKey(key)) {
+                    nodeTable.put(key, node);
+                }
+            }
+        }
+    }
+
     /**
      * Merge and simplify a graph.  This will coalesce redundant nodes (equivalent labels and
      * outgoing edge destinations), and will prefer to use nodes from graphs seen previously.
-     * This allows deduplication across multiple graphs.
+     * This allows deduplication across multiple graphs.  Subgraphs whose nodes are already in the
+     * pool are not traversed again, so merging a graph that shares most of its nodes with
+     * previously-merged graphs only costs time proportional to its new nodes.
      *
      * <p><strong>Noteo:</strong> edge labels are ignored for the purpose of merging.</p>
      *
@@ -73,18 +98,21 @@ public class MergePool<V,E> {
      * @return The new simplified, merged graph.
      */
     public DAGNode<V,E> merge(DAGNode<V, E> graph) {
-        List<DAGNode<V, E>> sorted = graph.getSortedNodes();
-
-        Map<Pair<V,Set<DAGNode<V,E>>>, DAGNode<V,E>> nodeTable = Maps.newHashMap();
-        for (DAGNode<V, E> node: pool) {
-            Pair<V, Set<DAGNode<V, E>>> key =
-                    Pair.of(node.getLabel(), node.getAdjacentNodes());
-            assert !nodeTable.containsKey(key);
-            nodeTable.put(key, node);
+        if (pool.contains(graph)) {
+            return graph;
         }
+        List<DAGNode<V, E>> sorted = Lists.newArrayList();
+        sortUnpooled(graph, Sets.<DAGNode<V, E>>newHashSet(), sorted);
 
         // We want to map nodes to their previous merged versions
-        Map<DAGNode<V,E>, DAGNode<V,E>> mergedMap = Maps.newHashMap();
+        final Map<DAGNode<V,E>, DAGNode<V,E>> mergedMap = Maps.newHashMap();
+        Function<DAGNode<V,E>, DAGNode<V,E>> mergedVersion = new Function<DAGNode<V, E>, DAGNode<V, E>>() {
+            @Nullable
+            @Override
+            public DAGNode<V, E> apply(@Nullable DAGNode<V, E> input) {
+                return pool.contains(input) ? input : mergedMap.get(input);
+            }
+        };
         // Now start processing nodes
         for (DAGNode<V, E> toMerge: sorted) {
             V sat = toMerge.getLabel();
@@ -93,7 +121,7 @@ public class MergePool<V,E> {
             Set<DAGNode<V, E>> neighbors =
                     FluentIterable.from(toMerge.getOutgoingEdges())
                                   .transform(DAGEdge.<V,E>extractTail())
-                                  .transform(Functions.forMap(mergedMap))
+                                  .transform(mergedVersion)
                                   .toSet();
 
             // See if we have already created an equivalent to this node
@@ -108,7 +136,7 @@ public class MergePool<V,E> {
 
                 for (DAGEdge<V, E> edge: toMerge.getOutgoingEdges()) {
                     // create a new edge with the merged tail and same label
-                    DAGNode<V, E> filtered = mergedMap.get(edge.getTail());
+                    DAGNode<V, E> filtered = mergedVersion.apply(edge.getTail());
                     bld.addEdge(filtered, edge.getLabel());
                     // have we made a change to this node?
                     changed |= !filtered.equals(edge.getTail());
@@ -122,7 +150,9 @@ public class MergePool<V,E> {
                     // no edges were changed, leave the node unmodified
                     newNode = toMerge;
                 }
+                // remember the node for future merge operations
                 nodeTable.put(Pair.of(sat, neighbors), newNode);
+                pool.add(newNode);
             } else {
                 logger.debug("Node already in merged graph for satisfaction: {}", toMerge.getLabel());
             }
@@ -132,10 +162,24 @@ public class MergePool<V,E> {
         }
 
         // now let's find our return value - what did we merge the graph root to?
-        DAGNode<V, E> newRoot = mergedMap.get(graph);
-        // remember all its nodes for future merge operations
-        pool.addAll(newRoot.getReachableNodes());
-        // and we're done
-        return newRoot;
+        return mergedMap.get(graph);
+    }
+
+    /**
+     * Topologically sort the nodes reachable from a node, without descending into nodes that are
+     * already in the pool.
+     *
+     * @param node The node to visit.
+     * @param visited The nodes visited so far.
+     * @param sorted The list of sorted nodes to add to.
+     */
+    private void sortUnpooled(DAGNode<V,E> node, Set<DAGNode<V,E>> visited, List<DAGNode<V,E>> sorted) {
+        if (pool.contains(node) || !visited.add(node)) {
+            return;
+        }
+        for (DAGEdge<V,E> edge: node.getOutgoingEdges()) {
+            sortUnpooled(edge.getTail(), visited, sorted);
+        }
+        sorted.add(node);
     }
 }
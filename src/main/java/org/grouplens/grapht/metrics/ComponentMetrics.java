@@ -0,0 +1,261 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.metrics;
+
+import org.grouplens.grapht.Component;
+import org.grouplens.grapht.Dependency;
+import org.grouplens.grapht.Instrumentation;
+import org.grouplens.grapht.graph.DAGNode;
+import org.grouplens.grapht.reflect.Desire;
+import org.grouplens.grapht.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Instrumentation that collects per-component construction metrics: instantiation counts,
+ * construction times (excluding dependencies), and memoization hit and miss counts.  The metrics
+ * can be exposed as a JMX MBean with {@link #register()}.
+ *
+ * @see org.grouplens.grapht.InjectorBuilder#setMetricsEnabled(boolean)
+ * @since 0.11
+ */
+public class ComponentMetrics implements Instrumentation, ComponentMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(ComponentMetrics.class);
+    private static final AtomicInteger injectorCount = new AtomicInteger();
+    /**
+     * Histogram bucket bounds, in powers of ten from 1 microsecond to 1 second.
+     */
+    private static final long[] HISTOGRAM_BOUNDS = {
+            1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private final ConcurrentMap<Class<?>, Counters> counters =
+            new ConcurrentHashMap<Class<?>, Counters>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos) {}
+
+    @Override
+    public void graphMerged(DAGNode<Component, Dependency> graph, long nanos) {}
+
+    @Override
+    public void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos) {}
+
+    @Override
+    public void componentInstantiated(Class<?> type, long nanos, long selfNanos) {
+        getCounters(type).recordInstantiation(selfNanos);
+    }
+
+    @Override
+    public void memoizedInstanceRequested(Class<?> type, boolean hit) {
+        Counters c = getCounters(type);
+        if (hit) {
+            c.hits.incrementAndGet();
+        } else {
+            c.misses.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void componentDestroyed(Class<?> type, long nanos) {}
+
+    private Counters getCounters(Class<?> type) {
+        Counters c = counters.get(type);
+        if (c == null) {
+            c = new Counters();
+            Counters existing = counters.putIfAbsent(type, c);
+            if (existing != null) {
+                c = existing;
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public Map<String, ComponentStatistics> getComponentStatistics() {
+        Map<String, ComponentStatistics> stats = new TreeMap<String, ComponentStatistics>();
+        for (Map.Entry<Class<?>, Counters> e: counters.entrySet()) {
+            String name = e.getKey().getName();
+            stats.put(name, e.getValue().snapshot(name));
+        }
+        return stats;
+    }
+
+    /**
+     * Get the statistics for a component type.
+     * @param type The component type.
+     * @return The statistics for {@code type}.
+     */
+    public ComponentStatistics getComponentStatistics(Class<?> type) {
+        Counters c = counters.get(type);
+        if (c == null) {
+            c = new Counters();
+        }
+        return c.snapshot(type.getName());
+    }
+
+    @Override
+    public long getInstantiationCount() {
+        long n = 0;
+        for (Counters c: counters.values()) {
+            n += c.instantiations.get();
+        }
+        return n;
+    }
+
+    @Override
+    public long getMemoizedHitCount() {
+        long n = 0;
+        for (Counters c: counters.values()) {
+            n += c.hits.get();
+        }
+        return n;
+    }
+
+    @Override
+    public long getMemoizedMissCount() {
+        long n = 0;
+        for (Counters c: counters.values()) {
+            n += c.misses.get();
+        }
+        return n;
+    }
+
+    @Override
+    public long[] getHistogramBounds() {
+        return HISTOGRAM_BOUNDS.clone();
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, under the name
+     * {@code org.grouplens.grapht:type=ComponentMetrics,injector=<n>}.
+     *
+     * @return A registration that unregisters the MBean when it is closed.
+     * @throws JMException if the MBean cannot be registered.
+     */
+    public Registration register() throws JMException {
+        ObjectName name = new ObjectName("org.grouplens.grapht:type=ComponentMetrics,injector="
+                                                 + injectorCount.incrementAndGet());
+        return register(ManagementFactory.getPlatformMBeanServer(), name);
+    }
+
+    /**
+     * Register these metrics with an MBean server.
+     *
+     * @param server The MBean server.
+     * @param name The name to register the metrics under.
+     * @return A registration that unregisters the MBean when it is closed.
+     * @throws JMException if the MBean cannot be registered.
+     */
+    public Registration register(MBeanServer server, ObjectName name) throws JMException {
+        Preconditions.notNull("MBean server", server);
+        Preconditions.notNull("object name", name);
+        server.registerMBean(this, name);
+        logger.debug("registered component metrics as {}", name);
+        return new Registration(server, name);
+    }
+
+    /**
+     * The registration of a metrics MBean.  Closing the registration unregisters the MBean.
+     */
+    public static class Registration implements AutoCloseable {
+        private final MBeanServer server;
+        private final ObjectName name;
+
+        private Registration(MBeanServer srv, ObjectName n) {
+            server = srv;
+            name = n;
+        }
+
+        /**
+         * Get the name the MBean is registered under.
+         * @return The MBean's object name.
+         */
+        public ObjectName getName() {
+            return name;
+        }
+
+        @Override
+        public void close() throws JMException {
+            if (server.isRegistered(name)) {
+                logger.debug("unregistering component metrics {}", name);
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    /**
+     * Counters for a single component type.
+     */
+    private static class Counters {
+        final AtomicLong instantiations = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+
+        void recordInstantiation(long nanos) {
+            instantiations.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            int bucket = 0;
+            while (bucket < HISTOGRAM_BOUNDS.length && nanos >= HISTOGRAM_BOUNDS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        ComponentStatistics snapshot(String name) {
+            long[] hist = new long[histogram.length()];
+            for (int i = 0; i < hist.length; i++) {
+                hist[i] = histogram.get(i);
+            }
+            return new ComponentStatistics(name, instantiations.get(),
+                                           totalNanos.get(), maxNanos.get(), hist,
+                                           hits.get(), misses.get());
+        }
+    }
+}
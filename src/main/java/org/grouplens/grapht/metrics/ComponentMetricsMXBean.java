@@ -0,0 +1,66 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface for {@link ComponentMetrics}.
+ *
+ * @since 0.11
+ */
+public interface ComponentMetricsMXBean {
+    /**
+     * Get the statistics for each component type that has been instantiated or requested.
+     * @return A map of component class names to their statistics.
+     */
+    Map<String, ComponentStatistics> getComponentStatistics();
+
+    /**
+     * Get the total number of components instantiated.
+     * @return The number of instantiations of all component types.
+     */
+    long getInstantiationCount();
+
+    /**
+     * Get the total number of requests for memoized components satisfied by an existing instance.
+     * @return The number of memoization hits.
+     */
+    long getMemoizedHitCount();
+
+    /**
+     * Get the total number of requests for memoized components that required an instantiation.
+     * @return The number of memoization misses.
+     */
+    long getMemoizedMissCount();
+
+    /**
+     * Get the upper bounds of the construction time histogram buckets.
+     * @return The exclusive upper bound, in nanoseconds, of each bucket of
+     *         {@link ComponentStatistics#getConstructionTimeHistogram()} but the last, which is
+     *         unbounded.
+     */
+    long[] getHistogramBounds();
+
+    /**
+     * Discard all statistics collected so far.
+     */
+    void reset();
+}
@@ -0,0 +1,110 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the metrics collected for one component type.  Construction times exclude the
+ * time taken to construct the component's dependencies.
+ *
+ * @see ComponentMetrics
+ * @since 0.11
+ */
+public class ComponentStatistics {
+    private final String type;
+    private final long instantiationCount;
+    private final long totalConstructionNanos;
+    private final long maxConstructionNanos;
+    private final long[] constructionTimeHistogram;
+    private final long memoizedHitCount;
+    private final long memoizedMissCount;
+
+    @ConstructorProperties({"type", "instantiationCount", "totalConstructionNanos",
+                            "maxConstructionNanos", "constructionTimeHistogram",
+                            "memoizedHitCount", "memoizedMissCount"})
+    public ComponentStatistics(String type, long instantiationCount,
+                               long totalConstructionNanos, long maxConstructionNanos,
+                               long[] constructionTimeHistogram,
+                               long memoizedHitCount, long memoizedMissCount) {
+        this.type = type;
+        this.instantiationCount = instantiationCount;
+        this.totalConstructionNanos = totalConstructionNanos;
+        this.maxConstructionNanos = maxConstructionNanos;
+        this.constructionTimeHistogram = constructionTimeHistogram.clone();
+        this.memoizedHitCount = memoizedHitCount;
+        this.memoizedMissCount = memoizedMissCount;
+    }
+
+    /**
+     * @return The name of the component class.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return The number of times the component has been instantiated.
+     */
+    public long getInstantiationCount() {
+        return instantiationCount;
+    }
+
+    /**
+     * @return The total time spent constructing the component, in nanoseconds.
+     */
+    public long getTotalConstructionNanos() {
+        return totalConstructionNanos;
+    }
+
+    /**
+     * @return The longest time taken to construct the component, in nanoseconds.
+     */
+    public long getMaxConstructionNanos() {
+        return maxConstructionNanos;
+    }
+
+    /**
+     * @return The number of instantiations falling in each construction time bucket.
+     * @see ComponentMetricsMXBean#getHistogramBounds()
+     */
+    public long[] getConstructionTimeHistogram() {
+        return constructionTimeHistogram.clone();
+    }
+
+    /**
+     * @return The number of requests for the memoized component satisfied by an existing instance.
+     */
+    public long getMemoizedHitCount() {
+        return memoizedHitCount;
+    }
+
+    /**
+     * @return The number of requests for the memoized component that required an instantiation.
+     */
+    public long getMemoizedMissCount() {
+        return memoizedMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentStatistics(" + type + ", " + instantiationCount + " instantiations)";
+    }
+}
@@ -23,11 +23,12 @@ package org.grouplens.grapht.reflect.internal;
 import org.apache.commons.lang3.reflect.MethodUtils;
 import org.grouplens.grapht.ConstructionException;
 import org.grouplens.grapht.Instantiator;
+import org.grouplens.grapht.Instrumentation;
 import org.grouplens.grapht.LifecycleManager;
 import org.grouplens.grapht.NullDependencyException;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.InjectionPoint;
-import org.grouplens.grapht.util.LogContext;
+import org.grouplens.grapht.util.DiagnosticContext;
 import org.grouplens.grapht.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +48,16 @@ import java.util.Map;
  */
 public class ClassInstantiator implements Instantiator {
     private static final Logger logger = LoggerFactory.getLogger(ClassInstantiator.class);
+    /**
+     * Time spent by the current thread in instrumented instantiations nested within the
+     * instantiation in progress.
+     */
+    private static final ThreadLocal<long[]> dependencyTime = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
 
     private final Class<?> type;
     private final List<Desire> desires;
@@ -82,34 +93,66 @@ public class ClassInstantiator implements Instantiator {
 
     @Override
     public Object instantiate() throws ConstructionException {
+        Instrumentation instrumentation = manager != null ? manager.getInstrumentation() : null;
+        if (instrumentation == null || !instrumentation.isEnabled()) {
+            return construct();
+        }
+        // track the time spent in nested instantiations, to separate it from our own
+        long[] nested = dependencyTime.get();
+        long outer = nested[0];
+        nested[0] = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        long depTime;
+        Object instance;
+        try {
+            instance = construct();
+        } finally {
+            elapsed = System.nanoTime() - start;
+            depTime = nested[0];
+            nested[0] = outer + elapsed;
+        }
+        instrumentation.componentInstantiated(type, elapsed, elapsed - depTime);
+        return instance;
+    }
+
+    /**
+     * Construct and inject a new instance.
+     */
+    private Object construct() throws ConstructionException {
         // find constructor and build up necessary constructor arguments
 
         Constructor<?> ctor = getConstructor();
-        LogContext globalLogContext = LogContext.create();
+        DiagnosticContext context = DiagnosticContext.get();
         Object instance = null;
-        Method[] methods;
+        List<Method> methods;
 
+        int classMark = context.push("org.grouplens.grapht.class", type);
         try {
             // create the instance that we are injecting
             try {
-                globalLogContext.put("org.grouplens.grapht.class", ctor.getClass().toString());
                 Object[] ctorArgs = new Object[ctor.getParameterTypes().length];
                 for (Desire d : desires) {
-                    LogContext ipContext = LogContext.create();
                     if (d.getInjectionPoint() instanceof ConstructorParameterInjectionPoint) {
                         // this desire is a constructor argument so create it now
                         Instantiator provider = providers.get(d);
                         ConstructorParameterInjectionPoint cd = (ConstructorParameterInjectionPoint) d.getInjectionPoint();
-                        logger.trace("Injection point satisfactions in progress {}", cd);
+                        int ipMark = context.push("org.grouplens.grapht.injectionPoint", cd);
                         try {
-                            ipContext.put("org.grouplens.grapht.injectionPoint", cd.toString());
+                            if (logger.isTraceEnabled()) {
+                                context.exportToMDC();
+                                logger.trace("Injection point satisfactions in progress {}", cd);
+                            }
+                            ctorArgs[cd.getParameterIndex()] = checkNull(cd, provider.instantiate());
                         } finally {
-                            ipContext.finish();
+                            context.pop(ipMark);
                         }
-                        ctorArgs[cd.getParameterIndex()] = checkNull(cd, provider.instantiate());
                     }
                 }
-                logger.trace("Invoking constructor {} with arguments {}", ctor, ctorArgs);
+                if (logger.isTraceEnabled()) {
+                    context.exportToMDC();
+                    logger.trace("Invoking constructor {} with arguments {}", ctor, ctorArgs);
+                }
                 ctor.setAccessible(true);
                 instance = ctor.newInstance(ctorArgs);
             } catch (InvocationTargetException e) {
@@ -124,23 +167,27 @@ public class ClassInstantiator implements Instantiator {
             // prepared to comply with JSR 330
             Map<Method, InjectionArgs> settersAndArguments = new HashMap<Method, InjectionArgs>();
             for (Desire d : desires) {
-                LogContext ipContext = LogContext.create();
+                int ipMark = context.push("org.grouplens.grapht.injectionPoint", d.getInjectionPoint());
                 try {
                     final InjectionStrategy injectionStrategy = InjectionStrategy.forInjectionPoint(d.getInjectionPoint());
-                    ipContext.put("org.grouplens.grapht.injectionPoint", d.getInjectionPoint().toString());
                     injectionStrategy.inject(d.getInjectionPoint(), instance, providers.get(d), settersAndArguments);
                 } finally {
-                    ipContext.finish();
+                    context.pop(ipMark);
                 }
             }
         } finally {
-            globalLogContext.finish();
+            context.pop(classMark);
         }
         if (manager != null) {
             manager.registerComponent(instance);
         }
 
-        methods = MethodUtils.getMethodsWithAnnotation(type, PostConstruct.class);
+        InjectionIndex index = InjectionIndex.forClass(type);
+        if (index != null) {
+            methods = index.getPostConstructMethods();
+        } else {
+            methods = MethodUtils.getMethodsListWithAnnotation(type, PostConstruct.class);
+        }
         for(Method method:methods){
             method.setAccessible(true);
             try {
@@ -20,7 +20,9 @@
 package org.grouplens.grapht.reflect.internal;
 
 import org.grouplens.grapht.CachePolicy;
+import org.grouplens.grapht.ConstructionException;
 import org.grouplens.grapht.Instantiator;
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.LifecycleManager;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.Satisfaction;
@@ -29,6 +31,7 @@ import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
 
+import javax.annotation.Nullable;
 import javax.inject.Singleton;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
@@ -43,12 +46,24 @@ import java.util.Map;
 /**
  * ClassSatisfaction is a satisfaction that instantiates instances of a given
  * type.
+ * <p>
+ * Satisfactions deserialized while {@linkplain ClassProxy#deferResolution() resolution is
+ * deferred} are symbolic: they resolve and verify their class the first time it is needed,
+ * including when they are compared with a satisfaction of the same name.  If that fails, their instantiators throw {@link ConstructionException}; methods that cannot
+ * throw checked exceptions, such as {@link #getType()}, throw {@link InvalidBindingException}.
+ * </p>
  * 
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public class ClassSatisfaction implements Satisfaction, Serializable {
     private static final long serialVersionUID = -1L;
-    private final transient Class<?> type;
+    private transient volatile Class<?> type;
+    /**
+     * The unresolved class of a symbolic satisfaction, or {@code null} if it was created
+     * with its class.
+     */
+    @Nullable
+    private final transient ClassProxy typeProxy;
 
     /**
      * Create a satisfaction wrapping the given class type.
@@ -68,6 +83,60 @@ public class ClassSatisfaction implements Satisfaction, Serializable {
         }
 
         this.type = Types.box(type);
+        typeProxy = null;
+    }
+
+    /**
+     * Create a symbolic satisfaction.
+     * @param proxy The proxy for the satisfaction's class.
+     */
+    private ClassSatisfaction(ClassProxy proxy) {
+        typeProxy = proxy;
+    }
+
+    /**
+     * Query whether this satisfaction has resolved its class.
+     * @return {@code false} if this is a symbolic satisfaction whose class has not been needed.
+     */
+    boolean isResolved() {
+        return type != null;
+    }
+
+    /**
+     * Resolve the class of a symbolic satisfaction, verifying its checksum.
+     * @return The satisfaction's class.
+     * @throws ConstructionException if the class cannot be found or has changed since it was
+     *                               serialized.
+     */
+    private Class<?> loadType() throws ConstructionException {
+        Class<?> cls = type;
+        if (cls == null) {
+            assert typeProxy != null;
+            try {
+                cls = typeProxy.resolve();
+            } catch (ClassNotFoundException e) {
+                throw new ConstructionException("cannot resolve " + typeProxy.getClassName(), e);
+            }
+            type = cls;
+        }
+        return cls;
+    }
+
+    /**
+     * Resolve the satisfaction's class for methods that cannot report a checked exception.
+     * @throws InvalidBindingException if the class cannot be resolved.
+     */
+    private Class<?> resolveType() {
+        try {
+            return loadType();
+        } catch (ConstructionException e) {
+            throw new InvalidBindingException(null, e.getMessage(), e);
+        }
+    }
+
+    private String getTypeName() {
+        Class<?> cls = type;
+        return cls == null ? typeProxy.getClassName() : cls.getName();
     }
     
     @Override
@@ -77,17 +146,17 @@ public class ClassSatisfaction implements Satisfaction, Serializable {
     
     @Override
     public List<Desire> getDependencies() {
-        return ReflectionDesire.getDesires(type);
+        return ReflectionDesire.getDesires(resolveType());
     }
 
     @Override
     public Type getType() {
-        return type;
+        return resolveType();
     }
 
     @Override
     public Class<?> getErasedType() {
-        return type;
+        return resolveType();
     }
 
     @Override
@@ -97,35 +166,55 @@ public class ClassSatisfaction implements Satisfaction, Serializable {
 
     @Override
     public <T> T visit(SatisfactionVisitor<T> visitor) {
-        return visitor.visitClass(type);
+        return visitor.visitClass(resolveType());
     }
 
     @Override
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public Instantiator makeInstantiator(Map<Desire,Instantiator> dependencies, LifecycleManager lm) {
-        return new ClassInstantiator(type, getDependencies(), dependencies, lm);
+        Class<?> cls;
+        try {
+            cls = loadType();
+        } catch (ConstructionException e) {
+            return new UnresolvedInstantiator(e);
+        }
+        return new ClassInstantiator(cls, ReflectionDesire.getDesires(cls), dependencies, lm);
     }
     
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof ClassSatisfaction)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ClassSatisfaction)) {
+            return false;
+        }
+        ClassSatisfaction os = (ClassSatisfaction) o;
+        if (!os.getTypeName().equals(getTypeName())) {
+            return false;
+        }
+        // same-named classes from different loaders differ, so symbolic satisfactions
+        // must be resolved to be compared
+        try {
+            return os.loadType().equals(loadType());
+        } catch (ConstructionException e) {
+            // an unresolvable satisfaction is only equal to itself
             return false;
         }
-        return ((ClassSatisfaction) o).type.equals(type);
     }
     
     @Override
     public int hashCode() {
-        return type.hashCode();
+        return getTypeName().hashCode();
     }
     
     @Override
     public String toString() {
-        return "Class(" + type.getName() + ")";
+        return "Class(" + getTypeName() + ")";
     }
 
     private Object writeReplace() {
-        return new SerialProxy(type);
+        Class<?> cls = type;
+        return cls == null ? new SerialProxy(typeProxy) : new SerialProxy(cls);
     }
 
     private void readObject(ObjectInputStream stream) throws ObjectStreamException {
@@ -141,7 +230,14 @@ public class ClassSatisfaction implements Satisfaction, Serializable {
             type = ClassProxy.of(cls);
         }
 
+        public SerialProxy(ClassProxy proxy) {
+            type = proxy;
+        }
+
         private Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new ClassSatisfaction(type);
+            }
             try {
                 return new ClassSatisfaction(type.resolve());
             } catch (ClassNotFoundException e) {
@@ -19,7 +19,9 @@
  */
 package org.grouplens.grapht.reflect.internal;
 
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.InjectionPoint;
+import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.ConstructorProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
@@ -37,6 +39,11 @@ import java.util.Collection;
 /**
  * ConstructorParameterInjectionPoint is an injection point wrapping a parameter
  * of a constructor.
+ * <p>
+ * Injection points deserialized while {@linkplain ClassProxy#deferResolution() resolution is
+ * deferred} are symbolic: they resolve their constructor the first time it is needed.  Their
+ * hash codes depend only on class and member names, so hashing does not resolve them.
+ * </p>
  *
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
@@ -44,9 +51,15 @@ public class ConstructorParameterInjectionPoint implements InjectionPoint, Seria
     private static final long serialVersionUID = -1L;
 
     // transient because of serialization proxy
-    private final transient Constructor<?> constructor;
+    private transient volatile Constructor<?> constructor;
+    /**
+     * The unresolved constructor of a symbolic injection point, or {@code null} if it was
+     * created with its constructor.
+     */
+    @Nullable
+    private final transient ConstructorProxy constructorProxy;
     private final transient int paramIndex;
-    private final transient AnnotationHelper annotations;
+    private transient volatile AnnotationHelper annotations;
 
     /**
      * Create a ConstructorParameterInjectionPoint that wraps the given parameter index for the
@@ -63,16 +76,40 @@ public class ConstructorParameterInjectionPoint implements InjectionPoint, Seria
         Preconditions.inRange(pIndex, 0, ctor.getParameterTypes().length);
 
         constructor = ctor;
+        constructorProxy = null;
         paramIndex = pIndex;
         annotations = new AnnotationHelper(ctor.getParameterAnnotations()[pIndex]);
     }
 
+    /**
+     * Create a symbolic injection point.
+     */
+    private ConstructorParameterInjectionPoint(ConstructorProxy proxy, int pIndex) {
+        constructorProxy = proxy;
+        paramIndex = pIndex;
+    }
+
     /**
      * @return The constructor wrapped by this injection point
+     * @throws InvalidBindingException if this is a symbolic injection point whose constructor
+     *                                 cannot be resolved.
      */
     @Override @Nonnull
     public Constructor<?> getMember() {
-        return constructor;
+        Constructor<?> ctor = constructor;
+        if (ctor == null) {
+            assert constructorProxy != null;
+            constructor = ctor = SymbolicMembers.resolve(constructorProxy);
+        }
+        return ctor;
+    }
+
+    private AnnotationHelper getAnnotations() {
+        AnnotationHelper helper = annotations;
+        if (helper == null) {
+            annotations = helper = new AnnotationHelper(getMember().getParameterAnnotations()[paramIndex]);
+        }
+        return helper;
     }
 
     /**
@@ -85,69 +122,89 @@ public class ConstructorParameterInjectionPoint implements InjectionPoint, Seria
 
     @Override
     public boolean isNullable() {
-        return Types.hasNullableAnnotation(constructor.getParameterAnnotations()[paramIndex]);
+        return Types.hasNullableAnnotation(getMember().getParameterAnnotations()[paramIndex]);
     }
 
     @Override
     public Type getType() {
-        return Types.box(constructor.getGenericParameterTypes()[paramIndex]);
+        return Types.box(getMember().getGenericParameterTypes()[paramIndex]);
     }
 
     @Override
     public Class<?> getErasedType() {
-        return Types.box(constructor.getParameterTypes()[paramIndex]);
+        return Types.box(getMember().getParameterTypes()[paramIndex]);
     }
 
     @Nullable
     @Override
     public Annotation getQualifier() {
-        return annotations.getQualifier();
+        return getAnnotations().getQualifier();
     }
 
     @Nullable
     @Override
     public <A extends Annotation> A getAttribute(Class<A> atype) {
-        return annotations.getAttribute(atype);
+        return getAnnotations().getAttribute(atype);
     }
 
     @Nonnull
     @Override
     public Collection<Annotation> getAttributes() {
-        return annotations.getAttributes();
+        return getAnnotations().getAttributes();
+    }
+
+    private String getDeclaringClassName() {
+        Constructor<?> ctor = constructor;
+        return ctor == null ? constructorProxy.getDeclaringClassName() : ctor.getDeclaringClass().getName();
     }
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof ConstructorParameterInjectionPoint)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ConstructorParameterInjectionPoint)) {
             return false;
         }
         ConstructorParameterInjectionPoint cp = (ConstructorParameterInjectionPoint) o;
-        return cp.constructor.equals(constructor) && cp.paramIndex == paramIndex;
+        if (cp.paramIndex != paramIndex || cp.hashCode() != hashCode()) {
+            return false;
+        }
+        try {
+            return cp.getMember().equals(getMember());
+        } catch (InvalidBindingException e) {
+            // an unresolvable injection point is only equal to itself
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return constructor.hashCode() ^ (37 * 17 * paramIndex);
+        // the same as the constructor's hash code, but available without resolving it
+        return getDeclaringClassName().hashCode() ^ (37 * 17 * paramIndex);
     }
 
     @Override
     public String toString() {
+        Constructor<?> ctor = constructor;
+        if (ctor == null) {
+            return "constructor " + constructorProxy + " arg" + paramIndex;
+        }
         StringBuilder sb = new StringBuilder();
         // constructor Foo(..., @Qual Type argN, ...)
         sb.append("constructor ")
-          .append(constructor.getName())
+          .append(ctor.getName())
           .append("(");
         if (paramIndex > 0) {
             sb.append("..., ");
         }
-        if (annotations.getQualifier() != null) {
-            sb.append(annotations.getQualifier())
+        if (getQualifier() != null) {
+            sb.append(getQualifier())
               .append(" ");
         }
-        sb.append(constructor.getParameterTypes()[paramIndex].getName())
+        sb.append(ctor.getParameterTypes()[paramIndex].getName())
           .append(" arg")
           .append(paramIndex);
-        if (paramIndex < constructor.getParameterTypes().length) {
+        if (paramIndex < ctor.getParameterTypes().length) {
             sb.append(", ...");
         }
         sb.append(")");
@@ -156,7 +213,8 @@ public class ConstructorParameterInjectionPoint implements InjectionPoint, Seria
     }
 
     private Object writeReplace() {
-        return new SerialProxy(constructor, paramIndex);
+        Constructor<?> ctor = constructor;
+        return new SerialProxy(ctor == null ? constructorProxy : ConstructorProxy.of(ctor), paramIndex);
     }
 
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
@@ -169,12 +227,15 @@ public class ConstructorParameterInjectionPoint implements InjectionPoint, Seria
         private final ConstructorProxy constructor;
         private final int index;
 
-        public SerialProxy(Constructor ctor, int idx) {
-            constructor = ConstructorProxy.of(ctor);
+        public SerialProxy(ConstructorProxy ctor, int idx) {
+            constructor = ctor;
             index = idx;
         }
 
         private Object readResolve() throws InvalidObjectException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new ConstructorParameterInjectionPoint(constructor, index);
+            }
             try {
                 return new ConstructorParameterInjectionPoint(constructor.resolve(), index);
             } catch (ClassNotFoundException e) {
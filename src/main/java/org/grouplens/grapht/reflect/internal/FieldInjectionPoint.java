@@ -19,7 +19,9 @@
  */
 package org.grouplens.grapht.reflect.internal;
 
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.InjectionPoint;
+import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.FieldProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
@@ -36,14 +38,25 @@ import java.util.Collection;
 
 /**
  * FieldInjectionPoint is an injection point wrapping a field.
+ * <p>
+ * Injection points deserialized while {@linkplain ClassProxy#deferResolution() resolution is
+ * deferred} are symbolic: they resolve their field the first time it is needed.  Their hash
+ * codes depend only on class and member names, so hashing does not resolve them.
+ * </p>
  *
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public final class FieldInjectionPoint implements InjectionPoint, Serializable {
     private static final long serialVersionUID = -1L;
     // transient because we use a serialization proxy
-    private final transient Field field;
-    private final transient AnnotationHelper annotations;
+    private transient volatile Field field;
+    /**
+     * The unresolved field of a symbolic injection point, or {@code null} if it was created
+     * with its field.
+     */
+    @Nullable
+    private final transient FieldProxy fieldProxy;
+    private transient volatile AnnotationHelper annotations;
 
     /**
      * Create an injection point wrapping the given field
@@ -54,76 +67,122 @@ public final class FieldInjectionPoint implements InjectionPoint, Serializable {
     public FieldInjectionPoint(@Nonnull Field field) {
         Preconditions.notNull("field", field);
         this.field = field;
+        fieldProxy = null;
         annotations = new AnnotationHelper(field.getAnnotations());
     }
 
+    /**
+     * Create a symbolic injection point.
+     */
+    private FieldInjectionPoint(FieldProxy proxy) {
+        fieldProxy = proxy;
+    }
+
+    private AnnotationHelper getAnnotations() {
+        AnnotationHelper helper = annotations;
+        if (helper == null) {
+            annotations = helper = new AnnotationHelper(getMember().getAnnotations());
+        }
+        return helper;
+    }
+
     @Override
     public Type getType() {
-        return Types.box(field.getGenericType());
+        return Types.box(getMember().getGenericType());
     }
 
     @Override
     public Class<?> getErasedType() {
-        return Types.box(field.getType());
+        return Types.box(getMember().getType());
     }
 
     @Nullable
     @Override
     public Annotation getQualifier() {
-        return annotations.getQualifier();
+        return getAnnotations().getQualifier();
     }
 
     @Nullable
     @Override
     public <A extends Annotation> A getAttribute(Class<A> atype) {
-        return annotations.getAttribute(atype);
+        return getAnnotations().getAttribute(atype);
     }
 
     @Nonnull
     @Override
     public Collection<Annotation> getAttributes() {
-        return annotations.getAttributes();
+        return getAnnotations().getAttributes();
     }
 
+    /**
+     * @return The field wrapped by this injection point
+     * @throws InvalidBindingException if this is a symbolic injection point whose field cannot
+     *                                 be resolved.
+     */
     @Override @Nonnull
     public Field getMember() {
-        return field;
+        Field f = field;
+        if (f == null) {
+            assert fieldProxy != null;
+            field = f = SymbolicMembers.resolve(fieldProxy);
+        }
+        return f;
     }
 
     @Override
     public boolean isNullable() {
-        return Types.hasNullableAnnotation(field.getAnnotations());
+        return Types.hasNullableAnnotation(getMember().getAnnotations());
     }
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof FieldInjectionPoint)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof FieldInjectionPoint)) {
+            return false;
+        }
+        FieldInjectionPoint p = (FieldInjectionPoint) o;
+        if (p.hashCode() != hashCode()) {
+            return false;
+        }
+        try {
+            return p.getMember().equals(getMember());
+        } catch (InvalidBindingException e) {
+            // an unresolvable injection point is only equal to itself
             return false;
         }
-        return ((FieldInjectionPoint) o).field.equals(field);
     }
 
     @Override
     public int hashCode() {
-        return field.hashCode();
+        // the same as the field's hash code, but available without resolving it
+        Field f = field;
+        return f == null
+                ? fieldProxy.getDeclaringClassName().hashCode() ^ fieldProxy.getName().hashCode()
+                : f.hashCode();
     }
 
     @Override
     public String toString() {
+        Field f = field;
+        if (f == null) {
+            return "field " + fieldProxy;
+        }
         StringBuilder sb = new StringBuilder();
         sb.append("field ");
         if (getQualifier() != null) {
             sb.append(getQualifier())
               .append(" ");
         }
-        sb.append(field.getType().toString())
+        sb.append(f.getType().toString())
           .append(" ")
-          .append(field.getName());
+          .append(f.getName());
         return sb.toString();
     }
 
     private Object writeReplace() {
-        return new SerialProxy(field);
+        Field f = field;
+        return new SerialProxy(f == null ? fieldProxy : FieldProxy.of(f));
     }
 
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
@@ -135,11 +194,14 @@ public final class FieldInjectionPoint implements InjectionPoint, Serializable {
 
         private final FieldProxy field;
 
-        public SerialProxy(Field f) {
-            field = FieldProxy.of(f);
+        public SerialProxy(FieldProxy f) {
+            field = f;
         }
 
         private Object readResolve() throws InvalidObjectException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new FieldInjectionPoint(field);
+            }
             try {
                 return new FieldInjectionPoint(field.resolve());
             } catch (ClassNotFoundException e) {
@@ -0,0 +1,293 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.reflect.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.grouplens.grapht.annotation.InjectionIndexProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.*;
+
+/**
+ * Compile-time injection metadata for a class, read from the index written by
+ * {@link InjectionIndexProcessor}.  The index lets Grapht find a class's injection points and
+ * lifecycle methods with direct member lookups instead of reflectively scanning every member of
+ * the class and its superclasses.
+ *
+ * <p>Index entries are resolved lazily and cached per class.  If a class is not indexed, or its
+ * entry cannot be resolved (e.g. because the index is stale), {@link #forClass(Class)} returns
+ * {@code null} and callers fall back to reflection.  An entry is also ignored if any of the
+ * class's superclasses was loaded from a different location than the class itself: such a
+ * superclass was compiled separately, and its injection points may have changed since the index
+ * was written.
+ *
+ * @since 0.11
+ */
+public final class InjectionIndex {
+    private static final Logger logger = LoggerFactory.getLogger(InjectionIndex.class);
+    private static final Map<String, Class<?>> PRIMITIVES;
+
+    static {
+        ImmutableMap.Builder<String, Class<?>> bld = ImmutableMap.builder();
+        for (Class<?> type: new Class<?>[]{boolean.class, byte.class, char.class, short.class,
+                                           int.class, long.class, float.class, double.class}) {
+            bld.put(type.getName(), type);
+        }
+        PRIMITIVES = bld.build();
+    }
+
+    /**
+     * Raw index entries for each class loader, keyed by class name.
+     */
+    private static final Map<ClassLoader, Map<String, List<String[]>>> loaderEntries =
+            new WeakHashMap<ClassLoader, Map<String, List<String[]>>>();
+
+    private static final ClassValue<InjectionIndex> classIndexes = new ClassValue<InjectionIndex>() {
+        @Override
+        protected InjectionIndex computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    @Nullable
+    private final Constructor<?> constructor;
+    private final List<Member> members;
+    private final List<Method> postConstructMethods;
+    private final List<Method> preDestroyMethods;
+
+    private InjectionIndex(@Nullable Constructor<?> ctor, List<Member> mems,
+                           List<Method> postConstruct, List<Method> preDestroy) {
+        constructor = ctor;
+        members = mems;
+        postConstructMethods = postConstruct;
+        preDestroyMethods = preDestroy;
+    }
+
+    /**
+     * Get the indexed injection metadata for a class.
+     * @param type The class.
+     * @return The class's injection metadata, or {@code null} if the class is not indexed.
+     */
+    @Nullable
+    public static InjectionIndex forClass(Class<?> type) {
+        return classIndexes.get(type);
+    }
+
+    /**
+     * Get the constructor annotated with {@code @Inject}.
+     * @return The injectable constructor, or {@code null} if the class has none.
+     */
+    @Nullable
+    public Constructor<?> getConstructor() {
+        return constructor;
+    }
+
+    /**
+     * Get the injectable fields and methods, in the order in which they are to be injected.
+     * @return The injectable {@link java.lang.reflect.Field}s and {@link Method}s.
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * Get the public {@code @PostConstruct} methods.
+     * @return The methods to invoke after the instance is constructed.
+     */
+    public List<Method> getPostConstructMethods() {
+        return postConstructMethods;
+    }
+
+    /**
+     * Get the public {@code @PreDestroy} methods.
+     * @return The methods to invoke when the instance is torn down.
+     */
+    public List<Method> getPreDestroyMethods() {
+        return preDestroyMethods;
+    }
+
+    @Nullable
+    private static InjectionIndex resolve(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        List<String[]> lines = getEntries(loader).get(type.getName());
+        if (lines == null) {
+            return null;
+        }
+
+        Constructor<?> ctor = null;
+        ImmutableList.Builder<Member> members = ImmutableList.builder();
+        ImmutableList.Builder<Method> postConstruct = ImmutableList.builder();
+        ImmutableList.Builder<Method> preDestroy = ImmutableList.builder();
+        try {
+            for (String[] line: lines) {
+                String kind = line[0];
+                if (kind.equals("super")) {
+                    if (!checkSuperclasses(type, line)) {
+                        return null;
+                    }
+                } else if (kind.equals("constructor")) {
+                    ctor = type.getDeclaredConstructor(parameterTypes(line, 1, loader));
+                } else if (kind.equals("field")) {
+                    members.add(declaringClass(type, line[1]).getDeclaredField(line[2]));
+                } else if (kind.equals("method")) {
+                    members.add(declaringClass(type, line[1]).getDeclaredMethod(line[2], parameterTypes(line, 3, loader)));
+                } else if (kind.equals("postconstruct")) {
+                    postConstruct.add(declaringClass(type, line[1]).getDeclaredMethod(line[2]));
+                } else if (kind.equals("predestroy")) {
+                    preDestroy.add(declaringClass(type, line[1]).getDeclaredMethod(line[2]));
+                } else {
+                    logger.warn("unknown injection index entry {} for {}", kind, type);
+                    return null;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            logger.warn("injection index for {} is stale, using reflection: {}", type, e.toString());
+            return null;
+        } catch (NoSuchMethodException e) {
+            logger.warn("injection index for {} is stale, using reflection: {}", type, e.toString());
+            return null;
+        } catch (NoSuchFieldException e) {
+            logger.warn("injection index for {} is stale, using reflection: {}", type, e.toString());
+            return null;
+        }
+        return new InjectionIndex(ctor, members.build(), postConstruct.build(), preDestroy.build());
+    }
+
+    /**
+     * Check a type's superclasses against the chain recorded in its index entry.
+     * @return {@code true} if the superclasses are the ones the index was compiled against.
+     */
+    private static boolean checkSuperclasses(Class<?> type, String[] line) {
+        URL location = location(type);
+        int i = 1;
+        for (Class<?> c = type.getSuperclass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            if (i >= line.length || !c.getName().equals(line[i])) {
+                logger.warn("injection index for {} has a stale superclass chain, using reflection", type);
+                return false;
+            }
+            i++;
+            // JDK superclasses have no injection points, but others may have changed
+            if (c.getClassLoader() != null && (location == null || !location.equals(location(c)))) {
+                logger.debug("superclass {} of {} was compiled separately, using reflection", c, type);
+                return false;
+            }
+        }
+        if (i != line.length) {
+            logger.warn("injection index for {} has a stale superclass chain, using reflection", type);
+            return false;
+        }
+        return true;
+    }
+
+    @Nullable
+    private static URL location(Class<?> type) {
+        ProtectionDomain domain = type.getProtectionDomain();
+        CodeSource source = domain == null ? null : domain.getCodeSource();
+        return source == null ? null : source.getLocation();
+    }
+
+    /**
+     * Find a class among a type and its superclasses.
+     */
+    private static Class<?> declaringClass(Class<?> type, String name) throws ClassNotFoundException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (c.getName().equals(name)) {
+                return c;
+            }
+        }
+        // a public lifecycle method can be declared by an interface
+        return Class.forName(name, false, type.getClassLoader());
+    }
+
+    private static Class<?>[] parameterTypes(String[] line, int start, ClassLoader loader) throws ClassNotFoundException {
+        Class<?>[] types = new Class<?>[line.length - start];
+        for (int i = start; i < line.length; i++) {
+            Class<?> prim = PRIMITIVES.get(line[i]);
+            types[i - start] = prim != null ? prim : Class.forName(line[i], false, loader);
+        }
+        return types;
+    }
+
+    /**
+     * Get the raw index entries visible to a class loader, loading them on first use.
+     */
+    private static Map<String, List<String[]>> getEntries(ClassLoader loader) {
+        synchronized (loaderEntries) {
+            Map<String, List<String[]>> entries = loaderEntries.get(loader);
+            if (entries == null) {
+                entries = loadEntries(loader);
+                loaderEntries.put(loader, entries);
+            }
+            return entries;
+        }
+    }
+
+    private static Map<String, List<String[]>> loadEntries(ClassLoader loader) {
+        Map<String, List<String[]>> entries = new HashMap<String, List<String[]>>();
+        try {
+            Enumeration<URL> urls = loader.getResources(InjectionIndexProcessor.INDEX_RESOURCE);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                logger.debug("reading injection index {}", url);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+                try {
+                    List<String[]> current = null;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty() || line.startsWith("#")) {
+                            continue;
+                        }
+                        String[] fields = line.split("\t");
+                        if (fields[0].equals("class")) {
+                            current = new ArrayList<String[]>();
+                            // the first index on the class path wins, like class loading
+                            if (!entries.containsKey(fields[1])) {
+                                entries.put(fields[1], current);
+                            }
+                        } else if (current != null) {
+                            current.add(fields);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("error reading injection index, using reflection", e);
+            return Collections.emptyMap();
+        }
+        return entries;
+    }
+}
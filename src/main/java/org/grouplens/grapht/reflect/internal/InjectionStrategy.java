@@ -29,7 +29,6 @@ package org.grouplens.grapht.reflect.internal;
 import org.grouplens.grapht.ConstructionException;
 import org.grouplens.grapht.Instantiator;
 import org.grouplens.grapht.reflect.InjectionPoint;
-import org.grouplens.grapht.util.LogContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +19,9 @@
  */
 package org.grouplens.grapht.reflect.internal;
 
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.InjectionPoint;
+import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.MethodProxy;
 import org.grouplens.grapht.util.Preconditions;
 
@@ -37,7 +39,14 @@ import java.util.Collections;
 
 public class NoArgumentInjectionPoint implements InjectionPoint, Serializable {
     private static final long serialVersionUID = -1L;
-    private final transient Method method;
+    private transient volatile Method method;
+    /**
+     * The unresolved method of a symbolic injection point, deserialized while
+     * {@linkplain ClassProxy#deferResolution() resolution is deferred}, or {@code null} if it
+     * was created with its method.
+     */
+    @Nullable
+    private final transient MethodProxy methodProxy;
 
     /**
      * Create a NoArgumentInjectionPoint that wraps the given no-argument
@@ -52,14 +61,29 @@ public class NoArgumentInjectionPoint implements InjectionPoint, Serializable {
         }
 
         this.method = method;
+        methodProxy = null;
+    }
+
+    /**
+     * Create a symbolic injection point.
+     */
+    private NoArgumentInjectionPoint(MethodProxy proxy) {
+        methodProxy = proxy;
     }
 
     /**
      * @return The setter method wrapped by this injection point
+     * @throws InvalidBindingException if this is a symbolic injection point whose method
+     *                                 cannot be resolved.
      */
     @Override @Nonnull
     public Method getMember() {
-        return method;
+        Method m = method;
+        if (m == null) {
+            assert methodProxy != null;
+            method = m = SymbolicMembers.resolve(methodProxy);
+        }
+        return m;
     }
 
     @Override
@@ -96,25 +120,41 @@ public class NoArgumentInjectionPoint implements InjectionPoint, Serializable {
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof NoArgumentInjectionPoint)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof NoArgumentInjectionPoint)) {
             return false;
         }
         NoArgumentInjectionPoint p = (NoArgumentInjectionPoint) o;
-        return p.method.equals(method) && p.method == method;
+        if (p.hashCode() != hashCode()) {
+            return false;
+        }
+        try {
+            return p.getMember().equals(getMember());
+        } catch (InvalidBindingException e) {
+            // an unresolvable injection point is only equal to itself
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return method.hashCode();
+        // the same as the method's hash code, but available without resolving it
+        Method m = method;
+        return m == null
+                ? methodProxy.getDeclaringClassName().hashCode() ^ methodProxy.getName().hashCode()
+                : m.hashCode();
     }
 
     @Override
     public String toString() {
-        return method.toString();
+        Method m = method;
+        return m == null ? methodProxy.toString() : m.toString();
     }
 
     private Object writeReplace() {
-        return new SerialProxy(method);
+        Method m = method;
+        return new SerialProxy(m == null ? methodProxy : MethodProxy.of(m));
     }
 
     private void readObject(ObjectInputStream stream) throws ObjectStreamException {
@@ -124,11 +164,14 @@ public class NoArgumentInjectionPoint implements InjectionPoint, Serializable {
     private static class SerialProxy implements Serializable {
         private static final long serialVersionUID = 1L;
         private final MethodProxy method;
-        public SerialProxy(Method m) {
-            method = MethodProxy.of(m);
+        public SerialProxy(MethodProxy m) {
+            method = m;
         }
 
         private Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new NoArgumentInjectionPoint(method);
+            }
             try {
                 return new NoArgumentInjectionPoint(method.resolve());
             } catch (ClassNotFoundException e) {
@@ -25,6 +25,7 @@ import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
 
+import javax.annotation.Nullable;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import java.io.InvalidObjectException;
@@ -39,12 +40,23 @@ import java.util.Map;
 /**
  * ProviderClassSatisfaction is a satisfaction implementation that satisfies a
  * type given a {@link Provider} class capable of providing that type.
+ * <p>
+ * Like {@link ClassSatisfaction}, provider satisfactions deserialized while
+ * {@linkplain ClassProxy#deferResolution() resolution is deferred} are symbolic, and report
+ * resolution failures in the same way.
+ * </p>
  * 
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public class ProviderClassSatisfaction implements Satisfaction, Serializable {
     private static final long serialVersionUID = -1L;
-    private final transient Class<? extends Provider<?>> providerType;
+    private transient volatile Class<? extends Provider<?>> providerType;
+    /**
+     * The unresolved provider class of a symbolic satisfaction, or {@code null} if it was
+     * created with its class.
+     */
+    @Nullable
+    private final transient ClassProxy providerProxy;
 
     /**
      * Create a ProviderClassSatisfaction that wraps a given provider type.
@@ -65,6 +77,63 @@ public class ProviderClassSatisfaction implements Satisfaction, Serializable {
         }
         
         this.providerType = providerType;
+        providerProxy = null;
+    }
+
+    /**
+     * Create a symbolic satisfaction.
+     * @param proxy The proxy for the provider class.
+     */
+    private ProviderClassSatisfaction(ClassProxy proxy) {
+        providerProxy = proxy;
+    }
+
+    /**
+     * Query whether this satisfaction has resolved its provider class.
+     * @return {@code false} if this is a symbolic satisfaction whose class has not been needed.
+     */
+    boolean isResolved() {
+        return providerType != null;
+    }
+
+    /**
+     * Resolve the provider class of a symbolic satisfaction, verifying its checksum.
+     * @return The provider class.
+     * @throws ConstructionException if the class cannot be found, has changed since it was
+     *                               serialized, or is not a provider.
+     */
+    @SuppressWarnings("unchecked")
+    private Class<? extends Provider<?>> loadType() throws ConstructionException {
+        Class<? extends Provider<?>> cls = providerType;
+        if (cls == null) {
+            assert providerProxy != null;
+            try {
+                cls = (Class<? extends Provider<?>>) providerProxy.resolve().asSubclass(Provider.class);
+            } catch (ClassNotFoundException e) {
+                throw new ConstructionException("cannot resolve " + providerProxy.getClassName(), e);
+            } catch (ClassCastException e) {
+                throw new ConstructionException("class " + providerProxy.getClassName() + " is not a provider", e);
+            }
+            providerType = cls;
+        }
+        return cls;
+    }
+
+    /**
+     * Resolve the provider class for methods that cannot report a checked exception.
+     * @throws InvalidBindingException if the class cannot be resolved.
+     */
+    private Class<? extends Provider<?>> resolveType() {
+        try {
+            return loadType();
+        } catch (ConstructionException e) {
+            throw new InvalidBindingException(null, e.getMessage(), e);
+        }
+    }
+
+    private String getTypeName() {
+        Class<?> cls = providerType;
+        return cls == null ? providerProxy.getClassName() : cls.getName();
     }
     
     @Override
@@ -77,17 +146,17 @@ public class ProviderClassSatisfaction implements Satisfaction, Serializable {
      *         satisfaction
      */
     public Class<? extends Provider<?>> getProviderType() {
-        return providerType;
+        return resolveType();
     }
     
     @Override
     public List<Desire> getDependencies() {
-        return ReflectionDesire.getDesires(providerType);
+        return ReflectionDesire.getDesires(resolveType());
     }
 
     @Override
     public Type getType() {
-        return Types.getProvidedType(providerType);
+        return Types.getProvidedType(resolveType());
     }
 
     @Override
@@ -102,7 +171,7 @@ public class ProviderClassSatisfaction implements Satisfaction, Serializable {
 
     @Override
     public <T> T visit(SatisfactionVisitor<T> visitor) {
-        return visitor.visitProviderClass(providerType);
+        return visitor.visitProviderClass(resolveType());
     }
 
     @Override
@@ -111,31 +180,51 @@ public class ProviderClassSatisfaction implements Satisfaction, Serializable {
                                          LifecycleManager lm) {
         // we have to use the raw type because we don't have enough information,
         // but we can assume correctly that it will build a provider
-        ClassInstantiator providerBuilder = new ClassInstantiator(providerType, getDependencies(),
+        Class<? extends Provider<?>> cls;
+        try {
+            cls = loadType();
+        } catch (ConstructionException e) {
+            return new UnresolvedInstantiator(e);
+        }
+        ClassInstantiator providerBuilder = new ClassInstantiator(cls, ReflectionDesire.getDesires(cls),
                                                                   dependencies, lm);
         return Instantiators.ofProviderInstantiator(providerBuilder);
     }
     
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof ProviderClassSatisfaction)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ProviderClassSatisfaction)) {
+            return false;
+        }
+        ProviderClassSatisfaction os = (ProviderClassSatisfaction) o;
+        if (!os.getTypeName().equals(getTypeName())) {
+            return false;
+        }
+        // same-named classes from different loaders differ, so symbolic satisfactions
+        // must be resolved to be compared
+        try {
+            return os.loadType().equals(loadType());
+        } catch (ConstructionException e) {
+            // an unresolvable satisfaction is only equal to itself
             return false;
         }
-        return ((ProviderClassSatisfaction) o).providerType.equals(providerType);
     }
     
     @Override
     public int hashCode() {
-        return providerType.hashCode();
+        return getTypeName().hashCode();
     }
     
     @Override
     public String toString() {
-        return "Provider(" + providerType.getName() + ")";
+        return "Provider(" + getTypeName() + ")";
     }
 
     private Object writeReplace() {
-        return new SerialProxy(providerType);
+        Class<?> cls = providerType;
+        return cls == null ? new SerialProxy(providerProxy) : new SerialProxy(cls);
     }
 
     private void readObject(ObjectInputStream stream) throws ObjectStreamException {
@@ -151,8 +240,15 @@ public class ProviderClassSatisfaction implements Satisfaction, Serializable {
             providerType = ClassProxy.of(cls);
         }
 
+        public SerialProxy(ClassProxy proxy) {
+            providerType = proxy;
+        }
+
         @SuppressWarnings("unchecked")
         private Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new ProviderClassSatisfaction(providerType);
+            }
             try {
                 return new ProviderClassSatisfaction((Class<? extends Provider<?>>) providerType.resolve().asSubclass(Provider.class));
             } catch (ClassNotFoundException e) {
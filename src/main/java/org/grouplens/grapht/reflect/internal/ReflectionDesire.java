@@ -20,6 +20,7 @@
 package org.grouplens.grapht.reflect.internal;
 
 import com.google.common.collect.Lists;
+import org.apache.commons.lang3.ClassUtils;
 import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.InjectionPoint;
@@ -28,6 +29,7 @@ import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
@@ -40,6 +42,12 @@ import java.util.*;
  * ReflectionDesire is an implementation of desire that contains all necessary
  * implementation to represent a desire, except that the point of injection is
  * abstracted by an {@link InjectionPoint}.
+ * <p>
+ * Desires deserialized while {@linkplain ClassProxy#deferResolution() resolution is deferred}
+ * are symbolic, like their injection points and satisfactions: they resolve their desired type
+ * the first time it is needed.  Hash codes use class names, so hashing a desire (for example,
+ * while reading a graph's edge sets) does not resolve it.
+ * </p>
  * 
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
@@ -55,6 +63,11 @@ public class ReflectionDesire implements Desire, Serializable {
      * @throws NullPointerException if the type is null
      */
     public static List<Desire> getDesires(Class<?> type) {
+        InjectionIndex index = InjectionIndex.forClass(type);
+        if (index != null) {
+            return getIndexedDesires(index);
+        }
+
         List<Desire> desires = Lists.newArrayList();
 
         boolean ctorFound = false;
@@ -115,10 +128,48 @@ public class ReflectionDesire implements Desire, Serializable {
         
         return Collections.unmodifiableList(desires);
     }
+
+    /**
+     * Get the dependencies of a type from its compile-time injection index.
+     * @param index The type's injection index.
+     * @return The dependency desires, in the same order as {@link #getDesires(Class)}.
+     */
+    private static List<Desire> getIndexedDesires(InjectionIndex index) {
+        List<Desire> desires = Lists.newArrayList();
+        Constructor<?> ctor = index.getConstructor();
+        if (ctor != null) {
+            for (int i = 0; i < ctor.getParameterTypes().length; i++) {
+                desires.add(new ReflectionDesire(new ConstructorParameterInjectionPoint(ctor, i)));
+            }
+        }
+        for (Member member: index.getMembers()) {
+            if (member instanceof Field) {
+                desires.add(new ReflectionDesire(new FieldInjectionPoint((Field) member)));
+            } else {
+                Method m = (Method) member;
+                if (m.getParameterTypes().length > 0) {
+                    // getDesires reverses its member list, so setter parameters come out last first
+                    for (int i = m.getParameterTypes().length - 1; i >= 0; i--) {
+                        desires.add(new ReflectionDesire(new SetterInjectionPoint(m, i)));
+                    }
+                } else {
+                    desires.add(new ReflectionDesire(new NoArgumentInjectionPoint(m)));
+                }
+            }
+        }
+        return Collections.unmodifiableList(desires);
+    }
     
-    private final transient Class<?> desiredType;
+    private transient volatile Class<?> desiredType;
+    /**
+     * The unresolved desired type of a symbolic desire, or {@code null} if it was created with
+     * its type.
+     */
+    @Nullable
+    private final transient ClassProxy desiredTypeProxy;
     private final transient InjectionPoint injectPoint;
     private final transient Satisfaction satisfaction;
+    private transient int hash;
 
     /**
      * Create a ReflectionDesire that immediately wraps the given
@@ -155,7 +206,7 @@ public class ReflectionDesire implements Desire, Serializable {
 
         desiredType = Types.box(desiredType);
         Preconditions.isAssignable(injectPoint.getErasedType(), desiredType);
-        if (satisfaction != null) {
+        if (satisfaction != null && !isSymbolic(satisfaction)) {
             Preconditions.isAssignable(desiredType, satisfaction.getErasedType());
         }
 
@@ -174,13 +225,39 @@ public class ReflectionDesire implements Desire, Serializable {
         }
 
         this.desiredType = desiredType;
+        this.desiredTypeProxy = null;
         this.injectPoint = injectPoint;
         this.satisfaction = satisfaction;
     }
 
+    /**
+     * Create a symbolic desire.  No checks are done, since they would resolve its classes.
+     */
+    private ReflectionDesire(ClassProxy desiredType, InjectionPoint injectPoint,
+                             Satisfaction satisfaction) {
+        this.desiredTypeProxy = desiredType;
+        this.injectPoint = injectPoint;
+        this.satisfaction = satisfaction;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws InvalidBindingException if this is a symbolic desire whose type cannot be
+     *                                 resolved.
+     */
     @Override
     public Class<?> getDesiredType() {
-        return desiredType;
+        Class<?> type = desiredType;
+        if (type == null) {
+            assert desiredTypeProxy != null;
+            desiredType = type = SymbolicMembers.resolve(desiredTypeProxy);
+        }
+        return type;
+    }
+
+    private String getDesiredTypeName() {
+        Class<?> type = desiredType;
+        return type == null ? desiredTypeProxy.getClassName() : type.getName();
     }
 
     @Override
@@ -210,27 +287,61 @@ public class ReflectionDesire implements Desire, Serializable {
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof ReflectionDesire)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ReflectionDesire)) {
             return false;
         }
         ReflectionDesire r = (ReflectionDesire) o;
-        return (r.desiredType.equals(desiredType) && 
-                r.injectPoint.equals(injectPoint) && 
-                (r.satisfaction == null ? satisfaction == null : r.satisfaction.equals(satisfaction)));
+        if (r.hashCode() != hashCode()
+                || !r.getDesiredTypeName().equals(getDesiredTypeName())
+                || !r.injectPoint.equals(injectPoint)
+                || !(r.satisfaction == null ? satisfaction == null : r.satisfaction.equals(satisfaction))) {
+            return false;
+        }
+        try {
+            return r.getDesiredType().equals(getDesiredType());
+        } catch (InvalidBindingException e) {
+            // an unresolvable desire is only equal to itself
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return desiredType.hashCode() ^ injectPoint.hashCode() ^ (satisfaction == null ? 0 : satisfaction.hashCode());
+        int h = hash;
+        if (h == 0) {
+            h = getDesiredTypeName().hashCode() ^ injectPoint.hashCode() ^ (satisfaction == null ? 0 : satisfaction.hashCode());
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Query whether a satisfaction is symbolic (deserialized with deferred resolution, and not
+     * yet resolved).  Such satisfactions are not checked against the desired type, so that
+     * loading a desire does not resolve its satisfaction.
+     */
+    private static boolean isSymbolic(Satisfaction sat) {
+        if (sat instanceof ClassSatisfaction) {
+            return !((ClassSatisfaction) sat).isResolved();
+        } else if (sat instanceof ProviderClassSatisfaction) {
+            return !((ProviderClassSatisfaction) sat).isResolved();
+        } else {
+            return false;
+        }
     }
 
     @Override
     public String toString() {
-        return "Desire(" + desiredType.getSimpleName() + ", " + injectPoint + ")";
+        Class<?> type = desiredType;
+        String name = type == null ? ClassUtils.getShortClassName(desiredTypeProxy.getClassName()) : type.getSimpleName();
+        return "Desire(" + name + ", " + injectPoint + ")";
     }
 
     private Object writeReplace() {
-        return new SerialProxy(desiredType, injectPoint, satisfaction);
+        Class<?> type = desiredType;
+        return new SerialProxy(type == null ? desiredTypeProxy : ClassProxy.of(type), injectPoint, satisfaction);
     }
 
     private void readObject(ObjectInputStream stream) throws ObjectStreamException {
@@ -244,14 +355,17 @@ public class ReflectionDesire implements Desire, Serializable {
         private final ClassProxy desiredType;
         private final Satisfaction satisfaction;
 
-        public SerialProxy(Class<?> type, InjectionPoint ip, Satisfaction sat) {
+        public SerialProxy(ClassProxy type, InjectionPoint ip, Satisfaction sat) {
             injectionPoint = ip;
-            desiredType = ClassProxy.of(type);
+            desiredType = type;
             satisfaction = sat;
         }
 
         @SuppressWarnings("unchecked")
         private Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new ReflectionDesire(desiredType, injectionPoint, satisfaction);
+            }
             try {
                 return new ReflectionDesire(desiredType.resolve(),
                                             injectionPoint,
@@ -19,7 +19,9 @@
  */
 package org.grouplens.grapht.reflect.internal;
 
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.InjectionPoint;
+import org.grouplens.grapht.util.ClassProxy;
 import org.grouplens.grapht.util.MethodProxy;
 import org.grouplens.grapht.util.Preconditions;
 import org.grouplens.grapht.util.Types;
@@ -37,15 +39,26 @@ import java.util.Collection;
 
 /**
  * SetterInjectionPoint represents an injection point via a setter method.
+ * <p>
+ * Injection points deserialized while {@linkplain ClassProxy#deferResolution() resolution is
+ * deferred} are symbolic: they resolve their method the first time it is needed.  Their hash
+ * codes depend only on class and member names, so hashing does not resolve them.
+ * </p>
  *
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public class SetterInjectionPoint implements InjectionPoint, Serializable {
     private static final long serialVersionUID = -1L;
     // transient because we use a serialization proxy
-    private final transient Method setter;
+    private transient volatile Method setter;
+    /**
+     * The unresolved method of a symbolic injection point, or {@code null} if it was created
+     * with its method.
+     */
+    @Nullable
+    private final transient MethodProxy setterProxy;
     private final transient int parameter;
-    private final transient AnnotationHelper annotations;
+    private transient volatile AnnotationHelper annotations;
 
     /**
      * Create a SetterInjectionPoint that wraps the given setter method.
@@ -59,15 +72,39 @@ public class SetterInjectionPoint implements InjectionPoint, Serializable {
 
         this.annotations = new AnnotationHelper(setter.getParameterAnnotations()[parameter]);
         this.setter = setter;
+        this.setterProxy = null;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Create a symbolic injection point.
+     */
+    private SetterInjectionPoint(MethodProxy proxy, int parameter) {
+        setterProxy = proxy;
         this.parameter = parameter;
     }
 
     /**
      * @return The setter method wrapped by this injection point
+     * @throws InvalidBindingException if this is a symbolic injection point whose method
+     *                                 cannot be resolved.
      */
     @Override @Nonnull
     public Method getMember() {
-        return setter;
+        Method m = setter;
+        if (m == null) {
+            assert setterProxy != null;
+            setter = m = SymbolicMembers.resolve(setterProxy);
+        }
+        return m;
+    }
+
+    private AnnotationHelper getAnnotations() {
+        AnnotationHelper helper = annotations;
+        if (helper == null) {
+            annotations = helper = new AnnotationHelper(getMember().getParameterAnnotations()[parameter]);
+        }
+        return helper;
     }
 
     /**
@@ -81,70 +118,90 @@ public class SetterInjectionPoint implements InjectionPoint, Serializable {
     @Override
     public boolean isNullable() {
         // we'll check both setter and parameter annotations
-        return Types.hasNullableAnnotation(setter.getAnnotations()) ||
-               Types.hasNullableAnnotation(setter.getParameterAnnotations()[parameter]);
+        Method m = getMember();
+        return Types.hasNullableAnnotation(m.getAnnotations()) ||
+               Types.hasNullableAnnotation(m.getParameterAnnotations()[parameter]);
     }
 
     @Override
     public Type getType() {
-        return Types.box(setter.getGenericParameterTypes()[parameter]);
+        return Types.box(getMember().getGenericParameterTypes()[parameter]);
     }
 
     @Override
     public Class<?> getErasedType() {
-        return Types.box(setter.getParameterTypes()[parameter]);
+        return Types.box(getMember().getParameterTypes()[parameter]);
     }
 
     @Nullable
     @Override
     public Annotation getQualifier() {
-        return annotations.getQualifier();
+        return getAnnotations().getQualifier();
     }
 
     @Nullable
     @Override
     public <A extends Annotation> A getAttribute(Class<A> atype) {
-        return annotations.getAttribute(atype);
+        return getAnnotations().getAttribute(atype);
     }
 
     @Nonnull
     @Override
     public Collection<Annotation> getAttributes() {
-        return annotations.getAttributes();
+        return getAnnotations().getAttributes();
     }
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof SetterInjectionPoint)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof SetterInjectionPoint)) {
             return false;
         }
         SetterInjectionPoint p = (SetterInjectionPoint) o;
-        return p.setter.equals(setter) && p.parameter == parameter;
+        if (p.parameter != parameter || p.hashCode() != hashCode()) {
+            return false;
+        }
+        try {
+            return p.getMember().equals(getMember());
+        } catch (InvalidBindingException e) {
+            // an unresolvable injection point is only equal to itself
+            return false;
+        }
     }
 
     @Override
     public int hashCode() {
-        return setter.hashCode() ^ (37 * 17 * parameter);
+        // the same as the method's hash code, but available without resolving it
+        Method m = setter;
+        int h = m == null
+                ? setterProxy.getDeclaringClassName().hashCode() ^ setterProxy.getName().hashCode()
+                : m.getDeclaringClass().getName().hashCode() ^ m.getName().hashCode();
+        return h ^ (37 * 17 * parameter);
     }
 
     @Override
     public String toString() {
+        Method m = setter;
+        if (m == null) {
+            return "method " + setterProxy + " arg" + parameter;
+        }
         // method setFoo(..., @Qual Type argN, ...)
         StringBuilder sb = new StringBuilder();
         sb.append("method ")
-          .append(setter.getName())
+          .append(m.getName())
           .append("(");
         if (parameter > 0) {
             sb.append("..., ");
         }
-        if (annotations.getQualifier() != null) {
-            sb.append(annotations.getQualifier())
+        if (getQualifier() != null) {
+            sb.append(getQualifier())
               .append(" ");
         }
-        sb.append(setter.getParameterTypes()[parameter].getName())
+        sb.append(m.getParameterTypes()[parameter].getName())
           .append(" arg")
           .append(parameter);
-        if (parameter < setter.getParameterTypes().length) {
+        if (parameter < m.getParameterTypes().length) {
             sb.append(", ...");
         }
         sb.append(")");
@@ -153,7 +210,8 @@ public class SetterInjectionPoint implements InjectionPoint, Serializable {
     }
 
     private Object writeReplace() {
-        return new SerialProxy(setter, parameter);
+        Method m = setter;
+        return new SerialProxy(m == null ? setterProxy : MethodProxy.of(m), parameter);
     }
 
     private void readObject(ObjectInputStream stream) throws ObjectStreamException {
@@ -164,12 +222,15 @@ public class SetterInjectionPoint implements InjectionPoint, Serializable {
         private static final long serialVersionUID = 1L;
         private final MethodProxy method;
         private final int parameterIndex;
-        public SerialProxy(Method m, int pidx) {
-            method = MethodProxy.of(m);
+        public SerialProxy(MethodProxy m, int pidx) {
+            method = m;
             parameterIndex = pidx;
         }
 
         private Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new SetterInjectionPoint(method, parameterIndex);
+            }
             try {
                 return new SetterInjectionPoint(method.resolve(), parameterIndex);
             } catch (ClassNotFoundException e) {
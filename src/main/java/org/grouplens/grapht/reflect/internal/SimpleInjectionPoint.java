@@ -21,6 +21,7 @@ package org.grouplens.grapht.reflect.internal;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.Desires;
 import org.grouplens.grapht.reflect.InjectionPoint;
 import org.grouplens.grapht.util.ClassProxy;
@@ -39,6 +40,11 @@ import java.util.Collections;
 
 /**
  * Synthetic injection point used for {@link Desires#create(java.lang.annotation.Annotation, Class, boolean)}.
+ * <p>
+ * Injection points deserialized while {@linkplain ClassProxy#deferResolution() resolution is
+ * deferred} are symbolic: they resolve their type the first time it is needed.  Their hash
+ * codes use the type's name, so hashing does not resolve them.
+ * </p>
  *
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
@@ -47,7 +53,13 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
     private static final long serialVersionUID = -1L;
     // fields marked as transient since direct serialization is disabled
     private final transient Annotation qualifier;
-    private final transient Class<?> type;
+    private transient volatile Class<?> type;
+    /**
+     * The unresolved type of a symbolic injection point, or {@code null} if it was created with
+     * its type.
+     */
+    @Nullable
+    private final transient ClassProxy typeProxy;
     private final transient boolean nullable;
 
     public SimpleInjectionPoint(@Nullable Annotation qualifier, Class<?> type, boolean nullable) {
@@ -57,12 +69,36 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
         }
         this.qualifier = qualifier;
         this.type = type;
+        this.typeProxy = null;
+        this.nullable = nullable;
+    }
+
+    /**
+     * Create a symbolic injection point.
+     */
+    private SimpleInjectionPoint(@Nullable Annotation qualifier, ClassProxy type, boolean nullable) {
+        this.qualifier = qualifier;
+        this.typeProxy = type;
         this.nullable = nullable;
     }
 
+    /**
+     * @throws InvalidBindingException if this is a symbolic injection
+     *         point whose type cannot be resolved.
+     */
     @Override
     public Class<?> getErasedType() {
-        return type;
+        Class<?> t = type;
+        if (t == null) {
+            assert typeProxy != null;
+            type = t = SymbolicMembers.resolve(typeProxy);
+        }
+        return t;
+    }
+
+    private String getTypeName() {
+        Class<?> t = type;
+        return t == null ? typeProxy.getClassName() : t.getName();
     }
 
     @Override
@@ -77,7 +113,7 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
 
     @Override
     public Class<?> getType() {
-        return type;
+        return getErasedType();
     }
 
     @Nullable
@@ -100,20 +136,30 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(type).append(qualifier).toHashCode();
+        return new HashCodeBuilder().append(getTypeName()).append(qualifier).toHashCode();
     }
 
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof SimpleInjectionPoint)) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof SimpleInjectionPoint)) {
             return false;
         }
         SimpleInjectionPoint p = (SimpleInjectionPoint) o;
         EqualsBuilder eqb = new EqualsBuilder();
-        return eqb.append(type, p.type)
-                  .append(qualifier, p.qualifier)
-                  .append(nullable, p.nullable)
-                  .isEquals();
+        eqb.append(getTypeName(), p.getTypeName())
+           .append(qualifier, p.qualifier)
+           .append(nullable, p.nullable);
+        if (!eqb.isEquals()) {
+            return false;
+        }
+        try {
+            return p.getErasedType().equals(getErasedType());
+        } catch (InvalidBindingException e) {
+            // an unresolvable injection point is only equal to itself
+            return false;
+        }
     }
 
     @Override
@@ -124,11 +170,12 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
             sb.append(qualifier)
               .append(" ");
         }
-        return sb.append(type.getName()).toString();
+        return sb.append(getTypeName()).toString();
     }
 
     private Object writeReplace() {
-        return new SerialProxy(type, nullable, qualifier);
+        Class<?> t = type;
+        return new SerialProxy(t == null ? typeProxy : ClassProxy.of(t), nullable, qualifier);
     }
 
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
@@ -146,13 +193,16 @@ public final class SimpleInjectionPoint implements InjectionPoint, Serializable
         @SuppressWarnings("squid:S1948") // serializable - annotations are serializable
         private Annotation qualifier;
 
-        private SerialProxy(Class<?> t, boolean isNullable, @Nullable Annotation qual) {
-            type = ClassProxy.of(t);
+        private SerialProxy(ClassProxy t, boolean isNullable, @Nullable Annotation qual) {
+            type = t;
             nullable = isNullable;
             qualifier = qual;
         }
 
         public Object readResolve() throws ObjectStreamException {
+            if (ClassProxy.isResolutionDeferred()) {
+                return new SimpleInjectionPoint(qualifier, type, nullable);
+            }
             try {
                 return Desires.createInjectionPoint(qualifier, type.resolve(), nullable);
             } catch (ClassNotFoundException e) {
@@ -0,0 +1,80 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.reflect.internal;
+
+import org.grouplens.grapht.InvalidBindingException;
+import org.grouplens.grapht.util.ClassProxy;
+import org.grouplens.grapht.util.ConstructorProxy;
+import org.grouplens.grapht.util.FieldProxy;
+import org.grouplens.grapht.util.MethodProxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Resolution of the proxies held by symbolic desires and injection points, which are
+ * deserialized while {@linkplain ClassProxy#deferResolution() resolution is deferred}.  Their
+ * accessors cannot throw checked exceptions, so resolution failures are reported as
+ * {@link InvalidBindingException}s.
+ *
+ * @author <a href="http://grouplens.org">GroupLens Research</a>
+ */
+final class SymbolicMembers {
+    private SymbolicMembers() {}
+
+    static Class<?> resolve(ClassProxy proxy) {
+        try {
+            return proxy.resolve();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidBindingException(null, "cannot resolve " + proxy.getClassName(), e);
+        }
+    }
+
+    static Constructor<?> resolve(ConstructorProxy proxy) {
+        try {
+            return proxy.resolve();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidBindingException(null, "no class for " + proxy, e);
+        } catch (NoSuchMethodException e) {
+            throw new InvalidBindingException(null, "cannot resolve " + proxy, e);
+        }
+    }
+
+    static Method resolve(MethodProxy proxy) {
+        try {
+            return proxy.resolve();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidBindingException(null, "no class for " + proxy, e);
+        } catch (NoSuchMethodException e) {
+            throw new InvalidBindingException(null, "cannot resolve " + proxy, e);
+        }
+    }
+
+    static Field resolve(FieldProxy proxy) {
+        try {
+            return proxy.resolve();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidBindingException(null, "no class for " + proxy, e);
+        } catch (NoSuchFieldException e) {
+            throw new InvalidBindingException(null, "cannot resolve " + proxy, e);
+        }
+    }
+}
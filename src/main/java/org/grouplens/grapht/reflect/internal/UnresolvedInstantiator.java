@@ -0,0 +1,51 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.reflect.internal;
+
+import org.grouplens.grapht.ConstructionException;
+import org.grouplens.grapht.Instantiator;
+
+/**
+ * Instantiator for a symbolic satisfaction whose class could not be resolved.  It reports the
+ * resolution failure each time it is invoked.
+ *
+ * @author <a href="http://grouplens.org">GroupLens Research</a>
+ */
+class UnresolvedInstantiator implements Instantiator {
+    private final ConstructionException failure;
+
+    UnresolvedInstantiator(ConstructionException ex) {
+        failure = ex;
+    }
+
+    @Override
+    public Object instantiate() throws ConstructionException {
+        throw new ConstructionException(failure.getMessage(), failure);
+    }
+
+    /**
+     * Get the type of object this instantiator would create.
+     * @return {@link Object}, since the actual class is not available.
+     */
+    @Override
+    public Class<?> getType() {
+        return Object.class;
+    }
+}
@@ -122,6 +122,15 @@ final class BindRuleImpl implements BindRule, Serializable {
         Preconditions.isAssignable(this.depType, this.implType);
     }
 
+    /**
+     * Get the type of dependency this rule matches.
+     *
+     * @return The (boxed) dependency type.
+     */
+    public Class<?> getDependencyType() {
+        return depType;
+    }
+
     /**
      * Get the rule's qualifier matcher.
      *
@@ -23,6 +23,7 @@ import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.util.Preconditions;
 
+import javax.annotation.Nullable;
 import java.util.EnumSet;
 
 /**
@@ -36,21 +37,25 @@ public class BindingResult {
     private final Desire desire;
     private final CachePolicy policy;
     private final EnumSet<BindingFlag> flags;
+    @Nullable
+    private final BindRule rule;
 
     /**
      * Create a new result that wraps the given Desire.
      * 
      * @param desire The resultant desire from a BindingFunction
      * @param policy The CachePolicy for this binding
+     * @param rule The bind rule that produced this result, if any
      * @throws NullPointerException if desire or policy is null
      */
-    BindingResult(Desire desire, CachePolicy policy, EnumSet<BindingFlag> flags) {
+    BindingResult(Desire desire, CachePolicy policy, EnumSet<BindingFlag> flags, @Nullable BindRule rule) {
         Preconditions.notNull("desire", desire);
         Preconditions.notNull("policy", policy);
         
         this.policy = policy;
         this.desire = desire;
         this.flags = flags.clone();
+        this.rule = rule;
     }
 
     public static Builder newBuilder() {
@@ -109,10 +114,24 @@ public class BindingResult {
         return flags.contains(BindingFlag.SKIPPABLE);
     }
 
+    /**
+     * Get the bind rule that produced this result.  The solver records it in the extended
+     * {@link DesireChain}, so that the rule is not applied again to the same chain.
+     *
+     * @return The rule applied to produce this result, or {@code null} if it was not produced by
+     *         a bind rule.
+     * @see DesireChain#hasAppliedRule(BindRule)
+     */
+    @Nullable
+    public BindRule getRule() {
+        return rule;
+    }
+
     public static class Builder {
         private Desire desire;
         private CachePolicy policy;
         private EnumSet<BindingFlag> flags = BindingFlag.emptySet();
+        private BindRule rule;
 
         private Builder() {}
 
@@ -136,10 +155,15 @@ public class BindingResult {
             return this;
         }
 
+        public Builder setRule(@Nullable BindRule rule) {
+            this.rule = rule;
+            return this;
+        }
+
         public BindingResult build() {
             com.google.common.base.Preconditions.checkState(desire != null, "no desire set");
             com.google.common.base.Preconditions.checkState(policy != null, "no policy set");
-            return new BindingResult(desire, policy, flags);
+            return new BindingResult(desire, policy, flags, rule);
         }
     }
 }
@@ -19,6 +19,8 @@
  */
 package org.grouplens.grapht.solver;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.ResolutionException;
 import org.grouplens.grapht.annotation.*;
@@ -31,14 +33,19 @@ import org.grouplens.grapht.util.Types;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Provider;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
 
 /**
  * A binding function that looks for {@link DefaultImplementation} or
@@ -50,25 +57,73 @@ import java.util.Properties;
  */
 public class DefaultDesireBindingFunction implements BindingFunction {
     private static final String META_INF_DEFAULTS = "META-INF/grapht/defaults/";
+    private static final String PROPERTIES_SUFFIX = ".properties";
     private final Logger logger = LoggerFactory.getLogger(DefaultDesireBindingFunction.class);
+
+    /**
+     * The defaults declared by annotations on each type.
+     */
+    private static final ClassValue<TypeDefaults> typeDefaults = new ClassValue<TypeDefaults>() {
+        @Override
+        protected TypeDefaults computeValue(Class<?> type) {
+            return new TypeDefaults(type);
+        }
+    };
+
+    /**
+     * The defaults declared by annotations on each qualifier type, after resolving aliases.
+     */
+    private static final ClassValue<TypeDefaults> qualifierDefaults = new ClassValue<TypeDefaults>() {
+        @Override
+        protected TypeDefaults computeValue(Class<?> type) {
+            return typeDefaults.get(Qualifiers.resolveAliases(type.asSubclass(Annotation.class)));
+        }
+    };
+
     private final ClassLoader classLoader;
+    private final boolean indexed;
 
-    private final Map<Class<?>, BindingResult> metaInfCache =
-            new HashMap<Class<?>, BindingResult>();
-    
-    DefaultDesireBindingFunction(ClassLoader loader) {
+    private final ConcurrentMap<Class<?>, Optional<BindingResult>> metaInfCache =
+            new ConcurrentHashMap<Class<?>, Optional<BindingResult>>();
+    /**
+     * The defaults index, mapping type names to their defaults files.  Only built if the function
+     * is indexed, and {@code null} until first used or if the class path cannot be indexed.
+     */
+    private volatile Map<String, URL> metaInfIndex;
+    private volatile boolean metaInfIndexBuilt;
+
+    DefaultDesireBindingFunction(ClassLoader loader, boolean idx) {
         Preconditions.notNull("spi", loader);
         classLoader = loader;
+        indexed = idx;
     }
 
     public static DefaultDesireBindingFunction create(ClassLoader loader) {
+        return create(loader, false);
+    }
+
+    /**
+     * Create a default binding function.
+     *
+     * @param loader The class loader to search for defaults, or {@code null} to use the context
+     *               class loader.
+     * @param indexed Whether to index the {@code META-INF/grapht/defaults/} directories of the
+     *                class path in one pass on first use, and look defaults up in the index before
+     *                probing the class loader.  The index is built by listing the directory in
+     *                each class path entry, so it does not see JAR files without directory
+     *                entries; types it does not list are still probed, so their defaults are
+     *                found.  If some class path entry cannot be listed, the function only probes.
+     * @return The binding function.
+     * @since 0.11
+     */
+    public static DefaultDesireBindingFunction create(ClassLoader loader, boolean indexed) {
         if (loader == null) {
             loader = Thread.currentThread().getContextClassLoader();
         }
         if (loader == null) {
             loader = DefaultDesireBindingFunction.class.getClassLoader();
         }
-        return new DefaultDesireBindingFunction(loader);
+        return new DefaultDesireBindingFunction(loader, indexed);
     }
 
     public static DefaultDesireBindingFunction create() {
@@ -86,16 +141,16 @@ public class DefaultDesireBindingFunction implements BindingFunction {
         // (i.e. the desire that declared any qualifier)
         // REVIEW If it is not the first desire, can a qualifier exist?
         if (dchain.getPreviousDesires().isEmpty() && qualifier != null) {
-            Class<? extends Annotation> annotType = qualifier.annotationType();
-            annotType = Qualifiers.resolveAliases(annotType);
+            TypeDefaults qdefaults = qualifierDefaults.get(qualifier.annotationType());
 
-            result = getDefaultValue(desire, annotType);
-            if (result == null) {
-                result = getAnnotatedDefault(desire, annotType);
+            if (qdefaults.value != null) {
+                result = qdefaults.value.apply(desire);
+            } else if (qdefaults.annotated != null) {
+                result = qdefaults.annotated.apply(desire);
             }
 
             // if the qualifier does not allow fall-through, we're done
-            if (!annotType.isAnnotationPresent(AllowDefaultMatch.class) && !annotType.isAnnotationPresent(AllowUnqualifiedMatch.class)) {
+            if (!qdefaults.allowsFallThrough) {
                 return result;
             }
         }
@@ -103,7 +158,10 @@ public class DefaultDesireBindingFunction implements BindingFunction {
         // Now check the desired type for @DefaultImplementation or @DefaultProvider if the type
         // source has not been disabled.
         if (result == null) {
-            result = getAnnotatedDefault(desire, desire.getDesiredType());
+            DefaultTemplate annotated = typeDefaults.get(desire.getDesiredType()).annotated;
+            if (annotated != null) {
+                result = annotated.apply(desire);
+            }
         }
 
         // Last-ditch, try to get a default from META-INF
@@ -117,36 +175,101 @@ public class DefaultDesireBindingFunction implements BindingFunction {
         return result;
     }
 
+    /**
+     * The defaults declared by annotations on a type.  These are computed once per type, so
+     * binding only needs to restrict the desire to the precomputed default.
+     */
+    private static final class TypeDefaults {
+        /**
+         * The default value (double, integer, string, etc.), or {@code null}.
+         */
+        @Nullable
+        final DefaultTemplate value;
+        /**
+         * The default implementation, provider, or null, or {@code null}.
+         */
+        @Nullable
+        final DefaultTemplate annotated;
+        /**
+         * Whether a qualifier of this type allows falling through to defaults for the type.
+         */
+        final boolean allowsFallThrough;
+
+        TypeDefaults(Class<?> type) {
+            value = getDefaultValue(type);
+            annotated = getAnnotatedDefault(type);
+            allowsFallThrough = type.isAnnotationPresent(AllowDefaultMatch.class)
+                                || type.isAnnotationPresent(AllowUnqualifiedMatch.class);
+        }
+    }
+
+    /**
+     * A precomputed default binding, applied to a desire to produce a binding result.
+     */
+    private static final class DefaultTemplate {
+        /**
+         * The satisfaction to restrict to; if this and {@link #target} are both {@code null},
+         * the default is a null of the desired type.
+         */
+        @Nullable
+        private final Satisfaction satisfaction;
+        @Nullable
+        private final Class<?> target;
+        private final CachePolicy policy;
+        private final EnumSet<BindingFlag> flags;
+
+        DefaultTemplate(@Nullable Satisfaction sat, @Nullable Class<?> type,
+                        CachePolicy pol, EnumSet<BindingFlag> flgs) {
+            satisfaction = sat;
+            target = type;
+            policy = pol;
+            flags = flgs;
+        }
+
+        BindingResult apply(Desire desire) {
+            Desire restricted;
+            if (satisfaction != null) {
+                restricted = desire.restrict(satisfaction);
+            } else if (target != null) {
+                restricted = desire.restrict(target);
+            } else {
+                restricted = desire.restrict(Satisfactions.nullOfType(desire.getDesiredType()));
+            }
+            return BindingResult.newBuilder()
+                                .setDesire(restricted)
+                                .setCachePolicy(policy)
+                                .setFlags(flags)
+                                .build();
+        }
+    }
+
     /**
      * Get a default value (double, integer, string, etc.).
-     * @param desire The desire to satisfy.
      * @param type The class to scan for annotations.
-     * @return The binding result, or {@code null} if there are no relevant annotations.
+     * @return The default, or {@code null} if there are no relevant annotations.
      */
-    private BindingResult getDefaultValue(Desire desire, Class<?> type) {
+    private static DefaultTemplate getDefaultValue(Class<?> type) {
         // FIXME Check whether the annotation type is actually relevant for the desire
-        BindingResult.Builder bld = null;
+        Satisfaction sat = null;
         DefaultDouble dfltDouble = type.getAnnotation(DefaultDouble.class);
         if (dfltDouble != null) {
-            bld = BindingResult.newBuilder()
-                               .setDesire(desire.restrict(Satisfactions.instance(dfltDouble.value())));
+            sat = Satisfactions.instance(dfltDouble.value());
         }
         DefaultInteger dfltInt = type.getAnnotation(DefaultInteger.class);
         if (dfltInt != null) {
-            bld = BindingResult.newBuilder().setDesire(desire.restrict(Satisfactions.instance(dfltInt.value())));
+            sat = Satisfactions.instance(dfltInt.value());
         }
         DefaultBoolean dfltBool = type.getAnnotation(DefaultBoolean.class);
         if (dfltBool != null) {
-            bld = BindingResult.newBuilder().setDesire(desire.restrict(Satisfactions.instance(dfltBool.value())));
+            sat = Satisfactions.instance(dfltBool.value());
         }
         DefaultString dfltStr = type.getAnnotation(DefaultString.class);
         if (dfltStr != null) {
-            bld = BindingResult.newBuilder().setDesire(desire.restrict(Satisfactions.instance(dfltStr.value())));
+            sat = Satisfactions.instance(dfltStr.value());
         }
-        if (bld != null) {
-            return bld.setCachePolicy(CachePolicy.NO_PREFERENCE)
-                      .addFlag(BindingFlag.TERMINAL)
-                      .build();
+        if (sat != null) {
+            return new DefaultTemplate(sat, null, CachePolicy.NO_PREFERENCE,
+                                       EnumSet.of(BindingFlag.TERMINAL));
         } else {
             return null;
         }
@@ -156,59 +279,62 @@ public class DefaultDesireBindingFunction implements BindingFunction {
      * Get the default from annotations on the class, if present.
      *
      * @param type The type to scan for annotations.
-     * @return A binding result, or {@code null} if no usable annotations are present.
+     * @return The default, or {@code null} if no usable annotations are present.
      */
-    private BindingResult getAnnotatedDefault(Desire desire, Class<?> type) {
+    private static DefaultTemplate getAnnotatedDefault(Class<?> type) {
+        DefaultTemplate dflt = null;
+
         DefaultProvider provider = type.getAnnotation(DefaultProvider.class);
-        BindingResult.Builder brb = null;
         if (provider != null) {
-            brb = BindingResult.newBuilder()
-                               .setDesire(desire.restrict(Satisfactions.providerType(provider.value())))
-                               .setCachePolicy(provider.cachePolicy())
-                               .addFlag(BindingFlag.TERMINAL);
+            EnumSet<BindingFlag> flags = EnumSet.of(BindingFlag.TERMINAL);
             if (provider.skipIfUnusable()) {
-                brb.addFlag(BindingFlag.SKIPPABLE);
+                flags.add(BindingFlag.SKIPPABLE);
             }
+            dflt = new DefaultTemplate(Satisfactions.providerType(provider.value()), null,
+                                       provider.cachePolicy(), flags);
         }
 
         DefaultImplementation impl = type.getAnnotation(DefaultImplementation.class);
         if (impl != null) {
-            brb = BindingResult.newBuilder()
-                               .setCachePolicy(impl.cachePolicy());
+            EnumSet<BindingFlag> flags = BindingFlag.emptySet();
+            if (impl.skipIfUnusable()) {
+                flags.add(BindingFlag.SKIPPABLE);
+            }
             if (Types.isInstantiable(impl.value())) {
-                brb.setDesire(desire.restrict(Satisfactions.type(impl.value())));
+                dflt = new DefaultTemplate(Satisfactions.type(impl.value()), null, impl.cachePolicy(), flags);
             } else {
-                brb.setDesire(desire.restrict(impl.value()));
-            }
-            if (impl.skipIfUnusable()) {
-                brb.addFlag(BindingFlag.SKIPPABLE);
+                dflt = new DefaultTemplate(null, impl.value(), impl.cachePolicy(), flags);
             }
         }
 
         DefaultNull dnull = type.getAnnotation(DefaultNull.class);
         if (dnull != null) {
-            brb = BindingResult.newBuilder()
-                               .setDesire(desire.restrict(Satisfactions.nullOfType(desire.getDesiredType())))
-                               .setCachePolicy(CachePolicy.NO_PREFERENCE)
-                               .addFlag(BindingFlag.TERMINAL);
+            dflt = new DefaultTemplate(null, null, CachePolicy.NO_PREFERENCE,
+                                       EnumSet.of(BindingFlag.TERMINAL));
         }
 
-        return brb != null ? brb.build() : null;
+        return dflt;
     }
 
     @SuppressWarnings("unchecked")
     private BindingResult getMetaInfDefault(Desire desire, Class<?> type) throws ResolutionException {
-        synchronized (metaInfCache) {
-            if (metaInfCache.containsKey(type)) {
-                return metaInfCache.get(type);
-            }
+        Optional<BindingResult> cached = metaInfCache.get(type);
+        if (cached != null) {
+            return cached.orNull();
         }
 
         BindingResult.Builder builder = BindingResult.newBuilder();
         boolean found = false;
-        String resourceName = META_INF_DEFAULTS + type.getCanonicalName() + ".properties";
-        logger.debug("searching for defaults in {}", resourceName);
-        URL url = classLoader.getResource(resourceName);
+        String resourceName = META_INF_DEFAULTS + type.getCanonicalName() + PROPERTIES_SUFFIX;
+        URL url;
+        Map<String, URL> index = getMetaInfIndex();
+        url = index == null ? null : index.get(type.getCanonicalName());
+        if (url == null) {
+            // JAR files without directory entries are missing from the index, so a miss
+            // still has to be checked with the class loader
+            logger.debug("searching for defaults in {}", resourceName);
+            url = classLoader.getResource(resourceName);
+        }
 
         if (url != null) {
             Properties props;
@@ -274,9 +400,91 @@ public class DefaultDesireBindingFunction implements BindingFunction {
         }
 
         BindingResult result = found ? builder.build() : null;
-        synchronized (metaInfCache) {
-            metaInfCache.put(type, result);
-        }
+        metaInfCache.putIfAbsent(type, Optional.fromNullable(result));
         return result;
     }
+
+    /**
+     * Get the index of defaults files, building it if necessary.
+     * @return The index of defaults files by type name, or {@code null} if the function is not
+     *         indexed or the class path cannot be indexed.
+     */
+    private Map<String, URL> getMetaInfIndex() {
+        if (!indexed) {
+            return null;
+        }
+        if (!metaInfIndexBuilt) {
+            synchronized (this) {
+                if (!metaInfIndexBuilt) {
+                    metaInfIndex = buildMetaInfIndex();
+                    metaInfIndexBuilt = true;
+                }
+            }
+        }
+        return metaInfIndex;
+    }
+
+    /**
+     * Scan the class path for defaults files.
+     * @return The index of defaults files by type name, or {@code null} if some part of the class
+     *         path cannot be listed.
+     */
+    private Map<String, URL> buildMetaInfIndex() {
+        Map<String, URL> index = new HashMap<String, URL>();
+        try {
+            Enumeration<URL> roots = classLoader.getResources(META_INF_DEFAULTS);
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                List<String> names;
+                if (root.getProtocol().equals("file")) {
+                    names = listDirectory(root);
+                } else if (root.getProtocol().equals("jar")) {
+                    names = listJarDirectory(root);
+                } else {
+                    logger.debug("cannot index defaults in {}, probing instead", root);
+                    return null;
+                }
+                for (String name: names) {
+                    if (name.endsWith(PROPERTIES_SUFFIX)) {
+                        String typeName = name.substring(0, name.length() - PROPERTIES_SUFFIX.length());
+                        // earlier class path entries take precedence, as with getResource
+                        if (!index.containsKey(typeName)) {
+                            index.put(typeName, new URL(root, name));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("error indexing defaults, probing instead", e);
+            return null;
+        } catch (URISyntaxException e) {
+            logger.warn("error indexing defaults, probing instead", e);
+            return null;
+        }
+        logger.debug("indexed {} defaults files", index.size());
+        return ImmutableMap.copyOf(index);
+    }
+
+    private static List<String> listDirectory(URL root) throws URISyntaxException {
+        String[] names = new File(root.toURI()).list();
+        return names == null ? Collections.<String>emptyList() : Arrays.asList(names);
+    }
+
+    private static List<String> listJarDirectory(URL root) throws IOException {
+        JarURLConnection conn = (JarURLConnection) root.openConnection();
+        String prefix = conn.getEntryName();
+        if (!prefix.endsWith("/")) {
+            prefix = prefix + "/";
+        }
+        List<String> names = new ArrayList<String>();
+        // the JAR file is shared with the URL cache, so we do not close it
+        Enumeration<JarEntry> entries = conn.getJarFile().entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                names.add(name.substring(prefix.length()));
+            }
+        }
+        return names;
+    }
 }
@@ -20,6 +20,8 @@
 package org.grouplens.grapht.solver;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
 import org.grouplens.grapht.*;
 import org.grouplens.grapht.graph.DAGEdge;
 import org.grouplens.grapht.graph.DAGNode;
@@ -32,6 +34,13 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.lang.annotation.Annotation;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -44,12 +53,20 @@ import java.lang.annotation.Annotation;
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 @ThreadSafe
-public class DefaultInjector implements Injector {
+public class DefaultInjector implements ScopingInjector {
     private static final Logger logger = LoggerFactory.getLogger(DefaultInjector.class);
     
     private final DependencySolver solver;
     private final InjectionContainer instantiator;
+    /**
+     * The injector this one is a child of, or {@code null} if it is not a child.
+     */
+    @Nullable
+    private final DefaultInjector parent;
     private final LifecycleManager manager;
+    private final List<BindingFunction> bindingFunctions;
+    private final int maxDepth;
+    private final Instrumentation instrumentation;
 
     /**
      * <p>
@@ -103,18 +120,104 @@ public class DefaultInjector implements Injector {
      * @throws NullPointerException if spi or functions are null
      */
     public DefaultInjector(CachePolicy defaultPolicy, int maxDepth, BindingFunction... functions) {
+        this(defaultPolicy, maxDepth, Instrumentations.none(), functions);
+    }
+
+    /**
+     * Create a new DefaultInjector that reports its work to an instrumentation.  Injectors
+     * derived from this one with {@link #createChild(BindingFunction...)} and
+     * {@link #reconfigure(CachePolicy, BindingFunction...)} use the same instrumentation.
+     *
+     * @param defaultPolicy The CachePolicy used in place of NO_PREFERENCE
+     * @param maxDepth The maximum depth of the dependency hierarchy
+     * @param instr The instrumentation
+     * @param functions The BindingFunctions to use, ordered with highest
+     *            priority functions first
+     * @throws IllegalArgumentException if maxDepth is less than 1, or if
+     *             defaultPolicy is NO_PREFERENCE
+     * @since 0.11
+     */
+    public DefaultInjector(CachePolicy defaultPolicy, int maxDepth, Instrumentation instr,
+                           BindingFunction... functions) {
         if (defaultPolicy.equals(CachePolicy.NO_PREFERENCE)) {
             throw new IllegalArgumentException("Default CachePolicy cannot be NO_PREFERENCE");
         }
 
+        bindingFunctions = ImmutableList.copyOf(functions);
+        this.maxDepth = maxDepth;
+        instrumentation = instr;
         solver = DependencySolver.newBuilder()
-                                 .addBindingFunctions(functions)
+                                 .addBindingFunctions(bindingFunctions)
                                  .setMaxDepth(maxDepth)
+                                 .setInstrumentation(instr)
                                  .build();
-        manager = new LifecycleManager();
+        manager = new LifecycleManager(instr);
         instantiator = InjectionContainer.create(defaultPolicy, manager);
+        parent = null;
+    }
+
+    /**
+     * Create a child injector.
+     * @param parent The parent injector.
+     * @param functions The child's binding functions, including those inherited from the parent.
+     * @param solver The child's solver, already seeded with the parent's rewritten graph.
+     */
+    private DefaultInjector(DefaultInjector parent, List<BindingFunction> functions,
+                            DependencySolver solver) {
+        bindingFunctions = ImmutableList.copyOf(functions);
+        maxDepth = parent.maxDepth;
+        instrumentation = parent.instrumentation;
+        this.solver = solver;
+        this.parent = parent;
+        manager = newLifecycleManager(parent.manager);
+        instantiator = InjectionContainer.createChild(parent.instantiator, new ParentNodes(parent), manager);
+    }
+
+    /**
+     * Create a reconfigured injector.
+     * @param old The injector being reconfigured.
+     * @param defaultPolicy The default cache policy of the new injector.
+     * @param functions The new injector's binding functions.
+     * @param solver The new injector's solver.
+     * @param carried The nodes whose instances are carried over from the old injector.
+     */
+    private DefaultInjector(DefaultInjector old, CachePolicy defaultPolicy, List<BindingFunction> functions,
+                            DependencySolver solver, Set<DAGNode<Component, Dependency>> carried) {
+        bindingFunctions = ImmutableList.copyOf(functions);
+        maxDepth = old.maxDepth;
+        instrumentation = old.instrumentation;
+        this.solver = solver;
+        // the new functions replace the parent's, so new dependencies are not looked up there
+        parent = null;
+        manager = newLifecycleManager(old.manager);
+        instantiator = InjectionContainer.createSuccessor(old.instantiator, carried, defaultPolicy, manager);
     }
     
+    /**
+     * Create a lifecycle manager with the same instrumentation, tracking and teardown settings as
+     * another.
+     */
+    private static LifecycleManager newLifecycleManager(LifecycleManager template) {
+        LifecycleManager mgr = new LifecycleManager(template.getInstrumentation());
+        mgr.setPrototypeTracking(template.getPrototypeTracking());
+        if (template.getTeardownThreads() > 1) {
+            mgr.setParallelTeardown(template.getTeardownThreads(),
+                                    template.getTeardownTimeout(TimeUnit.NANOSECONDS),
+                                    TimeUnit.NANOSECONDS);
+        }
+        return mgr;
+    }
+
+    /**
+     * Get the lifecycle manager for components instantiated by this injector.  Components
+     * registered with it are torn down when the injector is closed.
+     * @return The injector's lifecycle manager.
+     * @since 0.11
+     */
+    public LifecycleManager getLifecycleManager() {
+        return manager;
+    }
+
     /**
      * @return The DependencySolver backing this injector
      */
@@ -122,6 +225,154 @@ public class DefaultInjector implements Injector {
         return solver;
     }
     
+    /**
+     * Create a child injector that overlays additional binding functions on this injector.  The
+     * overlay functions take precedence over this injector's functions.  The child starts from
+     * this injector's current graph, re-resolving only those dependencies that the overlay
+     * functions bind (as in {@link DependencySolver#rewrite(DAGNode)}); components whose
+     * subgraphs are unaffected are shared with this injector, including their memoized instances.
+     * Dependencies the child has not seen are resolved through this injector when the child
+     * first needs them, and rewritten the same way, so the child also shares components that
+     * this injector resolves after the child is created.
+     *
+     * <p>Closing the child shuts down only the components it instantiated itself.</p>
+     *
+     * @param overlay The binding functions to overlay, highest priority first.
+     * @return The child injector.
+     * @throws ResolutionException if there is an error re-resolving the affected dependencies.
+     * @since 0.11
+     */
+    public DefaultInjector createChild(BindingFunction... overlay) throws ResolutionException {
+        DependencySolverBuilder bld = DependencySolver.newBuilder()
+                                                    .setMaxDepth(maxDepth)
+                                                    .setInstrumentation(instrumentation);
+        List<BindingFunction> functions = new ArrayList<BindingFunction>();
+        for (BindingFunction fn: overlay) {
+            bld.addBindingFunction(fn, true);
+            functions.add(fn);
+        }
+        // parent functions only participate once the overlay has triggered a re-resolution
+        for (BindingFunction fn: bindingFunctions) {
+            bld.addBindingFunction(fn, false);
+            functions.add(fn);
+        }
+        DependencySolver childSolver = bld.build();
+
+        DAGNode<Component, Dependency> graph;
+        SetMultimap<DAGNode<Component, Dependency>, DAGEdge<Component, Dependency>> backEdges;
+        synchronized (this) {
+            graph = solver.getGraph();
+            backEdges = solver.getBackEdges();
+        }
+        logger.debug("creating child injector from graph with {} nodes", graph.getReachableNodes().size());
+        childSolver.includeGraph(childSolver.rewrite(graph), backEdges);
+        return new DefaultInjector(this, functions, childSolver);
+    }
+
+    /**
+     * Reconfigure this injector with a new set of binding functions.  Every dependency this
+     * injector has resolved is re-resolved with the new functions; components whose subgraphs
+     * are unchanged (the same implementations, with the same dependencies, all the way down)
+     * are carried over to the new injector along with their memoized instances, and only the
+     * changed components are instantiated afresh.  Components that are not carried over are
+     * shut down immediately.
+     *
+     * <p>This injector must not be used after it has been reconfigured.  Its carried-over
+     * components are handed to the new injector, which does not refer back to it, so closing the
+     * new injector shuts them down as well as its own, and this injector can be discarded.</p>
+     *
+     * @param defaultPolicy The CachePolicy used in place of NO_PREFERENCE.
+     * @param functions The new binding functions, highest priority first.
+     * @return The reconfigured injector.
+     * @throws ResolutionException if there is an error re-resolving the dependencies.
+     * @throws IllegalArgumentException if defaultPolicy is NO_PREFERENCE
+     * @since 0.11
+     */
+    public synchronized DefaultInjector reconfigure(CachePolicy defaultPolicy,
+                                                    BindingFunction... functions) throws ResolutionException {
+        if (defaultPolicy.equals(CachePolicy.NO_PREFERENCE)) {
+            throw new IllegalArgumentException("Default CachePolicy cannot be NO_PREFERENCE");
+        }
+
+        List<BindingFunction> fns = ImmutableList.copyOf(functions);
+        DependencySolver newSolver = DependencySolver.newBuilder()
+                                                    .addBindingFunctions(fns)
+                                                    .setMaxDepth(maxDepth)
+                                                    .setInstrumentation(instrumentation)
+                                                    .build();
+        DAGNode<Component, Dependency> graph = solver.getGraph();
+        newSolver.reuseNodes(graph);
+        for (DAGEdge<Component, Dependency> edge: graph.getOutgoingEdges()) {
+            newSolver.resolve(edge.getLabel().getInitialDesire());
+        }
+
+        boolean samePolicy = defaultPolicy.equals(instantiator.getDefaultCachePolicy());
+        Set<DAGNode<Component, Dependency>> carried =
+                findCarriedNodes(graph, solver.getBackEdges(),
+                                 newSolver.getGraph(), newSolver.getBackEdges(),
+                                 samePolicy);
+        logger.debug("reconfiguring injector, carrying {} of {} nodes",
+                     carried.size(), graph.getReachableNodes().size());
+
+        return new DefaultInjector(this, defaultPolicy, fns, newSolver, carried);
+    }
+
+    /**
+     * Find the nodes of a reconfigured graph that can be carried over from the old graph.  A node
+     * can be carried if it appears in both graphs with the same back edges, if its cache policy
+     * is not affected by a change in default policy, and if all its dependencies can be carried.
+     */
+    private static Set<DAGNode<Component, Dependency>> findCarriedNodes(
+            DAGNode<Component, Dependency> oldGraph,
+            SetMultimap<DAGNode<Component, Dependency>, DAGEdge<Component, Dependency>> oldBackEdges,
+            DAGNode<Component, Dependency> newGraph,
+            SetMultimap<DAGNode<Component, Dependency>, DAGEdge<Component, Dependency>> newBackEdges,
+            boolean samePolicy) {
+        Set<DAGNode<Component, Dependency>> oldNodes = oldGraph.getReachableNodes();
+        Set<DAGNode<Component, Dependency>> carried = new HashSet<DAGNode<Component, Dependency>>();
+        for (DAGNode<Component, Dependency> node: newGraph.getSortedNodes()) {
+            if (node.equals(newGraph) || !oldNodes.contains(node)) {
+                continue;
+            }
+            if (!samePolicy && node.getLabel().getCachePolicy().equals(CachePolicy.NO_PREFERENCE)) {
+                continue;
+            }
+            if (!oldBackEdges.get(node).equals(newBackEdges.get(node))) {
+                continue;
+            }
+            // sorted nodes come after their dependencies
+            if (carried.containsAll(node.getAdjacentNodes())) {
+                carried.add(node);
+            }
+        }
+
+        // back edges point up the graph, so drop nodes whose back edge targets were not carried
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Iterator<DAGNode<Component, Dependency>> iter = carried.iterator();
+            while (iter.hasNext()) {
+                DAGNode<Component, Dependency> node = iter.next();
+                for (DAGEdge<Component, Dependency> edge: newBackEdges.get(node)) {
+                    if (!carried.contains(edge.getTail())) {
+                        iter.remove();
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (changed) {
+                // dependents of dropped nodes cannot be carried either
+                for (DAGNode<Component, Dependency> node: newGraph.getSortedNodes()) {
+                    if (carried.contains(node) && !carried.containsAll(node.getAdjacentNodes())) {
+                        carried.remove(node);
+                    }
+                }
+            }
+        }
+        return carried;
+    }
+
     @Nonnull
     @Override
     public <T> T getInstance(Class<T> type) throws InjectionException {
@@ -144,30 +395,93 @@ public class DefaultInjector implements Injector {
         return type.cast(obj);
     }
 
+    @Override
+    public ScopingInjector openScope() {
+        return new ScopedInjector(instantiator.openScope());
+    }
+
     private Object getInstance(Desire desire) throws InjectionException {
+        return getInstance(desire, null);
+    }
+
+    /**
+     * Get an instance for a desire.
+     * @param desire The desire.
+     * @param scope The scope to instantiate within, or {@code null} to instantiate outside a scope.
+     * @return The instance.
+     */
+    private Object getInstance(Desire desire, @Nullable InjectionScope scope) throws InjectionException {
         // All Provider cache access, graph resolution, etc. occur
         // within this exclusive lock so we know everything is thread safe
         // albeit in a non-optimal way.
         synchronized(this) {
-            Predicate<Dependency> pred = Dependency.hasInitialDesire(desire);
-
-            // check if the desire is already in the graph
-            DAGEdge<Component, Dependency> resolved =
-                    solver.getGraph().getOutgoingEdgeWithLabel(pred);
-
-            // The edge is only non-null if instantiate() has been called before,
-            // it may be present in the graph at a deeper node. If that's the case
-            // it will be properly merged after regenerating the graph at the root context.
-            if (resolved == null) {
-                logger.info("Must resolve desire: {}", desire);
-                solver.resolve(desire);
-                resolved = solver.getGraph().getOutgoingEdgeWithLabel(pred);
-            }
+            DAGEdge<Component, Dependency> resolved = resolveEdge(desire);
 
             // Check if the provider for the resolved node is in our cache
             DAGNode<Component, Dependency> resolvedNode = resolved.getTail();
-            return instantiator.makeInstantiator(resolvedNode, solver.getBackEdges()).instantiate();
+            Instantiator itor = instantiator.makeInstantiator(resolvedNode, solver.getBackEdges());
+            if (scope == null) {
+                return itor.instantiate();
+            } else {
+                return scope.instantiate(itor);
+            }
+        }
+    }
+
+    /**
+     * Get the root edge for a desire, resolving the desire if necessary.
+     * @param desire The desire.
+     * @return The edge from the graph's root to the desire's resolution.
+     * @throws ResolutionException if the desire cannot be resolved.
+     */
+    private synchronized DAGEdge<Component, Dependency> resolveEdge(Desire desire) throws ResolutionException {
+        Predicate<Dependency> pred = Dependency.hasInitialDesire(desire);
+
+        // check if the desire is already in the graph
+        DAGEdge<Component, Dependency> resolved =
+                solver.getGraph().getOutgoingEdgeWithLabel(pred);
+
+        if (resolved == null && parent != null) {
+            inheritEdge(desire);
+            resolved = solver.getGraph().getOutgoingEdgeWithLabel(pred);
+        }
+
+        // The edge is only non-null if instantiate() has been called before,
+        // it may be present in the graph at a deeper node. If that's the case
+        // it will be properly merged after regenerating the graph at the root context.
+        if (resolved == null) {
+            logger.info("Must resolve desire: {}", desire);
+            solver.resolve(desire);
+            resolved = solver.getGraph().getOutgoingEdgeWithLabel(pred);
         }
+        return resolved;
+    }
+
+    /**
+     * Add the parent's resolution of a desire to this child's graph, rewritten with the child's
+     * overlay functions.  Nodes the overlay does not affect remain the parent's nodes, so their
+     * instances are shared with the parent.
+     * @param desire The desire.
+     */
+    private void inheritEdge(Desire desire) throws ResolutionException {
+        assert parent != null;
+        DAGEdge<Component, Dependency> edge;
+        try {
+            edge = parent.resolveEdge(desire);
+        } catch (ResolutionException e) {
+            // the overlay functions may be needed to resolve it
+            logger.debug("parent cannot resolve {}, resolving in child", desire);
+            return;
+        }
+        SetMultimap<DAGNode<Component, Dependency>, DAGEdge<Component, Dependency>> backEdges;
+        synchronized (parent) {
+            backEdges = parent.solver.getBackEdges();
+        }
+        DAGNode<Component, Dependency> graph =
+                DAGNode.<Component, Dependency>newBuilder(DependencySolver.ROOT_SATISFACTION)
+                       .addEdge(edge.getTail(), edge.getLabel())
+                       .build();
+        solver.includeGraph(solver.rewrite(graph), backEdges);
     }
 
     @Override
@@ -176,4 +490,80 @@ public class DefaultInjector implements Injector {
             manager.close();
         }
     }
+
+    /**
+     * Live view of the nodes in a parent injector's graph.  A child's container instantiates
+     * these nodes through the parent's container, including nodes the parent resolves after the
+     * child was created.
+     */
+    private static class ParentNodes extends AbstractSet<DAGNode<Component, Dependency>> {
+        private final DefaultInjector parent;
+
+        public ParentNodes(DefaultInjector parent) {
+            this.parent = parent;
+        }
+
+        private Set<DAGNode<Component, Dependency>> current() {
+            synchronized (parent) {
+                return parent.solver.getGraph().getReachableNodes();
+            }
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return current().contains(o);
+        }
+
+        @Override
+        public Iterator<DAGNode<Component, Dependency>> iterator() {
+            return current().iterator();
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+    }
+
+    /**
+     * Injector view that instantiates components within an injection scope.
+     */
+    private class ScopedInjector implements ScopingInjector {
+        private final InjectionScope scope;
+
+        public ScopedInjector(InjectionScope scope) {
+            this.scope = scope;
+        }
+
+        @Nonnull
+        @Override
+        public <T> T getInstance(Class<T> type) throws InjectionException {
+            return getInstance(null, type);
+        }
+
+        @Nonnull
+        @Override
+        public <T> T getInstance(Annotation qualifier, Class<T> type) throws InjectionException {
+            Object obj = DefaultInjector.this.getInstance(Desires.create(qualifier, type, false), scope);
+            assert obj != null;
+            return type.cast(obj);
+        }
+
+        @Nullable
+        @Override
+        public <T> T tryGetInstance(Annotation qualifier, Class<T> type) throws InjectionException {
+            Object obj = DefaultInjector.this.getInstance(Desires.create(qualifier, type, true), scope);
+            return type.cast(obj);
+        }
+
+        @Override
+        public ScopingInjector openScope() {
+            return DefaultInjector.this.openScope();
+        }
+
+        @Override
+        public void close() {
+            scope.close();
+        }
+    }
 }
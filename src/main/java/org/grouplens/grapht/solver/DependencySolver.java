@@ -19,13 +19,13 @@
  */
 package org.grouplens.grapht.solver;
 
-import com.google.common.base.Functions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.Component;
 import org.grouplens.grapht.Dependency;
+import org.grouplens.grapht.Instrumentation;
 import org.grouplens.grapht.ResolutionException;
 import org.grouplens.grapht.graph.DAGEdge;
 import org.grouplens.grapht.graph.DAGNode;
@@ -38,6 +38,8 @@ import org.grouplens.grapht.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.util.*;
 
 /**
@@ -85,10 +87,30 @@ public class DependencySolver {
 
     private final List<BindingFunction> functions;
     private final List<BindingFunction> triggerFunctions;
+    /**
+     * The desired types that trigger functions can match, or {@code null} if any type may be
+     * matched.
+     */
+    @Nullable
+    private final Set<Class<?>> triggerTypes;
+    private final Instrumentation instrumentation;
     
+    // Equal components, satisfactions and desires are shared, so that graphs hold one copy of
+    // each and most equality checks between them succeed on identity.
+    private final Interner<Component> components = Interners.newWeakInterner();
+    private final Interner<Satisfaction> satisfactions = Interners.newWeakInterner();
+    private final Interner<Desire> desires = Interners.newWeakInterner();
+
     private DAGNode<Component,Dependency> graph;
     private SetMultimap<DAGNode<Component,Dependency>, DAGEdge<Component,Dependency>> backEdges;
     private MergePool<Component,Dependency> mergePool;
+    /**
+     * The (tail, label) pairs of the root's outgoing edges, so resolving a desire again does not
+     * scan the root's edges.  It describes {@link #rootEdgeGraph}, and is rebuilt when the graph
+     * is replaced any other way.
+     */
+    private Set<Pair<DAGNode<Component,Dependency>,Dependency>> rootEdges;
+    private DAGNode<Component,Dependency> rootEdgeGraph;
 
     /**
      * Create a DependencySolver that uses the given functions, and max
@@ -97,22 +119,27 @@ public class DependencySolver {
      * @param bindFunctions The binding functions that control desire bindings
      * @param maxDepth A maximum depth of the graph before it's determined that
      *            a cycle exists
+     * @param instr The instrumentation to report resolutions and merges to
      * @throws IllegalArgumentException if maxDepth is less than 1
      * @throws NullPointerException if bindFunctions is null
      */
     DependencySolver(List<BindingFunction> bindFunctions,
                      List<BindingFunction> triggers,
-                     CachePolicy defaultPolicy, int maxDepth) {
+                     CachePolicy defaultPolicy, int maxDepth,
+                     Instrumentation instr) {
         Preconditions.notNull("bindFunctions", bindFunctions);
         Preconditions.notNull("defaultPolicy", defaultPolicy);
+        Preconditions.notNull("instrumentation", instr);
         if (maxDepth <= 0) {
             throw new IllegalArgumentException("Max depth must be at least 1");
         }
         
         this.functions = new ArrayList<BindingFunction>(bindFunctions);
         this.triggerFunctions = new ArrayList<BindingFunction>(triggers);
+        triggerTypes = findTriggerTypes(triggerFunctions);
         this.maxDepth = maxDepth;
         this.defaultPolicy = defaultPolicy;
+        instrumentation = instr;
         
         graph = DAGNode.singleton(ROOT_SATISFACTION);
         backEdges = HashMultimap.create();
@@ -121,6 +148,28 @@ public class DependencySolver {
         logger.info("DependencySolver created, max depth: {}", maxDepth);
     }
 
+    /**
+     * Find the desired types that a list of trigger functions can match.
+     *
+     * @param triggers The trigger functions.
+     * @return The set of types, or {@code null} if some function can match any type.
+     */
+    @Nullable
+    private static Set<Class<?>> findTriggerTypes(List<BindingFunction> triggers) {
+        Set<Class<?>> types = new HashSet<Class<?>>();
+        for (BindingFunction bf: triggers) {
+            if (!(bf instanceof RuleBasedBindingFunction)) {
+                return null;
+            }
+            Set<Class<?>> ftypes = ((RuleBasedBindingFunction) bf).getDependencyTypes();
+            if (ftypes == null) {
+                return null;
+            }
+            types.addAll(ftypes);
+        }
+        return types;
+    }
+
     /**
      * Create a new dependency solver builder.
      *
@@ -201,11 +250,12 @@ public class DependencySolver {
             if (current.node.getLabel().equals(ROOT_SATISFACTION)) {
                 Pair<DAGNode<Component, Dependency>, Dependency> rootNode =
                         resolveFully(desire, current.context, deferralQueue);
-                // add this to the global graph
-                graph = DAGNode.copyBuilder(graph)
-                               .addEdge(mergePool.merge(rootNode.getLeft()),
-                                        rootNode.getRight())
-                               .build();
+                // add this to the global graph, sharing the existing root edges
+                DAGNode<Component,Dependency> merged = merge(mergePool, rootNode.getLeft());
+                if (getRootEdges().add(Pair.of(merged, rootNode.getRight()))) {
+                    graph = graph.withEdge(merged, rootNode.getRight());
+                    rootEdgeGraph = graph;
+                }
             } else if (graph.getReachableNodes().contains(parent)) {
                 // the node needs to be re-scanned.  This means that it was not consolidated by
                 // a previous merge operation.  This branch only arises with provider injection.
@@ -216,7 +266,7 @@ public class DependencySolver {
                     Pair<DAGNode<Component, Dependency>, Dependency> result =
                             resolveFully(d, current.context, deferralQueue);
                     // merge it in
-                    DAGNode<Component, Dependency> merged = mergePool.merge(result.getLeft());
+                    DAGNode<Component, Dependency> merged = merge(mergePool, result.getLeft());
                     // now see if there's a real cycle
                     if (merged.getReachableNodes().contains(parent)) {
                         // parent node is referenced from merged, we have a circle!
@@ -241,6 +291,65 @@ public class DependencySolver {
         }
     }
 
+    /**
+     * Get the set of the root's outgoing edges, rebuilding it if the graph has changed.
+     * @return The (tail, label) pairs of the current graph's root edges.
+     */
+    private Set<Pair<DAGNode<Component,Dependency>,Dependency>> getRootEdges() {
+        if (rootEdgeGraph != graph) {
+            rootEdges = Sets.newHashSet();
+            for (DAGEdge<Component,Dependency> edge: graph.getOutgoingEdges()) {
+                rootEdges.add(Pair.of(edge.getTail(), edge.getLabel()));
+            }
+            rootEdgeGraph = graph;
+        }
+        return rootEdges;
+    }
+
+    /**
+     * Add the nodes of a previously-resolved graph to this solver's merge pool without adding
+     * any of its dependencies to the solver's graph.  Subsequent resolutions that produce
+     * subgraphs equivalent to ones in {@code base} will reuse {@code base}'s node objects.
+     *
+     * @param base The graph whose nodes should be reused.
+     */
+    public synchronized void reuseNodes(DAGNode<Component,Dependency> base) {
+        merge(mergePool, base);
+    }
+
+    /**
+     * Include a previously-resolved graph in this solver's graph.  The graph's nodes are added to
+     * the solver's merge pool, so later resolutions reuse equivalent nodes rather than creating
+     * new ones, and its root edges become root edges of this solver's graph (unless a dependency
+     * with the same initial desire has already been resolved).
+     *
+     * @param base The full dependency graph to include (rooted at {@link #rootNode()}).
+     * @param baseBackEdges The back edges of {@code base}.  Back edges from nodes that survive
+     *                      the merge are copied into this solver.
+     */
+    public synchronized void includeGraph(DAGNode<Component,Dependency> base,
+                                          SetMultimap<DAGNode<Component,Dependency>, DAGEdge<Component,Dependency>> baseBackEdges) {
+        if (!base.getLabel().equals(ROOT_SATISFACTION)) {
+            throw new IllegalArgumentException("only full dependency graphs can be included");
+        }
+        DAGNode<Component,Dependency> merged = merge(mergePool, base);
+        DAGNodeBuilder<Component,Dependency> bld = DAGNode.copyBuilder(graph);
+        for (DAGEdge<Component,Dependency> edge: merged.getOutgoingEdges()) {
+            Desire desire = edge.getLabel().getInitialDesire();
+            if (graph.getOutgoingEdgeWithLabel(Dependency.hasInitialDesire(desire)) == null) {
+                bld.addEdge(edge.getTail(), edge.getLabel());
+            }
+        }
+        graph = bld.build();
+
+        Set<DAGNode<Component,Dependency>> reachable = graph.getReachableNodes();
+        for (DAGEdge<Component,Dependency> edge: baseBackEdges.values()) {
+            if (reachable.contains(edge.getHead())) {
+                backEdges.put(edge.getHead(), edge);
+            }
+        }
+    }
+
     private void replaceNode(DAGNode<Component,Dependency> old,
                              DAGNode<Component,Dependency> repl) {
         Map<DAGNode<Component,Dependency>,
@@ -290,19 +399,113 @@ public class DependencySolver {
         // We proceed in three stages.
         Map<DAGEdge<Component, Dependency>, DAGEdge<Component,Dependency>> replacementSubtrees =
                 Maps.newHashMap();
+        Map<DAGNode<Component, Dependency>, Boolean> candidates = Maps.newHashMap();
         walkGraphForReplacements(graph,
                                  InjectionContext.singleton(graph.getLabel().getSatisfaction()),
-                                 replacementSubtrees);
+                                 replacementSubtrees, candidates);
+        if (replacementSubtrees.isEmpty()) {
+            logger.debug("no edges to rewrite");
+            return graph;
+        }
 
         DAGNode<Component, Dependency> stage2 =
-                graph.transformEdges(Functions.forMap(replacementSubtrees, null));
+                copyReplacedPaths(graph, replacementSubtrees, candidates,
+                                  Maps.<DAGNode<Component, Dependency>, DAGNode<Component, Dependency>>newHashMap());
 
         logger.debug("merging rewritten graph");
         // Now we have a graph (stage2) with rewritten subtrees based on trigger rules
-        // We merge this graph with the original to deduplicate.
+        // We merge its new nodes with the original to deduplicate.  The original graph is
+        // assumed to be merged already, so its nodes are just added to the pool; merging stage2
+        // then only visits the copied and replacement nodes.
         MergePool<Component,Dependency> pool = MergePool.create();
-        pool.merge(graph);
-        return pool.merge(stage2);
+        pool.addGraph(graph);
+        return merge(pool, stage2);
+    }
+
+    /**
+     * Query whether an edge may be rewritten by the trigger functions.
+     */
+    private boolean isRewriteCandidate(DAGEdge<Component, Dependency> edge) {
+        Dependency dep = edge.getLabel();
+        return !dep.isFixed() &&
+               (triggerTypes == null || triggerTypes.contains(dep.getInitialDesire().getDesiredType()));
+    }
+
+    /**
+     * Query whether the graph below a node contains edges that may be rewritten.
+     *
+     * @param node The node.
+     * @param memory The results computed so far.
+     * @return {@code true} if some edge reachable from {@code node} is a rewrite candidate.
+     */
+    private boolean hasRewriteCandidates(DAGNode<Component, Dependency> node,
+                                         Map<DAGNode<Component, Dependency>, Boolean> memory) {
+        Boolean found = memory.get(node);
+        if (found == null) {
+            found = false;
+            for (DAGEdge<Component, Dependency> edge: node.getOutgoingEdges()) {
+                if (isRewriteCandidate(edge) || hasRewriteCandidates(edge.getTail(), memory)) {
+                    found = true;
+                    break;
+                }
+            }
+            memory.put(node, found);
+        }
+        return found;
+    }
+
+    /**
+     * Copy the nodes on paths to replaced edges, reusing all other nodes.
+     *
+     * @param node The node to copy.
+     * @param replacements The edge replacements.
+     * @param candidates The memory for {@link #hasRewriteCandidates(DAGNode, Map)}.
+     * @param memory The nodes copied so far.
+     * @return The node with replacements applied below it.
+     */
+    private DAGNode<Component, Dependency> copyReplacedPaths(DAGNode<Component, Dependency> node,
+                                                             Map<DAGEdge<Component, Dependency>, DAGEdge<Component, Dependency>> replacements,
+                                                             Map<DAGNode<Component, Dependency>, Boolean> candidates,
+                                                             Map<DAGNode<Component, Dependency>, DAGNode<Component, Dependency>> memory) {
+        if (!hasRewriteCandidates(node, candidates)) {
+            return node;
+        }
+        DAGNode<Component, Dependency> copied = memory.get(node);
+        if (copied != null) {
+            return copied;
+        }
+
+        DAGNodeBuilder<Component, Dependency> bld = DAGNode.newBuilder(node.getLabel());
+        boolean changed = false;
+        for (DAGEdge<Component, Dependency> edge: node.getOutgoingEdges()) {
+            DAGEdge<Component, Dependency> repl = replacements.get(edge);
+            if (repl != null) {
+                bld.addEdge(repl.getTail(), repl.getLabel());
+                changed = true;
+            } else {
+                DAGNode<Component, Dependency> tail =
+                        copyReplacedPaths(edge.getTail(), replacements, candidates, memory);
+                bld.addEdge(tail, edge.getLabel());
+                changed |= tail != edge.getTail();
+            }
+        }
+        copied = changed ? bld.build() : node;
+        memory.put(node, copied);
+        return copied;
+    }
+
+    /**
+     * Merge a graph into a merge pool, reporting the merge to the instrumentation.
+     */
+    private DAGNode<Component,Dependency> merge(MergePool<Component,Dependency> pool,
+                                               DAGNode<Component,Dependency> graph) {
+        if (!instrumentation.isEnabled()) {
+            return pool.merge(graph);
+        }
+        long start = System.nanoTime();
+        DAGNode<Component, Dependency> merged = pool.merge(graph);
+        instrumentation.graphMerged(graph, System.nanoTime() - start);
+        return merged;
     }
 
     /**
@@ -311,18 +514,26 @@ public class DependencySolver {
      * @param context The context leading to this node.
      * @param replacements The map of replacements to build. This maps edges to their replacement
      *                     targets and labels.
+     * @param candidates The memory for {@link #hasRewriteCandidates(DAGNode, Map)}; subgraphs
+     *                   without candidate edges are not walked.
      * @throws ResolutionException If there is a resolution error rewriting the graph.
      */
     private void walkGraphForReplacements(DAGNode<Component, Dependency> root,
                                           InjectionContext context,
-                                          Map<DAGEdge<Component, Dependency>, DAGEdge<Component, Dependency>> replacements) throws ResolutionException {
+                                          Map<DAGEdge<Component, Dependency>, DAGEdge<Component, Dependency>> replacements,
+                                          Map<DAGNode<Component, Dependency>, Boolean> candidates) throws ResolutionException {
         assert context.getTailValue().getLeft().equals(root.getLabel().getSatisfaction());
         for (DAGEdge<Component, Dependency> edge: root.getOutgoingEdges()) {
+            boolean candidate = isRewriteCandidate(edge);
+            if (!candidate && !hasRewriteCandidates(edge.getTail(), candidates)) {
+                // nothing below this edge can be rewritten
+                continue;
+            }
             logger.debug("considering {} for replacement", edge.getTail().getLabel());
             Desire desire = edge.getLabel().getDesireChain().getInitialDesire();
             DesireChain chain = DesireChain.singleton(desire);
             Pair<DAGNode<Component, Dependency>, Dependency> repl = null;
-            if (!edge.getLabel().isFixed()) {
+            if (candidate) {
                 for (BindingFunction bf: triggerFunctions) {
                     BindingResult result = bf.bind(context, chain);
                     if (result != null) {
@@ -333,7 +544,7 @@ public class DependencySolver {
                     }
                 }
             } else {
-                logger.debug("{} is fixed, skipping", edge.getTail().getLabel());
+                logger.debug("{} is fixed or not matched by a trigger, skipping", edge.getTail().getLabel());
             }
             if (repl == null) {
                 // no trigger bindings, walk the node's children
@@ -344,7 +555,7 @@ public class DependencySolver {
                                                            .getDesireChain()
                                                            .getInitialDesire()
                                                            .getInjectionPoint());
-                walkGraphForReplacements(edge.getTail(), next, replacements);
+                walkGraphForReplacements(edge.getTail(), next, replacements, candidates);
             } else {
                 // trigger binding, add a replacement
                 logger.info("replacing {} with {}",
@@ -365,6 +576,33 @@ public class DependencySolver {
      */
     private Pair<DAGNode<Component,Dependency>,Dependency>
     resolveFully(Desire desire, InjectionContext context, Queue<Deferral> deferQueue) throws ResolutionException {
+        Outcome outcome = tryResolve(desire, context, deferQueue);
+        if (outcome.failure != null) {
+            // only now do we pay for an exception
+            throw outcome.failure.toException();
+        }
+        return Pair.of(outcome.node, outcome.dependency);
+    }
+
+    /**
+     * Resolve a desire and its dependencies, reporting unresolvable dependencies as a failed
+     * outcome rather than an exception so that skippable bindings can backtrack cheaply.
+     *
+     * @throws ResolutionException if there is an error other than an unresolvable dependency.
+     */
+    private Outcome tryResolve(Desire desire, InjectionContext context, Queue<Deferral> deferQueue) throws ResolutionException {
+        if (!instrumentation.isEnabled()) {
+            return resolveNode(desire, context, deferQueue);
+        }
+        long start = System.nanoTime();
+        Outcome outcome = resolveNode(desire, context, deferQueue);
+        if (outcome.failure == null) {
+            instrumentation.desireResolved(desire, outcome.node, System.nanoTime() - start);
+        }
+        return outcome;
+    }
+
+    private Outcome resolveNode(Desire desire, InjectionContext context, Queue<Deferral> deferQueue) throws ResolutionException {
         // check context depth against max to detect likely dependency cycles
         if (context.size() > maxDepth) {
             throw new CyclicDependencyException(desire, "Maximum context depth of " + maxDepth + " was reached");
@@ -372,6 +610,9 @@ public class DependencySolver {
         
         // resolve the current node
         Resolution result = resolve(desire, context);
+        if (result.failure != null) {
+            return new Outcome(result.failure);
+        }
 
         InjectionContext newContext = context.extend(result.satisfaction, desire.getInjectionPoint());
 
@@ -379,33 +620,33 @@ public class DependencySolver {
         if (result.deferDependencies) {
             // extend node onto deferred queue and skip its dependencies for now
             logger.debug("Deferring dependencies of {}", result.satisfaction);
-            node = DAGNode.singleton(result.makeSatisfaction());
+            node = DAGNode.singleton(makeComponent(result));
             // FIXME Deferred and skippable bindings do not interact well
             deferQueue.add(new Deferral(node, newContext));
-            return Pair.of(node, result.makeDependency());
+            return new Outcome(node, result.makeDependency());
         } else {
             return resolveDepsAndMakeNode(deferQueue, result, newContext);
         }
     }
 
-    private Pair<DAGNode<Component, Dependency>,Dependency> resolveDepsAndMakeNode(Queue<Deferral> deferQueue,
-                                                                                   Resolution result,
-                                                                                   InjectionContext newContext) throws ResolutionException {
+    private Outcome resolveDepsAndMakeNode(Queue<Deferral> deferQueue,
+                                           Resolution result,
+                                           InjectionContext newContext) throws ResolutionException {
         DAGNode<Component, Dependency> node;// build up a node with its outgoing edges
         DAGNodeBuilder<Component,Dependency> nodeBuilder = DAGNode.newBuilder();
-        nodeBuilder.setLabel(result.makeSatisfaction());
-        for (Desire d: result.satisfaction.getDependencies()) {
+        nodeBuilder.setLabel(makeComponent(result));
+        for (Desire dep: result.satisfaction.getDependencies()) {
+            Desire d = desires.intern(dep);
             // complete the sub graph for the given desire
-            // - the call to resolveFully() is responsible for adding the dependency edges
+            // - the call to tryResolve() is responsible for adding the dependency edges
             //   so we don't need to process the returned node
             logger.debug("Attempting to satisfy dependency {} of {}", d, result.satisfaction);
-            Pair<DAGNode<Component, Dependency>, Dependency> dep;
-            try {
-                dep = resolveFully(d, newContext, deferQueue);
-            } catch (UnresolvableDependencyException ex) {
-                if (!d.equals(ex.getDesireChain().getInitialDesire())) {
+            Outcome resolved = tryResolve(d, newContext, deferQueue);
+            Failure failure = resolved.failure;
+            if (failure != null) {
+                if (!d.equals(failure.desires.getInitialDesire())) {
                     // this is for some other (deeper) desire, fail
-                    throw ex;
+                    return resolved;
                 }
                 // whoops, try to backtrack
                 Resolution back = result.skippable ? result.backtrack() : null;
@@ -416,19 +657,33 @@ public class DependencySolver {
                     return resolveDepsAndMakeNode(deferQueue, back, forked);
                 } else if (result.backtracked || result.skippable) {
                     // the result is the result of backtracking, or could be, so make an error at this dependency
-                    throw new UnresolvableDependencyException(result.desires, newContext.getLeading(), ex);
+                    return new Outcome(new Failure(result.desires, newContext.getLeading(), failure));
                 } else {
-                    throw ex;
+                    return resolved;
                 }
             }
-            nodeBuilder.addEdge(dep);
+            nodeBuilder.addEdge(resolved.node, resolved.dependency);
         }
         node = nodeBuilder.build();
-        return Pair.of(node, result.makeDependency());
+        return new Outcome(node, result.makeDependency());
     }
 
+    /**
+     * Make the (shared) component for a resolution.
+     */
+    private Component makeComponent(Resolution result) {
+        Satisfaction sat = satisfactions.intern(result.satisfaction);
+        return components.intern(Component.create(sat, result.policy));
+    }
+
+    /**
+     * Resolve a desire to a satisfaction.
+     *
+     * @return The resolution, which records a {@linkplain Resolution#failure failure} if the
+     *         desire cannot be satisfied.
+     */
     private Resolution resolve(Desire desire, InjectionContext context) throws ResolutionException {
-        DesireChain chain = DesireChain.singleton(desire);
+        DesireChain chain = DesireChain.singleton(desires.intern(desire));
 
         CachePolicy policy = CachePolicy.NO_PREFERENCE;
         boolean fixed = false;
@@ -440,7 +695,18 @@ public class DependencySolver {
             BindingResult binding = null;
             for (BindingFunction bf: functions) {
                 binding = bf.bind(context, chain);
-                if (binding != null && !chain.getPreviousDesires().contains(binding.getDesire())) {
+                while (binding != null && chain.getPreviousDesires().contains(binding.getDesire())) {
+                    // the binding leads back to an earlier desire; reject its rule so that the
+                    // function can offer its next-best one
+                    BindRule rule = binding.getRule();
+                    if (rule == null || chain.hasRejectedRule(rule)) {
+                        binding = null;
+                    } else {
+                        chain = chain.rejectRule(rule);
+                        binding = bf.bind(context, chain);
+                    }
+                }
+                if (binding != null) {
                     // found a binding that hasn't been used before
                     break;
                 }
@@ -450,7 +716,7 @@ public class DependencySolver {
             boolean terminate = true; // so we stop if there is no binding
             if (binding != null) {
                 // update the desire chain
-                chain = chain.extend(binding.getDesire());
+                chain = chain.extend(desires.intern(binding.getDesire()), binding.getRule());
 
                 terminate = binding.terminates(); // binding decides if we stop
                 defer = binding.isDeferred();
@@ -477,7 +743,7 @@ public class DependencySolver {
                 return new Resolution(chain.getCurrentDesire().getSatisfaction(), policy, chain, fixed, defer, skippable, false);
             } else if (binding == null) {
                 // no more desires to process, it cannot be satisfied
-                throw new UnresolvableDependencyException(chain, context);
+                return new Resolution(new Failure(chain, context, null));
             }
         }
     }
@@ -493,6 +759,8 @@ public class DependencySolver {
         private final boolean deferDependencies;
         private final boolean skippable;
         private final boolean backtracked;
+        @Nullable
+        private final Failure failure;
 
         public Resolution(Satisfaction satisfaction, CachePolicy policy, 
                           DesireChain desires, boolean fixed,
@@ -506,6 +774,22 @@ public class DependencySolver {
             this.deferDependencies = deferDependencies;
             this.skippable = skippable;
             this.backtracked = backtracked;
+            failure = null;
+        }
+
+        /**
+         * Create a failed resolution.
+         * @param fail The failure.
+         */
+        public Resolution(Failure fail) {
+            satisfaction = null;
+            policy = null;
+            desires = fail.desires;
+            fixed = false;
+            deferDependencies = false;
+            skippable = false;
+            backtracked = false;
+            failure = fail;
         }
 
         public Component makeSatisfaction() {
@@ -554,6 +838,54 @@ public class DependencySolver {
         }
     }
     
+    /*
+     * Result of resolving a node and its dependencies: either the node and the dependency
+     * leading to it, or a failure.
+     */
+    private static class Outcome {
+        private final DAGNode<Component, Dependency> node;
+        private final Dependency dependency;
+        @Nullable
+        private final Failure failure;
+
+        public Outcome(DAGNode<Component, Dependency> node, Dependency dep) {
+            this.node = node;
+            dependency = dep;
+            failure = null;
+        }
+
+        public Outcome(Failure fail) {
+            node = null;
+            dependency = null;
+            failure = fail;
+        }
+    }
+
+    /*
+     * An unresolvable dependency, recorded as a value.  It is only turned into an
+     * UnresolvableDependencyException (with its stack trace) if it escapes the solver.
+     */
+    private static class Failure {
+        private final DesireChain desires;
+        private final InjectionContext context;
+        @Nullable
+        private final Failure cause;
+
+        public Failure(DesireChain desires, InjectionContext context, @Nullable Failure cause) {
+            this.desires = desires;
+            this.context = context;
+            this.cause = cause;
+        }
+
+        public UnresolvableDependencyException toException() {
+            if (cause == null) {
+                return new UnresolvableDependencyException(desires, context);
+            } else {
+                return new UnresolvableDependencyException(desires, context, cause.toException());
+            }
+        }
+    }
+
     /*
      * Deferred results tuple
      */
@@ -20,6 +20,8 @@
 package org.grouplens.grapht.solver;
 
 import org.grouplens.grapht.CachePolicy;
+import org.grouplens.grapht.Instrumentation;
+import org.grouplens.grapht.Instrumentations;
 import org.grouplens.grapht.util.Preconditions;
 
 import javax.annotation.Nonnull;
@@ -40,6 +42,7 @@ public class DependencySolverBuilder {
     private List<BindingFunction> triggerFunctions = new LinkedList<BindingFunction>();
     private CachePolicy defaultPolicy = CachePolicy.NO_PREFERENCE;
     private int maxDepth = 100;
+    private Instrumentation instrumentation = Instrumentations.none();
 
     /**
      * Get the current list of binding functions.
@@ -152,11 +155,34 @@ public class DependencySolverBuilder {
         return this;
     }
 
+    /**
+     * Get the instrumentation.
+     * @return The instrumentation the solver will report to.
+     * @since 0.11
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Set the instrumentation to report desire resolutions and graph merges to.  The default is
+     * {@link Instrumentations#none()}.
+     * @param instr The instrumentation.
+     * @return The builder (for chaining).
+     * @since 0.11
+     */
+    public DependencySolverBuilder setInstrumentation(@Nonnull Instrumentation instr) {
+        Preconditions.notNull("instrumentation", instr);
+        instrumentation = instr;
+        return this;
+    }
+
     /**
      * Build a dependency solver.
      * @return The dependency solver.
      */
     public DependencySolver build() {
-        return new DependencySolver(bindingFunctions, triggerFunctions, defaultPolicy, maxDepth);
+        return new DependencySolver(bindingFunctions, triggerFunctions, defaultPolicy, maxDepth,
+                                    instrumentation);
     }
 }
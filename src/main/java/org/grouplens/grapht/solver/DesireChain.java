@@ -20,6 +20,7 @@
 package org.grouplens.grapht.solver;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.util.AbstractChain;
 
@@ -45,22 +46,50 @@ public class DesireChain extends AbstractChain<Desire> {
     @Nonnull
     private final Desire initialDesire;
     private final UUID key;
+    /**
+     * The rule that produced this chain's current desire.  This is only needed while the chain is
+     * being resolved, so it is not serialized.
+     */
+    @Nullable
+    private final transient BindRule appliedRule;
+    /**
+     * Rules whose results were rejected for the current desire.  Like {@link #appliedRule}, this
+     * is only needed during resolution.
+     */
+    @Nullable
+    private final transient ImmutableSet<BindRule> rejectedRules;
 
     public static DesireChain singleton(Desire desire) {
-        return new DesireChain(null, desire);
+        return new DesireChain(null, desire, null);
     }
 
     /**
      * Create a new desire chain.
      * @param prev The previous chain.
      * @param d The desire.
+     * @param rule The rule that produced {@code d}, if any.
      */
-    private DesireChain(DesireChain prev, @Nonnull Desire d) {
+    private DesireChain(DesireChain prev, @Nonnull Desire d, @Nullable BindRule rule) {
         super(prev, d);
+        appliedRule = rule;
+        rejectedRules = ImmutableSet.of();
         key = prev == null ? UUID.randomUUID() : prev.key;
         initialDesire = prev == null ? d : prev.getInitialDesire();
     }
 
+    /**
+     * Create a copy of a chain with a different set of rejected rules.
+     * @param base The chain to copy.
+     * @param rejected The rules rejected for the current desire.
+     */
+    private DesireChain(DesireChain base, ImmutableSet<BindRule> rejected) {
+        super(base.previous, base.tailValue);
+        appliedRule = base.appliedRule;
+        rejectedRules = rejected;
+        key = base.key;
+        initialDesire = base.initialDesire;
+    }
+
     public static Predicate<DesireChain> hasInitialDesire(final Desire d) {
         return new Predicate<DesireChain>() {
             @Override
@@ -117,6 +146,50 @@ public class DesireChain extends AbstractChain<Desire> {
         return key;
     }
 
+    /**
+     * Query whether a bind rule has already been applied to produce one of the desires in this
+     * chain.
+     *
+     * @param rule The rule.
+     * @return {@code true} if {@code rule} produced one of this chain's desires.
+     * @see #extend(Desire, BindRule)
+     */
+    public boolean hasAppliedRule(BindRule rule) {
+        for (DesireChain cur = this; cur != null; cur = (DesireChain) cur.previous) {
+            if (cur.appliedRule != null && cur.appliedRule.equals(rule)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Query whether a bind rule's result has been rejected for the current desire.
+     *
+     * @param rule The rule.
+     * @return {@code true} if {@code rule} has been rejected by {@link #rejectRule(BindRule)}
+     *         since the current desire was added.
+     */
+    public boolean hasRejectedRule(BindRule rule) {
+        return rejectedRules != null && rejectedRules.contains(rule);
+    }
+
+    /**
+     * Record that a bind rule's result was rejected for the current desire, so that binding
+     * functions offer their next-best rule instead. The chain is not modified; this method
+     * returns a new chain with the same desires and key.
+     *
+     * @param rule The rejected rule.
+     * @return The new desire chain.
+     */
+    public DesireChain rejectRule(BindRule rule) {
+        ImmutableSet.Builder<BindRule> rejected = ImmutableSet.builder();
+        if (rejectedRules != null) {
+            rejected.addAll(rejectedRules);
+        }
+        return new DesireChain(this, rejected.add(rule).build());
+    }
+
     /**
      * Extend this chain with a new desire. The chain is not modified; this method returns a new
      * chain that includes the new desire as its current desire.
@@ -126,6 +199,20 @@ public class DesireChain extends AbstractChain<Desire> {
      */
     @Nonnull
     public DesireChain extend(@Nonnull Desire d) {
-        return new DesireChain(this, d);
+        return new DesireChain(this, d, null);
+    }
+
+    /**
+     * Extend this chain with a new desire produced by a bind rule.
+     *
+     * @param d The new current desire.
+     * @param rule The rule that produced {@code d}, or {@code null} if it was not produced by a
+     *             rule.
+     * @return The new desire chain.
+     * @see BindingResult#getRule()
+     */
+    @Nonnull
+    public DesireChain extend(@Nonnull Desire d, @Nullable BindRule rule) {
+        return new DesireChain(this, d, rule);
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.solver;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import org.grouplens.grapht.util.Preconditions;
+import org.grouplens.grapht.util.Types;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A family of bind rules that differ only in their dependency types, such as the rules
+ * generated for the supertypes of a binding's target. Rather than storing one rule per
+ * dependency type, the family stores the set of types (or, for {@linkplain #supertypesOf
+ * supertype families}, a subtype check) and creates the rule for a type the first time a desire
+ * for it is looked up.
+ *
+ * @see RuleBasedBindingFunction
+ */
+public final class GeneratedBindRules {
+    private final BindRule prototype;
+    /**
+     * The type whose supertypes this family covers, or {@code null} if the family has an explicit
+     * set of types.
+     */
+    @Nullable
+    private final Class<?> target;
+    @Nullable
+    private final Predicate<? super Class<?>> filter;
+    /**
+     * The dependency types.  For supertype families, this is only computed when requested.
+     */
+    private volatile Set<Class<?>> types;
+    private final ConcurrentMap<Class<?>, BindRule> rules;
+
+    /**
+     * Create a new rule family.
+     *
+     * @param prototype A bind rule; the family's rules are copies of this rule with their
+     *                  dependency types changed.
+     * @param types     The dependency types of the rules in this family.
+     */
+    public GeneratedBindRules(@Nonnull BindRule prototype, @Nonnull Set<Class<?>> types) {
+        Preconditions.notNull("prototype rule", prototype);
+        Preconditions.notNull("dependency types", types);
+        this.prototype = prototype;
+        this.types = ImmutableSet.copyOf(types);
+        target = null;
+        filter = null;
+        rules = new ConcurrentHashMap<Class<?>, BindRule>();
+    }
+
+    private GeneratedBindRules(BindRule prototype, Class<?> target, Predicate<? super Class<?>> filter) {
+        this.prototype = prototype;
+        this.target = target;
+        this.filter = filter;
+        rules = new ConcurrentHashMap<Class<?>, BindRule>();
+    }
+
+    /**
+     * Create a family of rules for the supertypes of a type.  Whether a type is in the family is
+     * decided by a subtype check when a desire for it is looked up, so the supertypes of
+     * {@code target} are only enumerated by {@link #getDependencyTypes()} and {@link #getRules()}.
+     *
+     * @param prototype A bind rule; the family's rules are copies of this rule with their
+     *                  dependency types changed.
+     * @param target    The type whose supertypes (including itself) the family may cover.
+     * @param filter    Selects the supertypes of {@code target} that are in the family.
+     * @return The rule family.
+     * @since 0.11
+     */
+    public static GeneratedBindRules supertypesOf(@Nonnull BindRule prototype, @Nonnull Class<?> target,
+                                                  @Nonnull Predicate<? super Class<?>> filter) {
+        Preconditions.notNull("prototype rule", prototype);
+        Preconditions.notNull("target type", target);
+        Preconditions.notNull("filter", filter);
+        return new GeneratedBindRules(prototype, target, filter);
+    }
+
+    /**
+     * Get the dependency types of the rules in this family.
+     * @return The set of dependency types.
+     */
+    public Set<Class<?>> getDependencyTypes() {
+        Set<Class<?>> result = types;
+        if (result == null) {
+            assert target != null && filter != null;
+            ImmutableSet.Builder<Class<?>> bld = ImmutableSet.builder();
+            for (Class<?> type: Types.getSupertypeDistances(target).keySet()) {
+                if (filter.apply(type)) {
+                    bld.add(type);
+                }
+            }
+            result = bld.build();
+            types = result;
+        }
+        return result;
+    }
+
+    /**
+     * Query whether this family has a rule for a (boxed) type.
+     */
+    private boolean contains(Class<?> type) {
+        if (target == null) {
+            return types.contains(type);
+        }
+        assert filter != null;
+        // interfaces' supertype closures do not include Object
+        boolean supertype = type.isAssignableFrom(target)
+                            && !(type.equals(Object.class) && target.isInterface());
+        return supertype && filter.apply(type);
+    }
+
+    /**
+     * Get the rule in this family for a dependency type.
+     *
+     * @param type The dependency type.
+     * @return The bind rule for {@code type}, or {@code null} if the family has no rule for it.
+     */
+    @Nullable
+    public BindRule getRule(Class<?> type) {
+        Class<?> boxed = Types.box(type);
+        if (!contains(boxed)) {
+            return null;
+        }
+        BindRule rule = rules.get(boxed);
+        if (rule == null) {
+            rule = prototype.newCopyBuilder().setDependencyType(boxed).build();
+            BindRule existing = rules.putIfAbsent(boxed, rule);
+            if (existing != null) {
+                rule = existing;
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * Get all rules in this family.
+     * @return The rules for every dependency type in the family.
+     */
+    public List<BindRule> getRules() {
+        Set<Class<?>> deps = getDependencyTypes();
+        List<BindRule> all = new ArrayList<BindRule>(deps.size());
+        for (Class<?> type: deps) {
+            all.add(getRule(type));
+        }
+        return all;
+    }
+
+    @Override
+    public String toString() {
+        if (target != null) {
+            return "Generated(supertypes of " + target.getName() + ", " + prototype + ")";
+        }
+        return "Generated(" + types.size() + " types, " + prototype + ")";
+    }
+}
@@ -28,9 +28,11 @@ import org.grouplens.grapht.context.ContextMatch;
 import org.grouplens.grapht.context.ContextMatcher;
 import org.grouplens.grapht.reflect.QualifierMatcher;
 import org.grouplens.grapht.util.Preconditions;
+import org.grouplens.grapht.util.Types;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
 /**
@@ -57,39 +59,75 @@ import java.util.*;
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
 public class RuleBasedBindingFunction implements BindingFunction {
-    private static final Map<Object,Set<BindRule>> bindRuleMemory
-            = new WeakHashMap<Object, Set<BindRule>>();
-
     private static final Logger logger = LoggerFactory.getLogger(RuleBasedBindingFunction.class);
     
     private final ImmutableListMultimap<ContextMatcher, BindRule> rules;
+    private final ImmutableListMultimap<ContextMatcher, GeneratedBindRules> generatedRules;
     
     public RuleBasedBindingFunction(Multimap<ContextMatcher, BindRule> rules) {
+        this(rules, ImmutableListMultimap.<ContextMatcher, GeneratedBindRules>of());
+    }
+
+    /**
+     * Create a binding function from explicit rules and families of generated rules.
+     *
+     * @param rules     The bind rules.
+     * @param generated Families of bind rules, whose rules are only created when a desire for
+     *                  one of their dependency types is looked up.
+     */
+    public RuleBasedBindingFunction(Multimap<ContextMatcher, BindRule> rules,
+                                    Multimap<ContextMatcher, GeneratedBindRules> generated) {
         Preconditions.notNull("rules", rules);
+        Preconditions.notNull("generated rules", generated);
         
         this.rules = ImmutableListMultimap.copyOf(rules);
+        generatedRules = ImmutableListMultimap.copyOf(generated);
     }
     
     /**
-     * Get the rules underlying this binding function.
+     * Get the rules underlying this binding function.  Families of generated rules are expanded
+     * into their individual rules.
      * @return The rules used by this BindingFunction
      */
     public ListMultimap<ContextMatcher, BindRule> getRules() {
-        return rules;
+        if (generatedRules.isEmpty()) {
+            return rules;
+        }
+        ImmutableListMultimap.Builder<ContextMatcher, BindRule> bld = ImmutableListMultimap.builder();
+        bld.putAll(rules);
+        for (Map.Entry<ContextMatcher, GeneratedBindRules> e: generatedRules.entries()) {
+            bld.putAll(e.getKey(), e.getValue().getRules());
+        }
+        return bld.build();
     }
     
-    @Override
-    public BindingResult bind(InjectionContext context, DesireChain desire) throws ResolutionException {
-        // FIXME Build a better way to remember the applied rules
-        Set<BindRule> appliedRules;
-        synchronized (bindRuleMemory) {
-            appliedRules = bindRuleMemory.get(desire.getKey());
-            if (appliedRules == null) {
-                appliedRules = new HashSet<BindRule>();
-                bindRuleMemory.put(desire.getKey(), appliedRules);
+    /**
+     * Get the desired types that this function's rules can match.  A desire whose type is not in
+     * this set is never bound by this function.
+     *
+     * @return The set of dependency types of this function's rules, or {@code null} if some rule
+     *         does not expose its dependency type.
+     */
+    @Nullable
+    Set<Class<?>> getDependencyTypes() {
+        Set<Class<?>> types = new HashSet<Class<?>>();
+        for (BindRule rule: rules.values()) {
+            if (rule instanceof BindRuleImpl) {
+                types.add(((BindRuleImpl) rule).getDependencyType());
+            } else {
+                return null;
             }
         }
+        for (GeneratedBindRules family: generatedRules.values()) {
+            for (Class<?> type: family.getDependencyTypes()) {
+                types.add(Types.box(type));
+            }
+        }
+        return types;
+    }
 
+    @Override
+    public BindingResult bind(InjectionContext context, DesireChain desire) throws ResolutionException {
         // collect all bind rules that apply to this desire
         List<Pair<ContextMatch, BindRule>> validRules = new ArrayList<Pair<ContextMatch, BindRule>>();
         for (ContextMatcher matcher: rules.keySet()) {
@@ -98,13 +136,38 @@ public class RuleBasedBindingFunction implements BindingFunction {
                 // the context applies to the current context, so go through all
                 // bind rules within it and record those that match the desire
                 for (BindRule br: rules.get(matcher)) {
-                    if (br.matches(desire.getCurrentDesire()) && !appliedRules.contains(br)) {
+                    if (br.matches(desire.getCurrentDesire())
+                            && !desire.hasAppliedRule(br) && !desire.hasRejectedRule(br)) {
                         validRules.add(Pair.of(match, br));
                         logger.trace("Matching rule, context: {}, rule: {}", matcher, br);
                     }
                 }
             }
         }
+        if (!generatedRules.isEmpty()) {
+            Class<?> type = desire.getCurrentDesire().getDesiredType();
+            for (ContextMatcher matcher: generatedRules.keySet()) {
+                ContextMatch match = null;
+                for (GeneratedBindRules family: generatedRules.get(matcher)) {
+                    // only families with a rule for the desired type can match
+                    BindRule br = family.getRule(type);
+                    if (br == null) {
+                        continue;
+                    }
+                    if (match == null) {
+                        match = matcher.matches(context);
+                        if (match == null) {
+                            break;
+                        }
+                    }
+                    if (br.matches(desire.getCurrentDesire())
+                            && !desire.hasAppliedRule(br) && !desire.hasRejectedRule(br)) {
+                        validRules.add(Pair.of(match, br));
+                        logger.trace("Matching generated rule, context: {}, rule: {}", matcher, br);
+                    }
+                }
+            }
+        }
         
         if (!validRules.isEmpty()) {
             // we have a bind rule to apply
@@ -134,14 +197,15 @@ public class RuleBasedBindingFunction implements BindingFunction {
             }
 
             // apply the bind rule to get a new desire
+            // the solver records the rule in the extended chain so it is not applied again
             BindRule selectedRule = validRules.get(0).getRight();
-            appliedRules.add(selectedRule);
             
             logger.debug("Applying rule: {} to desire: {}", selectedRule, desire);
             return BindingResult.newBuilder()
                                 .setDesire(selectedRule.apply(desire.getCurrentDesire()))
                                 .setCachePolicy(selectedRule.getCachePolicy())
                                 .setFlags(selectedRule.getFlags())
+                                .setRule(selectedRule)
                                 .build();
         }
         
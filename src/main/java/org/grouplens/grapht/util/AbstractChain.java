@@ -19,17 +19,28 @@
  */
 package org.grouplens.grapht.util;
 
-import com.google.common.collect.Iterators;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
  * Base class for implementing chains, immutable reverse singly-linked lists.
  *
+ * <p>Chains share their prefixes, but each node also keeps a reference to an element array so
+ * that indexed access is constant-time and iteration is linear.  Chains extended from the same
+ * node share one array as long as each extension is made from its most recent end; branching
+ * from an earlier node copies the prefix into a new array.  The list hash code is computed
+ * incrementally and cached, so chains with different hashes or lengths are rejected by
+ * {@link #equals(Object)} without walking their elements.
+ *
  * @since 0.7.0
  * @author <a href="http://www.grouplens.org">GroupLens Research</a>
  */
@@ -40,6 +51,20 @@ public abstract class AbstractChain<E extends Serializable> extends AbstractList
     protected final E tailValue;
     protected final int length;
 
+    /**
+     * The element store shared with other chains.  It is transient, and rebuilt when the chain
+     * is deserialized.
+     */
+    private transient Storage storage;
+    /**
+     * The element array.  Entries at indexes below {@link #length} are never modified.
+     */
+    private transient Object[] elements;
+    /**
+     * The cached hash code, or 0 if it has not been computed.
+     */
+    private transient int hash;
+
     /**
      * Construct a new chain node.
      * @param prev The previous node, or {@code null} for a singleton chain.
@@ -53,6 +78,42 @@ public abstract class AbstractChain<E extends Serializable> extends AbstractList
         } else {
             length = prev.length + 1;
         }
+        attach();
+    }
+
+    /**
+     * Store this node's tail value in an element array, reusing the previous node's array if this
+     * node is the first to extend it.
+     */
+    private void attach() {
+        if (previous != null) {
+            Storage store = previous.storage;
+            synchronized (store) {
+                if (store.used == previous.length) {
+                    if (store.array.length == previous.length) {
+                        store.array = Arrays.copyOf(store.array, previous.length * 2);
+                    }
+                    store.array[previous.length] = tailValue;
+                    store.used = length;
+                    storage = store;
+                    elements = store.array;
+                    return;
+                }
+            }
+        }
+
+        Object[] array = new Object[Math.max(length, 4)];
+        if (previous != null) {
+            System.arraycopy(previous.elements, 0, array, 0, previous.length);
+        }
+        array[length - 1] = tailValue;
+        storage = new Storage(array, length);
+        elements = array;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        attach();
     }
 
     public E getTailValue() {
@@ -65,25 +126,36 @@ public abstract class AbstractChain<E extends Serializable> extends AbstractList
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public E get(int i) {
-        com.google.common.base.Preconditions.checkElementIndex(i, length);
-        if (i == length - 1) {
-            return tailValue;
-        } else {
-            assert previous != null;
-            return previous.get(i);
-        }
+        Preconditions.checkElementIndex(i, length);
+        return (E) elements[i];
     }
 
     @Nonnull
     @Override
     public Iterator<E> iterator() {
-        Iterator<E> current = Iterators.singletonIterator(tailValue);
-        if (previous == null) {
-            return current;
-        } else {
-            return Iterators.concat(previous.iterator(), current);
-        }
+        return new Iterator<E>() {
+            int next = 0;
+            @Override
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (next >= length) {
+                    throw new NoSuchElementException();
+                }
+                return (E) elements[next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /**
@@ -126,8 +198,14 @@ public abstract class AbstractChain<E extends Serializable> extends AbstractList
 
     @Override
     public int hashCode() {
-        // override hashCode so that lint tools don't complain
-        return super.hashCode();
+        int h = hash;
+        if (h == 0) {
+            // the same recurrence as List.hashCode, continued from the previous node's hash
+            h = previous == null ? 1 : previous.hashCode();
+            h = 31 * h + (tailValue == null ? 0 : tailValue.hashCode());
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -136,10 +214,37 @@ public abstract class AbstractChain<E extends Serializable> extends AbstractList
             return true;
         } else if (o instanceof AbstractChain) {
             // optimize comparing two chains
-            return Iterators.elementsEqual(reverseIterator(),
-                                           ((AbstractChain) o).reverseIterator());
+            AbstractChain<?> other = (AbstractChain<?>) o;
+            if (length != other.length || hashCode() != other.hashCode()) {
+                return false;
+            }
+            AbstractChain<?> a = this;
+            AbstractChain<?> b = other;
+            // stop as soon as the chains share a prefix
+            while (a != b) {
+                if (!Objects.equal(a.tailValue, b.tailValue)) {
+                    return false;
+                }
+                a = a.previous;
+                b = b.previous;
+            }
+            return true;
         } else {
             return super.equals(o);
         }
     }
+
+    /**
+     * An element array shared by a family of chains, along with the number of its entries that
+     * have been claimed.
+     */
+    private static final class Storage {
+        Object[] array;
+        int used;
+
+        Storage(Object[] arr, int n) {
+            array = arr;
+            used = n;
+        }
+    }
 }
@@ -28,7 +28,9 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.*;
@@ -46,6 +48,15 @@ import java.util.*;
  *     {@link Class#getName()}.  The name encodes array information, so this is adequate
  *     to fully reconstruct the class.
  * </p>
+ * <p>
+ *     Deserialized proxies check the class's checksum when they are resolved.  Code loading a
+ *     large graph of which it will only use a part can {@linkplain #deferResolution() defer}
+ *     resolving the graph's classes: while resolution is deferred, class satisfactions, desires
+ *     and injection points stay symbolic and are resolved (and their classes verified) when they
+ *     are first used, so the classes of components that are never used are never loaded.
+ *     Qualifiers, bind rules and instance satisfactions still resolve their proxies as they are
+ *     read.
+ * </p>
  *
  * @author <a href="http://grouplens.org">GroupLens Research</a>
  */
@@ -55,20 +66,70 @@ public final class ClassProxy implements Serializable {
     private static final Logger logger = LoggerFactory.getLogger(ClassProxy.class);
 
     private final String className;
-    private final long checksum;
+    /**
+     * The class checksum.  This is computed lazily, since it is only needed when the proxy is
+     * serialized; it is always present in proxies that have been deserialized.
+     */
+    private long checksum;
+    private transient volatile boolean checksumComputed;
     @Nullable
     private transient volatile WeakReference<Class<?>> theClass;
     private transient ClassLoader classLoader;
+    /**
+     * Whether the checksum of the loaded class has been verified (or does not need to be, for
+     * proxies that were not deserialized).
+     */
+    private transient volatile boolean verified;
 
-    private ClassProxy(String name, long check) {
-        className = name;
-        checksum = check;
+    private static final ThreadLocal<Boolean> resolutionDeferred = new ThreadLocal<Boolean>();
+
+    private ClassProxy(Class<?> cls) {
+        className = cls.getName();
+        checksumComputed = false;
+        theClass = new WeakReference<Class<?>>(cls);
         classLoader = ClassLoaders.inferDefault(ClassProxy.class);
+        verified = true;
     }
 
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
         stream.defaultReadObject();
+        checksumComputed = true;
         classLoader = ClassLoaders.inferDefault(ClassProxy.class);
+        verified = false;
+    }
+
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        try {
+            getChecksum();
+        } catch (ClassNotFoundException e) {
+            InvalidClassException ex = new InvalidClassException(className, "cannot compute class checksum");
+            ex.initCause(e);
+            throw ex;
+        }
+        stream.defaultWriteObject();
+    }
+
+    /**
+     * Get the checksum of the proxied class, computing it if necessary.
+     * @return The class checksum.
+     * @throws ClassNotFoundException if the class must be loaded to compute its checksum, and
+     *                                cannot be found.
+     */
+    private long getChecksum() throws ClassNotFoundException {
+        if (!checksumComputed) {
+            synchronized (this) {
+                if (!checksumComputed) {
+                    WeakReference<Class<?>> ref = theClass;
+                    Class<?> cls = ref == null ? null : ref.get();
+                    if (cls == null) {
+                        cls = loadClass();
+                    }
+                    checksum = checksumClass(cls);
+                    checksumComputed = true;
+                }
+            }
+        }
+        return checksum;
     }
 
     /**
@@ -102,49 +163,134 @@ public final class ClassProxy implements Serializable {
     }
 
     /**
-     * Resolve a class proxy to a class.
+     * Resolve a class proxy to a class.  Deserialized proxies verify the class's checksum the
+     * first time they are resolved.
+     *
      * @return The class represented by this proxy.
-     * @throws ClassNotFoundException if the class represented by this proxy cannot be found.
+     * @throws ClassNotFoundException if the class represented by this proxy cannot be found, or
+     *                                does not match its checksum.
      */
     public Class<?> resolve() throws ClassNotFoundException {
+        Class<?> cls = loadIfNeeded();
+        if (!verified) {
+            verify(cls);
+        }
+        return cls;
+    }
+
+    private Class<?> loadIfNeeded() throws ClassNotFoundException {
         WeakReference<Class<?>> ref = theClass;
         Class<?> cls = ref == null ? null : ref.get();
         if (cls == null) {
-            if(className.equals("void")) {
-                // special case
-                cls = Void.TYPE;
-            } else {
-                cls = ClassUtils.getClass(classLoader, className);
-            }
-            long check = checksumClass(cls);
-            if (!isSerializationPermissive() && checksum != check) {
+            cls = loadClass();
+            theClass = new WeakReference<Class<?>>(cls);
+        }
+        return cls;
+    }
+
+    private synchronized void verify(Class<?> cls) throws ClassNotFoundException {
+        if (verified) {
+            return;
+        }
+        long check = checksumClass(cls);
+        long expected = getChecksum();
+        if (expected != check) {
+            if (!isSerializationPermissive()) {
                 throw new ClassNotFoundException("checksum mismatch for " + cls.getName());
+            }
+            logger.warn("checksum mismatch for {}", cls);
+        }
+        verified = true;
+    }
+
+    /**
+     * Defer class resolution on the current thread, typically while reading a serialized graph.
+     * Until the returned context is popped, deserialized satisfactions, desires and injection
+     * points are symbolic, resolving their classes and verifying their checksums when they are
+     * first used.  Example usage:
+     *
+     * {@code
+     * DeferredResolutionContext context = ClassProxy.deferResolution();
+     * try {
+     *     graph = (DAGNode<Component,Dependency>) input.readObject();
+     * } finally {
+     *     context.pop();
+     * }
+     * }
+     *
+     * @return A context for restoring the original resolution mode.
+     * @since 0.11
+     */
+    public static DeferredResolutionContext deferResolution() {
+        DeferredResolutionContext context = new DeferredResolutionContext(resolutionDeferred.get());
+        resolutionDeferred.set(Boolean.TRUE);
+        return context;
+    }
+
+    /**
+     * Query whether class resolution is deferred on the current thread.
+     * @return {@code true} if resolution is deferred.
+     * @see #deferResolution()
+     * @since 0.11
+     */
+    public static boolean isResolutionDeferred() {
+        return Boolean.TRUE.equals(resolutionDeferred.get());
+    }
+
+    /**
+     * A deferred resolution context, used to restore the state from {@link #deferResolution()}.
+     * @since 0.11
+     */
+    public static final class DeferredResolutionContext {
+        private final Boolean original;
+        private boolean popped = false;
+
+        private DeferredResolutionContext(Boolean orig) {
+            original = orig;
+        }
+
+        /**
+         * Restore the resolution mode in effect before this context was entered.
+         * @throws IllegalStateException if the context was already popped.
+         */
+        public void pop() {
+            if (popped) {
+                throw new IllegalStateException("resolution context already popped");
+            }
+            if (original == null) {
+                resolutionDeferred.remove();
             } else {
-                if (checksum != check) {
-                    logger.warn("checksum mismatch for {}", cls);
-                }
-                theClass = new WeakReference<Class<?>>(cls);
+                resolutionDeferred.set(original);
             }
+            popped = true;
         }
-        return cls;
     }
 
-    private static final Map<Class<?>, ClassProxy> proxyCache = new WeakHashMap<Class<?>, ClassProxy>();
+    private Class<?> loadClass() throws ClassNotFoundException {
+        if (className.equals("void")) {
+            // special case
+            return Void.TYPE;
+        } else {
+            return ClassUtils.getClass(classLoader, className);
+        }
+    }
+
+    private static final ClassValue<ClassProxy> proxyCache = new ClassValue<ClassProxy>() {
+        @Override
+        protected ClassProxy computeValue(Class<?> type) {
+            return new ClassProxy(type);
+        }
+    };
 
     /**
-     * Construct a class proxy for a class.
+     * Construct a class proxy for a class.  Proxies are cached per class, and their checksums
+     * are only computed when they are serialized.
      *
      * @param cls The class.
      * @return The class proxy.
      */
-    public static synchronized ClassProxy of(Class<?> cls) {
-        ClassProxy proxy = proxyCache.get(cls);
-        if (proxy == null) {
-            proxy = new ClassProxy(cls.getName(), checksumClass(cls));
-            proxy.theClass = new WeakReference<Class<?>>(cls);
-            proxyCache.put(cls, proxy);
-        }
-        return proxy;
+    public static ClassProxy of(Class<?> cls) {
+        return proxyCache.get(cls);
     }
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
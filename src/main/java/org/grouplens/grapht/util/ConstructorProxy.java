@@ -46,6 +46,15 @@ public final class ConstructorProxy implements Serializable {
         parameterTypes = ptypes;
     }
 
+    /**
+     * Get the name of the declaring class, without resolving it.
+     * @return The declaring class's name.
+     * @since 0.11
+     */
+    public String getDeclaringClassName() {
+        return declaringClass.getClassName();
+    }
+
     @Override
     public String toString() {
         String repr = stringRepr;
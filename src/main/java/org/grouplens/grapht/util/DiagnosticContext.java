@@ -0,0 +1,187 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.util;
+
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A per-thread stack of diagnostic data, such as the class and injection point being
+ * constructed.  Pushing and popping entries is cheap: entries are stored in reusable arrays,
+ * and values are only converted to strings when the context is copied out.  The context is
+ * copied into the {@link MDC} only on demand, with {@link #exportToMDC()}, typically just before
+ * logging; the MDC is restored as entries are popped.
+ *
+ * <p>Use it in a {@code try}/{@code finally} block:</p>
+ * <pre>{@code
+ * DiagnosticContext ctx = DiagnosticContext.get();
+ * int mark = ctx.push("org.grouplens.grapht.class", type);
+ * try {
+ *     // ...
+ * } finally {
+ *     ctx.pop(mark);
+ * }
+ * }</pre>
+ *
+ * <p>This replaces {@link LogContext}, which copied the MDC's map for every context.</p>
+ *
+ * @since 0.11
+ */
+public final class DiagnosticContext {
+    private static final ThreadLocal<DiagnosticContext> contexts = new ThreadLocal<DiagnosticContext>() {
+        @Override
+        protected DiagnosticContext initialValue() {
+            return new DiagnosticContext();
+        }
+    };
+
+    private String[] keys = new String[16];
+    private Object[] values = new Object[16];
+    private int depth = 0;
+    /**
+     * The number of entries that have been copied into the MDC.
+     */
+    private int exported = 0;
+    /**
+     * The MDC values the exported keys had before they were first exported.
+     */
+    private Map<String, String> savedMDC;
+
+    private DiagnosticContext() {}
+
+    /**
+     * Get the diagnostic context for the current thread.
+     * @return The current thread's context.
+     */
+    public static DiagnosticContext get() {
+        return contexts.get();
+    }
+
+    /**
+     * Push an entry onto the context.
+     *
+     * @param key The key.
+     * @param value The value; it is converted to a string with {@link String#valueOf(Object)}
+     *              only if the context is exported.
+     * @return The depth of the context before the push, to pass to {@link #pop(int)}.
+     */
+    public int push(String key, Object value) {
+        if (depth == keys.length) {
+            int n = depth * 2;
+            String[] nk = new String[n];
+            Object[] nv = new Object[n];
+            System.arraycopy(keys, 0, nk, 0, depth);
+            System.arraycopy(values, 0, nv, 0, depth);
+            keys = nk;
+            values = nv;
+        }
+        keys[depth] = key;
+        values[depth] = value;
+        return depth++;
+    }
+
+    /**
+     * Pop entries off the context, restoring it to an earlier depth.  If popped entries were
+     * exported to the MDC, their keys are restored to their previous values.
+     *
+     * @param mark The depth to restore, as returned by {@link #push(String, Object)}.
+     */
+    public void pop(int mark) {
+        if (mark > depth) {
+            throw new IllegalStateException("diagnostic context popped out of order");
+        }
+        if (exported > mark) {
+            for (int i = exported - 1; i >= mark; i--) {
+                restoreMDC(keys[i], mark);
+            }
+            exported = mark;
+            if (exported == 0) {
+                savedMDC = null;
+            }
+        }
+        for (int i = mark; i < depth; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        depth = mark;
+    }
+
+    /**
+     * Restore an MDC key to the value of the topmost entry below a depth, or to its value
+     * before it was exported.
+     */
+    private void restoreMDC(String key, int below) {
+        for (int i = below - 1; i >= 0; i--) {
+            if (keys[i].equals(key)) {
+                MDC.put(key, String.valueOf(values[i]));
+                return;
+            }
+        }
+        String old = savedMDC.get(key);
+        if (old == null) {
+            MDC.remove(key);
+        } else {
+            MDC.put(key, old);
+        }
+    }
+
+    /**
+     * Get the current depth of the context.
+     * @return The number of entries on the stack.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Copy the context's entries into the MDC.  Later entries take precedence over earlier ones
+     * with the same key.
+     */
+    public void exportToMDC() {
+        if (exported == depth) {
+            return;
+        }
+        if (savedMDC == null) {
+            savedMDC = new HashMap<String, String>();
+        }
+        for (int i = exported; i < depth; i++) {
+            if (!savedMDC.containsKey(keys[i])) {
+                savedMDC.put(keys[i], MDC.get(keys[i]));
+            }
+            MDC.put(keys[i], String.valueOf(values[i]));
+        }
+        exported = depth;
+    }
+
+    /**
+     * Get a snapshot of the context.
+     * @return A map of the context's keys to their current values, as strings.
+     */
+    public Map<String, String> snapshot() {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < depth; i++) {
+            map.put(keys[i], String.valueOf(values[i]));
+        }
+        return map;
+    }
+}
@@ -44,6 +44,24 @@ public final class FieldProxy implements Serializable {
         fieldType = type;
     }
 
+    /**
+     * Get the name of the declaring class, without resolving it.
+     * @return The declaring class's name.
+     * @since 0.11
+     */
+    public String getDeclaringClassName() {
+        return declaringClass.getClassName();
+    }
+
+    /**
+     * Get the field name.
+     * @return The name of the field.
+     * @since 0.11
+     */
+    public String getName() {
+        return fieldName;
+    }
+
     @Override
     public String toString() {
         return String.format("proxy of %s.%s", declaringClass.getClassName(), fieldName);
@@ -26,8 +26,10 @@ import org.slf4j.MDC;
 /**
  * Utility class to manage log data with {@link MDC}.  This class allows MDC parameters
  * to be set, and popped back off when the context is finished.
+ *
+ * @deprecated Use {@link DiagnosticContext}, which does not copy the MDC for each context.
  */
-
+@Deprecated
 public class LogContext {
     @SuppressWarnings("rawtypes")
 
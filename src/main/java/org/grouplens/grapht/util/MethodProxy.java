@@ -48,6 +48,24 @@ public final class MethodProxy implements Serializable {
         parameterTypes = ptypes;
     }
 
+    /**
+     * Get the name of the declaring class, without resolving it.
+     * @return The declaring class's name.
+     * @since 0.11
+     */
+    public String getDeclaringClassName() {
+        return declaringClass.getClassName();
+    }
+
+    /**
+     * Get the method name.
+     * @return The name of the method.
+     * @since 0.11
+     */
+    public String getName() {
+        return methodName;
+    }
+
     @Override
     public String toString() {
         String repr = stringRepr;
@@ -26,7 +26,7 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Static helper methods for working with types.
@@ -145,38 +145,56 @@ public final class Types {
         if (child.equals(parent)) {
             // fast-path same-class tests
             return 0;
-        } else if (!parent.isAssignableFrom(child)) {
-            // if child does not extend from the parent, return -1
+        }
+        Integer distance = getSupertypeDistances(child).get(parent);
+        if (distance == null) {
             throw new IllegalArgumentException("child not a subclass of parent");
-        } else if (!parent.isInterface()) {
-            // if the parent is not an interface, we only need to follower superclasses
-            int distance = 0;
-            Class<?> cur = child;
-            while (!cur.equals(parent)) {
-                distance++;
-                cur = cur.getSuperclass();
-            }
-            return distance;
-        } else {
-            // worst case, recursively compute the type
-            // recursion is safe, as types aren't too deep except in crazy-land
-            int minDepth = Integer.MAX_VALUE;
-            Class<?> sup = child.getSuperclass();
-            if (sup != null && parent.isAssignableFrom(sup)) {
-                minDepth = getTypeDistance(sup, parent);
-            }
-            for (Class<?> iface: child.getInterfaces()) {
-                if (parent.isAssignableFrom(iface)) {
-                    int d = getTypeDistance(iface, parent);
-                    if (d < minDepth) {
-                        minDepth = d;
-                    }
-                }
-            }
-            // minDepth now holds the depth of the superclass with shallowest depth
-            return minDepth + 1;
         }
+        return distance;
     }
+
+    /**
+     * Get the supertype closure of a class.  The result maps the class itself and each of its
+     * superclasses and implemented or extended interfaces to its {@linkplain #getTypeDistance(Class, Class)
+     * type distance} from {@code type}, in order of increasing distance.  The closure is computed once
+     * per class and cached.
+     *
+     * @param type The class.
+     * @return An unmodifiable map of the supertypes of {@code type} to their distances.
+     */
+    public static Map<Class<?>, Integer> getSupertypeDistances(@Nonnull Class<?> type) {
+        Preconditions.notNull("type", type);
+        return SUPERTYPE_DISTANCES.get(type);
+    }
+
+    private static final ClassValue<Map<Class<?>, Integer>> SUPERTYPE_DISTANCES =
+            new ClassValue<Map<Class<?>, Integer>>() {
+                @Override
+                protected Map<Class<?>, Integer> computeValue(Class<?> type) {
+                    // breadth-first search up the hierarchy, so each supertype is first
+                    // reached by one of its shortest paths
+                    Map<Class<?>, Integer> distances = new LinkedHashMap<Class<?>, Integer>();
+                    Queue<Class<?>> work = new ArrayDeque<Class<?>>();
+                    distances.put(type, 0);
+                    work.add(type);
+                    while (!work.isEmpty()) {
+                        Class<?> cur = work.remove();
+                        int next = distances.get(cur) + 1;
+                        Class<?> sup = cur.getSuperclass();
+                        if (sup != null && !distances.containsKey(sup)) {
+                            distances.put(sup, next);
+                            work.add(sup);
+                        }
+                        for (Class<?> iface: cur.getInterfaces()) {
+                            if (!distances.containsKey(iface)) {
+                                distances.put(iface, next);
+                                work.add(iface);
+                            }
+                        }
+                    }
+                    return Collections.unmodifiableMap(distances);
+                }
+            };
     
     /**
      * Get the type that is provided by a given implementation of
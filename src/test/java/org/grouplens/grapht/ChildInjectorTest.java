@@ -0,0 +1,174 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.grouplens.grapht.reflect.Desires;
+import org.grouplens.grapht.solver.DefaultInjector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ChildInjectorTest {
+    @Test
+    public void testChildOverridesBinding() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+        Injector child = InjectorBuilder.create()
+                                        .applyModule(new Module() {
+                                            @Override
+                                            public void configure(Context ctx) {
+                                                ctx.bind(Service.class).to(ServiceB.class);
+                                            }
+                                        })
+                                        .buildChild(parent);
+        assertThat(parent.getInstance(Service.class), instanceOf(ServiceA.class));
+        assertThat(child.getInstance(Service.class), instanceOf(ServiceB.class));
+        assertThat(child.getInstance(Client.class).service, instanceOf(ServiceB.class));
+        assertThat(parent.getInstance(Client.class).service, instanceOf(ServiceA.class));
+    }
+
+    @Test
+    public void testChildSharesUnaffectedInstances() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+        // resolve in the parent so the child inherits the subgraphs
+        Client pc = parent.getInstance(Client.class);
+        Shared ps = parent.getInstance(Shared.class);
+
+        InjectorBuilder cb = InjectorBuilder.create();
+        cb.bind(Service.class).to(ServiceB.class);
+        Injector child = cb.buildChild(parent);
+
+        assertThat(child.getInstance(Shared.class), sameInstance(ps));
+        Client cc = child.getInstance(Client.class);
+        assertThat(cc, not(sameInstance(pc)));
+        assertThat(cc.shared, sameInstance(ps));
+    }
+
+    @Test
+    public void testChildSharesLaterParentInstances() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+        // resolve, but do not instantiate, in the parent
+        ((DefaultInjector) parent).getSolver().resolve(Desires.create(null, Shared.class, false));
+
+        InjectorBuilder cb = InjectorBuilder.create();
+        cb.bind(Service.class).to(ServiceB.class);
+        Injector child = cb.buildChild(parent);
+
+        // instantiated by the child first, but owned by the parent
+        Shared cs = child.getInstance(Shared.class);
+        assertThat(parent.getInstance(Shared.class), sameInstance(cs));
+    }
+
+    @Test
+    public void testChildSharesInstancesResolvedAfterCreation() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+
+        InjectorBuilder cb = InjectorBuilder.create();
+        cb.bind(Service.class).to(ServiceB.class);
+        Injector child = cb.buildChild(parent);
+
+        // resolved in the parent only after the child exists
+        Shared ps = parent.getInstance(Shared.class);
+        assertThat(child.getInstance(Shared.class), sameInstance(ps));
+        Client cc = child.getInstance(Client.class);
+        assertThat(cc.service, instanceOf(ServiceB.class));
+        assertThat(cc.shared, sameInstance(ps));
+        assertThat(parent.getInstance(Client.class).shared, sameInstance(ps));
+    }
+
+    @Test
+    public void testChildResolvesThroughParent() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+
+        InjectorBuilder cb = InjectorBuilder.create();
+        cb.bind(Service.class).to(ServiceB.class);
+        Injector child = cb.buildChild(parent);
+
+        // resolved by the child first, but shared with the parent
+        Client cc = child.getInstance(Client.class);
+        assertThat(cc.service, instanceOf(ServiceB.class));
+        assertThat(parent.getInstance(Shared.class), sameInstance(cc.shared));
+        assertThat(parent.getInstance(Client.class).service, instanceOf(ServiceA.class));
+    }
+
+    @Test
+    public void testCloseChildLeavesParentComponents() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector parent = bld.build();
+        parent.getInstance(Client.class);
+
+        InjectorBuilder cb = InjectorBuilder.create();
+        cb.bind(Service.class).to(ServiceB.class);
+        Injector child = cb.buildChild(parent);
+        ServiceB service = (ServiceB) child.getInstance(Service.class);
+        Shared shared = child.getInstance(Shared.class);
+        child.close();
+        assertThat(service.closed, equalTo(true));
+        assertThat(shared.closed, equalTo(false));
+        parent.close();
+        assertThat(shared.closed, equalTo(true));
+    }
+
+    public static interface Service {}
+
+    public static class ServiceA implements Service {}
+
+    public static class ServiceB implements Service, AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class Shared implements AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class Client {
+        final Service service;
+        final Shared shared;
+
+        @Inject
+        public Client(Service svc, Shared sh) {
+            service = svc;
+            shared = sh;
+        }
+    }
+}
@@ -23,6 +23,13 @@ import org.grouplens.grapht.types.dft.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 
@@ -82,6 +89,49 @@ public class DefaultBindingsTest {
         assertThat(a, instanceOf(CPropDftImplA.class));
     }
 
+    @Test
+    public void testIndexedPropDefaultImplementation() throws InjectionException {
+        Injector inj = b.setDefaultsIndexEnabled(true).build();
+        IPropDftImpl a = inj.getInstance(IPropDftImpl.class);
+        assertThat(a, notNullValue());
+        assertThat(a, instanceOf(CPropDftImplA.class));
+        // types without defaults files are still resolved by their annotations
+        assertThat(inj.getInstance(IDftImpl.class), instanceOf(CDftImplA.class));
+    }
+
+    @Test
+    public void testIndexedPropDefaultProvider() throws InjectionException {
+        Injector inj = b.setDefaultsIndexEnabled(true).build();
+        IPropDftProvider a = inj.getInstance(IPropDftProvider.class);
+        assertThat(a, instanceOf(PPropDftProvider.Impl.class));
+    }
+
+    @Test
+    public void testIndexedDefaultInJarWithoutDirectories() throws Exception {
+        File jar = File.createTempFile("grapht-defaults", ".jar");
+        try {
+            // only the file entry, as some JAR tools write them
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+            try {
+                out.putNextEntry(new JarEntry("META-INF/grapht/defaults/" + IJarDftImpl.class.getName() + ".properties"));
+                out.write(("implementation=" + CJarDftImpl.class.getName() + "\n").getBytes("UTF-8"));
+                out.closeEntry();
+            } finally {
+                out.close();
+            }
+            URLClassLoader loader = new URLClassLoader(new URL[]{jar.toURI().toURL()},
+                                                       DefaultBindingsTest.class.getClassLoader());
+            try {
+                Injector inj = InjectorBuilder.create(loader).setDefaultsIndexEnabled(true).build();
+                assertThat(inj.getInstance(IJarDftImpl.class), instanceOf(CJarDftImpl.class));
+            } finally {
+                loader.close();
+            }
+        } finally {
+            jar.delete();
+        }
+    }
+
     @Test
     public void testPropOverrideDefaultImplementation() throws InjectionException {
         b.bind(IPropDftImpl.class).to(CPropDftImplB.class);
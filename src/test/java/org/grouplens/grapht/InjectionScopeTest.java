@@ -0,0 +1,282 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.util.concurrent.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class InjectionScopeTest {
+    @Test
+    public void testScopedInstanceSharedWithinScope() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        bld.bind(UsesCounter.class).unshared().to(UsesCounter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector scope = injector.openScope();
+            try {
+                Counter c1 = scope.getInstance(Counter.class);
+                Counter c2 = scope.getInstance(Counter.class);
+                assertThat(c1, sameInstance(c2));
+                UsesCounter user = scope.getInstance(UsesCounter.class);
+                assertThat(user.counter, sameInstance(c1));
+            } finally {
+                scope.close();
+            }
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testScopedInstanceDistinctAcrossScopes() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector s1 = injector.openScope();
+            Injector s2 = injector.openScope();
+            Counter c1 = s1.getInstance(Counter.class);
+            Counter c2 = s2.getInstance(Counter.class);
+            assertThat(c1, not(sameInstance(c2)));
+            s1.close();
+            s2.close();
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testMemoizedInstanceSharedAcrossScopes() throws Exception {
+        ScopingInjector injector = (ScopingInjector) InjectorBuilder.create().build();
+        try {
+            Injector s1 = injector.openScope();
+            Injector s2 = injector.openScope();
+            assertThat(s1.getInstance(Counter.class),
+                       sameInstance(s2.getInstance(Counter.class)));
+            assertThat(s1.getInstance(Counter.class),
+                       sameInstance(injector.getInstance(Counter.class)));
+            s1.close();
+            s2.close();
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testCloseScopeTearsDownScopedComponents() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector scope = injector.openScope();
+            Counter scoped = scope.getInstance(Counter.class);
+            ClosingComponent shared = scope.getInstance(ClosingComponent.class);
+            scope.close();
+            assertThat(scoped.closed, equalTo(1));
+            assertThat(shared.closed, equalTo(0));
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testPrototypesTornDownWithScope() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).unshared().to(Counter.class);
+        bld.setPrototypeTracking(PrototypeTracking.SCOPE);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        Counter outside = injector.getInstance(Counter.class);
+        Injector scope = injector.openScope();
+        Counter c1 = scope.getInstance(Counter.class);
+        Counter c2 = scope.getInstance(Counter.class);
+        assertThat(c1, not(sameInstance(c2)));
+        scope.close();
+        assertThat(c1.closed, equalTo(1));
+        assertThat(c2.closed, equalTo(1));
+        assertThat(outside.closed, equalTo(0));
+
+        injector.close();
+        // the prototype outside the scope is weakly tracked, but still alive
+        assertThat(outside.closed, equalTo(1));
+        assertThat(c1.closed, equalTo(1));
+    }
+
+    @Test(expected = ConstructionException.class)
+    public void testScopedOutsideScopeFails() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        Injector injector = bld.build();
+        try {
+            injector.getInstance(Counter.class);
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test(expected = ConstructionException.class)
+    public void testClosedScopeFails() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector scope = injector.openScope();
+            scope.getInstance(Counter.class);
+            scope.close();
+            scope.getInstance(Counter.class);
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testMemoizedCannotCaptureScoped() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector scope = injector.openScope();
+            try {
+                scope.getInstance(UsesCounter.class);
+                fail("memoized component should not capture a scoped component");
+            } catch (ConstructionException e) {
+                assertThat(e.getMessage().contains("Provider"), equalTo(true));
+            } finally {
+                scope.close();
+            }
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testMemoizedUsesScopedThroughProvider() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create().setProviderInjectionEnabled(true);
+        bld.bind(Counter.class).scoped().to(Counter.class);
+        ScopingInjector injector = (ScopingInjector) bld.build();
+        try {
+            Injector s1 = injector.openScope();
+            Injector s2 = injector.openScope();
+            UsesCounterProvider user = s1.getInstance(UsesCounterProvider.class);
+            assertThat(s2.getInstance(UsesCounterProvider.class), sameInstance(user));
+            assertThat(injector.getInstance(UsesCounterProvider.class), sameInstance(user));
+            s1.close();
+            s2.close();
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testSlowSlotDoesNotBlockScope() throws Exception {
+        final InjectionScope scope = InjectionContainer.create().openScope();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> slow = exec.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return scope.getOrCreate(0, new Instantiator() {
+                        @Override
+                        public Object instantiate() throws ConstructionException {
+                            entered.countDown();
+                            try {
+                                if (!release.await(2, TimeUnit.SECONDS)) {
+                                    throw new ConstructionException(Counter.class, "never released", null);
+                                }
+                            } catch (InterruptedException e) {
+                                throw new ConstructionException(Counter.class, "interrupted", e);
+                            }
+                            return new Counter();
+                        }
+
+                        @Override
+                        public Class getType() {
+                            return Counter.class;
+                        }
+                    });
+                }
+            });
+            assertThat(entered.await(5, TimeUnit.SECONDS), equalTo(true));
+            // slot 0 is still being filled; slot 1 must remain available
+            Object fast = scope.getOrCreate(1, new Instantiator() {
+                @Override
+                public Object instantiate() {
+                    return new Counter();
+                }
+
+                @Override
+                public Class getType() {
+                    return Counter.class;
+                }
+            });
+            release.countDown();
+            Object first = slow.get(5, TimeUnit.SECONDS);
+            assertThat(first, notNullValue());
+            assertThat(first, not(sameInstance(fast)));
+        } finally {
+            exec.shutdownNow();
+            scope.close();
+        }
+    }
+
+    public static class Counter implements AutoCloseable {
+        int closed = 0;
+
+        @Override
+        public void close() {
+            closed += 1;
+        }
+    }
+
+    public static class UsesCounter {
+        final Counter counter;
+
+        @Inject
+        public UsesCounter(Counter c) {
+            counter = c;
+        }
+    }
+
+    public static class UsesCounterProvider {
+        final Provider<Counter> counter;
+
+        @Inject
+        public UsesCounterProvider(Provider<Counter> c) {
+            counter = c;
+        }
+    }
+
+    public static class ClosingComponent implements AutoCloseable {
+        int closed = 0;
+
+        @Override
+        public void close() {
+            closed += 1;
+        }
+    }
+}
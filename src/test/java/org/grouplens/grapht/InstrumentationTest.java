@@ -0,0 +1,196 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.grouplens.grapht.graph.DAGNode;
+import org.grouplens.grapht.reflect.Desire;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class InstrumentationTest {
+    @Test
+    public void testEventsReported() throws Exception {
+        RecordingInstrumentation instr = new RecordingInstrumentation();
+        Injector injector = InjectorBuilder.create()
+                                           .setInstrumentation(instr)
+                                           .build();
+        UsesResource obj = injector.getInstance(UsesResource.class);
+        assertThat(obj.resource, notNullValue());
+
+        assertThat(instr.resolved, Matchers.<Class<?>>hasItem(UsesResource.class));
+        assertThat(instr.resolved, Matchers.<Class<?>>hasItem(Resource.class));
+        assertThat(instr.merges, greaterThan(0));
+        assertThat(instr.built, greaterThanOrEqualTo(2));
+        assertThat(instr.instantiated, Matchers.<Class<?>>contains(Resource.class, UsesResource.class));
+        assertThat(instr.destroyed, empty());
+
+        injector.close();
+        assertThat(instr.destroyed, Matchers.<Class<?>>contains(Resource.class));
+    }
+
+    @Test
+    public void testDisabledInstrumentationIgnored() throws Exception {
+        RecordingInstrumentation instr = new RecordingInstrumentation();
+        instr.enabled = false;
+        Injector injector = InjectorBuilder.create()
+                                           .setInstrumentation(instr)
+                                           .build();
+        injector.getInstance(UsesResource.class);
+        injector.close();
+        assertThat(instr.resolved, empty());
+        assertThat(instr.instantiated, empty());
+        assertThat(instr.destroyed, empty());
+    }
+
+    @Test
+    public void testMemoHitsReported() throws Exception {
+        RecordingInstrumentation instr = new RecordingInstrumentation();
+        Injector injector = InjectorBuilder.create()
+                                           .setInstrumentation(instr)
+                                           .build();
+        injector.getInstance(Resource.class);
+        injector.getInstance(Resource.class);
+        assertThat(instr.memoMisses, Matchers.<Class<?>>contains(Resource.class));
+        assertThat(instr.memoHits, Matchers.<Class<?>>contains(Resource.class));
+        injector.close();
+    }
+
+    @Test
+    public void testConcurrentMemoRequestsReportOneMiss() throws Exception {
+        final RecordingInstrumentation instr = new RecordingInstrumentation();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Instantiator memo = Instantiators.memoize(new Instantiator() {
+            @Override
+            public Object instantiate() throws ConstructionException {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new ConstructionException(Resource.class, "interrupted", e);
+                }
+                return new Resource();
+            }
+
+            @Override
+            public Class getType() {
+                return Resource.class;
+            }
+        }, new Instantiators.MemoListener() {
+            @Override
+            public void memoizedInstanceRequested(Class<?> type, boolean hit) {
+                instr.memoizedInstanceRequested(type, hit);
+            }
+        });
+        Callable<Object> request = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return memo.instantiate();
+            }
+        };
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = exec.submit(request);
+            assertThat(entered.await(5, TimeUnit.SECONDS), equalTo(true));
+            // the second request starts while the first is still creating the instance
+            Future<Object> second = exec.submit(request);
+            release.countDown();
+            assertThat(second.get(5, TimeUnit.SECONDS), sameInstance(first.get(5, TimeUnit.SECONDS)));
+        } finally {
+            exec.shutdownNow();
+        }
+        assertThat(instr.memoMisses, hasSize(1));
+        assertThat(instr.memoHits, hasSize(1));
+    }
+
+    private static class RecordingInstrumentation implements Instrumentation {
+        boolean enabled = true;
+        final List<Class<?>> resolved = new ArrayList<Class<?>>();
+        int merges = 0;
+        int built = 0;
+        final List<Class<?>> instantiated = new ArrayList<Class<?>>();
+        final List<Class<?>> destroyed = new ArrayList<Class<?>>();
+        final List<Class<?>> memoHits = new ArrayList<Class<?>>();
+        final List<Class<?>> memoMisses = new ArrayList<Class<?>>();
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public synchronized void desireResolved(Desire desire, DAGNode<Component, Dependency> node, long nanos) {
+            assertThat(nanos, greaterThanOrEqualTo(0L));
+            resolved.add(node.getLabel().getSatisfaction().getErasedType());
+        }
+
+        @Override
+        public synchronized void graphMerged(DAGNode<Component, Dependency> graph, long nanos) {
+            merges += 1;
+        }
+
+        @Override
+        public synchronized void instantiatorBuilt(DAGNode<Component, Dependency> node, long nanos) {
+            built += 1;
+        }
+
+        @Override
+        public synchronized void componentInstantiated(Class<?> type, long nanos, long selfNanos) {
+            assertThat(selfNanos, lessThanOrEqualTo(nanos));
+            instantiated.add(type);
+        }
+
+        @Override
+        public synchronized void memoizedInstanceRequested(Class<?> type, boolean hit) {
+            if (hit) {
+                memoHits.add(type);
+            } else {
+                memoMisses.add(type);
+            }
+        }
+
+        @Override
+        public synchronized void componentDestroyed(Class<?> type, long nanos) {
+            destroyed.add(type);
+        }
+    }
+
+    public static class Resource implements AutoCloseable {
+        @Override
+        public void close() {}
+    }
+
+    public static class UsesResource {
+        final Resource resource;
+
+        @Inject
+        public UsesResource(Resource r) {
+            resource = r;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.junit.Test;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LifecycleManagerTest {
+    @Test
+    public void testWeakPrototypeTornDownIfAlive() {
+        RecordingManager mgr = new RecordingManager();
+        mgr.setPrototypeTracking(PrototypeTracking.WEAK);
+        Resource res = new Resource();
+        mgr.registerPrototype(res, null);
+        assertThat(mgr.getActionCount(), equalTo(1));
+        mgr.close();
+        assertThat(res.closed, equalTo(true));
+    }
+
+    @Test
+    public void testWeakPrototypeForgottenAfterCollection() {
+        RecordingManager mgr = new RecordingManager();
+        mgr.setPrototypeTracking(PrototypeTracking.WEAK);
+        Resource res = new Resource();
+        mgr.registerPrototype(res, null);
+        assertThat(mgr.references, hasSize(1));
+        mgr.collect(mgr.references.get(0));
+        assertThat(mgr.getActionCount(), equalTo(0));
+        mgr.close();
+        // reclaimed prototypes are not torn down
+        assertThat(res.closed, equalTo(false));
+    }
+
+    @Test
+    public void testWeakPrototypeActionsBounded() {
+        RecordingManager mgr = new RecordingManager();
+        mgr.setPrototypeTracking(PrototypeTracking.WEAK);
+        Resource live = new Resource();
+        mgr.registerPrototype(live, null);
+        for (int i = 0; i < 1000; i++) {
+            mgr.registerPrototype(new Resource(), null);
+            mgr.collect(mgr.references.get(mgr.references.size() - 1));
+            assertThat(mgr.getActionCount(), lessThanOrEqualTo(2));
+        }
+        assertThat(mgr.getActionCount(), equalTo(1));
+        mgr.close();
+        assertThat(live.closed, equalTo(true));
+    }
+
+    @Test
+    public void testRetainedPrototypesKept() {
+        RecordingManager mgr = new RecordingManager();
+        for (int i = 0; i < 10; i++) {
+            mgr.registerPrototype(new Resource(), null);
+        }
+        assertThat(mgr.references, empty());
+        assertThat(mgr.getActionCount(), equalTo(10));
+        mgr.close();
+    }
+
+    /**
+     * Manager that records its weak references, so tests can simulate their collection.
+     */
+    private static class RecordingManager extends LifecycleManager {
+        final List<Reference<Object>> references = new ArrayList<Reference<Object>>();
+
+        @Override
+        Reference<Object> newWeakReference(Object instance, ReferenceQueue<Object> queue) {
+            Reference<Object> ref = super.newWeakReference(instance, queue);
+            references.add(ref);
+            return ref;
+        }
+
+        void collect(Reference<Object> ref) {
+            ref.clear();
+            assertThat(ref.enqueue(), equalTo(true));
+        }
+    }
+
+    public static class Resource implements AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.grouplens.grapht.solver.DefaultInjector;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ReconfigureTest {
+    @Test
+    public void testReconfigureKeepsUnchangedInstances() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector old = bld.build();
+        Client oc = old.getInstance(Client.class);
+
+        InjectorBuilder nb = InjectorBuilder.create();
+        nb.bind(Service.class).to(ServiceB.class);
+        Injector injector = nb.reconfigure(old);
+
+        Client nc = injector.getInstance(Client.class);
+        assertThat(nc, not(sameInstance(oc)));
+        assertThat(nc.service, instanceOf(ServiceB.class));
+        assertThat(nc.shared, sameInstance(oc.shared));
+        assertThat(injector.getInstance(Shared.class), sameInstance(oc.shared));
+    }
+
+    @Test
+    public void testReconfigureWithSameBindings() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector old = bld.build();
+        Client oc = old.getInstance(Client.class);
+
+        Injector injector = bld.reconfigure(old);
+        assertThat(injector.getInstance(Client.class), sameInstance(oc));
+    }
+
+    @Test
+    public void testReconfigureShutsDownReplacedComponents() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector old = bld.build();
+        Client oc = old.getInstance(Client.class);
+        ServiceA svc = (ServiceA) oc.service;
+
+        InjectorBuilder nb = InjectorBuilder.create();
+        nb.bind(Service.class).to(ServiceB.class);
+        Injector injector = nb.reconfigure(old);
+
+        assertThat(svc.closed, equalTo(true));
+        assertThat(oc.shared.closed, equalTo(false));
+
+        injector.close();
+        assertThat(oc.shared.closed, equalTo(true));
+    }
+
+    @Test
+    public void testRepeatedReconfigureReleasesOldInjectors() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Service.class).to(ServiceA.class);
+        Injector injector = bld.build();
+        Shared shared = injector.getInstance(Client.class).shared;
+
+        for (int i = 0; i < 50; i++) {
+            LifecycleManager previous = ((DefaultInjector) injector).getLifecycleManager();
+            InjectorBuilder nb = InjectorBuilder.create();
+            nb.bind(Service.class).to(i % 2 == 0 ? ServiceB.class : ServiceA.class);
+            injector = nb.reconfigure(injector);
+            Client client = injector.getInstance(Client.class);
+            assertThat(client.shared, sameInstance(shared));
+
+            DefaultInjector current = (DefaultInjector) injector;
+            LifecycleManager manager = current.getLifecycleManager();
+            // the predecessor handed off or shut down everything it managed
+            assertThat(previous.getActionCount(), equalTo(0));
+            // components are only owned by nodes of the current graph, so no predecessor's
+            // graph is reachable through the lifecycle manager
+            Set<Object> owners = manager.getOwners();
+            assertThat(owners, not(empty()));
+            assertThat(current.getSolver().getGraph().getReachableNodes().containsAll(owners), equalTo(true));
+            // and the managed set does not grow across reconfigurations: it holds the shared
+            // component, plus the service if it needs shutting down
+            int expected = client.service instanceof AutoCloseable ? 2 : 1;
+            assertThat(manager.getActionCount(), equalTo(expected));
+        }
+
+        assertThat(shared.closed, equalTo(false));
+        injector.close();
+        assertThat(shared.closed, equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReconfigureRequiresDefaultInjector() throws Exception {
+        ScopingInjector injector = (ScopingInjector) InjectorBuilder.create().build();
+        InjectorBuilder.create().reconfigure(injector.openScope());
+    }
+
+    public static interface Service {}
+
+    public static class ServiceA implements Service, AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class ServiceB implements Service {}
+
+    public static class Shared implements AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class Client {
+        final Service service;
+        final Shared shared;
+
+        @Inject
+        public Client(Service svc, Shared sh) {
+            service = svc;
+            shared = sh;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht;
+
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class SoftMemoizeTest {
+    @Test
+    public void testSoftSharedInstanceIsShared() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Cache.class).softShared().to(Cache.class);
+        Injector injector = bld.build();
+        try {
+            Cache cache = injector.getInstance(Cache.class);
+            assertThat(injector.getInstance(Cache.class), sameInstance(cache));
+            assertThat(injector.getInstance(UsesCache.class).cache, sameInstance(cache));
+        } finally {
+            injector.close();
+        }
+    }
+
+    @Test
+    public void testSoftSharedInstanceTornDown() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(Cache.class).softShared().to(Cache.class);
+        Injector injector = bld.build();
+        Cache cache = injector.getInstance(Cache.class);
+        assertThat(cache.closed, equalTo(false));
+        injector.close();
+        assertThat(cache.closed, equalTo(true));
+    }
+
+    @Test
+    public void testSoftMemoizeNull() throws Exception {
+        CountingInstantiator inner = new CountingInstantiator();
+        Instantiator itor = Instantiators.softMemoize(inner);
+        assertThat(itor.instantiate(), nullValue());
+        assertThat(itor.instantiate(), nullValue());
+        assertThat(inner.count, equalTo(1));
+        assertThat(itor.getType(), equalTo((Class) Cache.class));
+    }
+
+    private static class CountingInstantiator implements Instantiator {
+        int count = 0;
+
+        @Override
+        public Object instantiate() throws ConstructionException {
+            count += 1;
+            return null;
+        }
+
+        @Override
+        public Class getType() {
+            return Cache.class;
+        }
+    }
+
+    public static class Cache implements AutoCloseable {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class UsesCache {
+        final Cache cache;
+
+        @Inject
+        public UsesCache(Cache c) {
+            cache = c;
+        }
+    }
+}
@@ -140,4 +140,32 @@ public class MergePoolTest {
         assertThat(pool.merge(p2), isIn(merged.getReachableNodes()));
         assertThat(pool.merge(p1), isIn(merged.getReachableNodes()));
     }
+
+    @Test
+    public void testAddGraph() {
+        DAGNode<String,String> node = DAGNode.singleton("foo");
+        DAGNode<String,String> root =
+                DAGNode.<String,String>newBuilder("root")
+                       .addEdge(node, "hello")
+                       .build();
+        pool.addGraph(root);
+        // the added graph is reused as-is
+        assertThat(pool.merge(root), sameInstance(root));
+
+        // an equivalent graph is merged to the added nodes
+        DAGNode<String,String> copy =
+                DAGNode.<String,String>newBuilder("root")
+                       .addEdge(DAGNode.<String,String>singleton("foo"), "hello")
+                       .build();
+        assertThat(pool.merge(copy), sameInstance(root));
+
+        // a graph sharing a subgraph reuses its nodes
+        DAGNode<String,String> other =
+                DAGNode.<String,String>newBuilder("other")
+                       .addEdge(node, "hello")
+                       .build();
+        DAGNode<String,String> merged = pool.merge(other);
+        assertThat(merged, sameInstance(other));
+        assertThat(merged.getAdjacentNodes(), contains(node));
+    }
 }
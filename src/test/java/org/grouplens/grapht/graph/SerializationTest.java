@@ -22,9 +22,11 @@ package org.grouplens.grapht.graph;
 import org.grouplens.grapht.BindingFunctionBuilder;
 import org.grouplens.grapht.BindingFunctionBuilder.RuleSet;
 import org.grouplens.grapht.Dependency;
+import org.grouplens.grapht.InjectionContainer;
 import org.grouplens.grapht.annotation.AnnotationBuilder;
 import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.Component;
+import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.Desires;
 import org.grouplens.grapht.reflect.Satisfactions;
 import org.grouplens.grapht.reflect.internal.InstanceSatisfaction;
@@ -32,15 +34,21 @@ import org.grouplens.grapht.reflect.internal.types.NamedType;
 import org.grouplens.grapht.solver.DefaultDesireBindingFunction;
 import org.grouplens.grapht.solver.DependencySolver;
 import org.grouplens.grapht.solver.DesireChain;
+import org.grouplens.grapht.util.ClassLoaderContext;
+import org.grouplens.grapht.util.ClassLoaders;
+import org.grouplens.grapht.util.ClassProxy;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
-import static org.hamcrest.Matchers.contains;
-import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 
 public class SerializationTest {
@@ -74,6 +82,35 @@ public class SerializationTest {
                    hasSize(2));
     }
     
+    @Test
+    public void testDiamondGraph() throws Exception {
+        DAGNode<String, String> bottom = DAGNode.singleton("bottom");
+        DAGNode<String, String> left = DAGNode.<String,String>newBuilder("left")
+                                              .addEdge(bottom, "down")
+                                              .build();
+        DAGNode<String, String> right = DAGNode.<String,String>newBuilder("right")
+                                               .addEdge(bottom, "down")
+                                               .build();
+        write(DAGNode.<String,String>newBuilder("top")
+                     .addEdge(left, "left")
+                     .addEdge(right, "right")
+                     .build());
+        DAGNode<String, String> read = read();
+
+        assertThat(read.getReachableNodes(), hasSize(4));
+        DAGNode<String, String> readLeft = read.getOutgoingEdgeWithLabel("left").getTail();
+        DAGNode<String, String> readRight = read.getOutgoingEdgeWithLabel("right").getTail();
+        Assert.assertSame(readLeft.getOutgoingEdgeWithLabel("down").getTail(),
+                          readRight.getOutgoingEdgeWithLabel("down").getTail());
+        for (DAGEdge<String, String> edge: read.getOutgoingEdges()) {
+            Assert.assertSame(read, edge.getHead());
+        }
+        Assert.assertTrue(read.structurallyEquals(DAGNode.<String,String>newBuilder("top")
+                                                         .addEdge(left, "left")
+                                                         .addEdge(right, "right")
+                                                         .build()));
+    }
+
     @Test
     public void testDependencySolverSerialization() throws Exception {
         BindingFunctionBuilder b = new BindingFunctionBuilder();
@@ -115,6 +152,93 @@ public class SerializationTest {
         Assert.assertEquals("hello world", ((InstanceSatisfaction) string.getLabel().getSatisfaction()).getInstance());
     }
     
+    @Test
+    public void testDeferredResolution() throws Exception {
+        BindingFunctionBuilder b = new BindingFunctionBuilder();
+        b.getRootContext().bind(String.class).withQualifier(new AnnotationBuilder<Named>(Named.class).set("value", "test1").build()).to("hello world");
+        DependencySolver solver = DependencySolver.newBuilder()
+                                                  .addBindingFunction(b.build(RuleSet.EXPLICIT))
+                                                  .addBindingFunction(DefaultDesireBindingFunction.create())
+                                                  .build();
+        solver.resolve(Desires.create(null, NamedType.class, false));
+
+        DAGNode<Component,Dependency> g = solver.getGraph();
+        write(g);
+        DAGNode<Component,Dependency> root;
+        ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+        try {
+            root = read();
+        } finally {
+            context.pop();
+        }
+
+        // satisfactions resolve when they are used
+        DAGNode<Component,Dependency> namedType = root.getOutgoingEdges().iterator().next().getTail();
+        Assert.assertEquals(NamedType.class, namedType.getLabel().getSatisfaction().getErasedType());
+        Assert.assertTrue(root.structurallyEquals(g));
+    }
+
+    @Test
+    public void testDeferredResolutionSkipsUnusedClasses() throws Exception {
+        BindingFunctionBuilder b = new BindingFunctionBuilder();
+        b.getRootContext().bind(String.class).withQualifier(new AnnotationBuilder<Named>(Named.class).set("value", "test1").build()).to("hello world");
+        DependencySolver solver = DependencySolver.newBuilder()
+                                                  .addBindingFunction(b.build(RuleSet.EXPLICIT))
+                                                  .addBindingFunction(DefaultDesireBindingFunction.create())
+                                                  .build();
+        Desire used = Desires.create(null, NamedType.class, false);
+        solver.resolve(used);
+        solver.resolve(Desires.create(null, Unused.class, false));
+        write(solver.getGraph());
+
+        RecordingClassLoader loader = new RecordingClassLoader(getClass().getClassLoader());
+        ClassLoaderContext loaderContext = ClassLoaders.pushContext(loader);
+        try {
+            DAGNode<Component,Dependency> root;
+            ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+            try {
+                root = read();
+            } finally {
+                context.pop();
+            }
+            assertThat(root.getOutgoingEdges(), hasSize(2));
+
+            DAGEdge<Component,Dependency> edge = root.getOutgoingEdgeWithLabel(Dependency.hasInitialDesire(used));
+            Object obj = InjectionContainer.create().makeInstantiator(edge.getTail()).instantiate();
+            assertThat(obj, instanceOf(NamedType.class));
+        } finally {
+            loaderContext.pop();
+        }
+
+        assertThat(loader.requested, hasItem(NamedType.class.getName()));
+        assertThat(loader.requested, not(hasItem(Unused.class.getName())));
+        assertThat(loader.requested, not(hasItem(UnusedDependency.class.getName())));
+    }
+
+    public static class Unused {
+        @Inject
+        public Unused(UnusedDependency dep) {}
+    }
+
+    public static class UnusedDependency {}
+
+    /**
+     * A class loader that records the classes it is asked for.
+     */
+    private static class RecordingClassLoader extends ClassLoader {
+        final Set<String> requested = Collections.synchronizedSet(new HashSet<String>());
+
+        RecordingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            requested.add(name);
+            return super.loadClass(name, resolve);
+        }
+    }
+
     @After
     public void cleanup() throws Exception {
         GRAPH_FILE.delete();
@@ -70,6 +70,64 @@ public class TestDAGNode {
                    equalTo(foo));
     }
 
+    @Test
+    public void testOutgoingEdgeView() {
+        DAGNode<String,String> foo = DAGNode.singleton("foo");
+        DAGNode<String,String> bar = DAGNode.<String,String>newBuilder("bar")
+                                            .addEdge(foo, "wombat")
+                                            .addEdge(foo, "woozle")
+                                            .build();
+
+        assertThat(bar.getOutgoingEdges(), hasSize(2));
+        assertThat(bar.getOutgoingEdges(),
+                   containsInAnyOrder(DAGEdge.create(bar, foo, "wombat"),
+                                      DAGEdge.create(bar, foo, "woozle")));
+        assertThat(bar.getOutgoingEdges().contains(DAGEdge.create(bar, foo, "wombat")),
+                   equalTo(true));
+        assertThat(bar.getOutgoingEdges().contains(DAGEdge.create(foo, foo, "wombat")),
+                   equalTo(false));
+        assertThat(bar.getOutgoingEdge(foo, "woozle"),
+                   equalTo(DAGEdge.create(bar, foo, "woozle")));
+        assertThat(bar.getAdjacentNodes(), contains(foo));
+
+        DAGNode<String,String> copy = DAGNode.copyBuilder(bar).build();
+        assertThat(copy, not(sameInstance(bar)));
+        assertThat(copy.structurallyEquals(bar), equalTo(true));
+    }
+
+    @Test
+    public void testWithEdge() {
+        DAGNode<String,String> foo = DAGNode.singleton("foo");
+        DAGNode<String,String> root = DAGNode.<String,String>newBuilder("root")
+                                             .addEdge(foo, "e0")
+                                             .build();
+        DAGNode<String,String> first = root;
+        // enough edges to need several levels of chunks
+        for (int i = 1; i < 1100; i++) {
+            DAGNode<String,String> next = root.withEdge(foo, "e" + i);
+            assertThat(next, not(sameInstance(root)));
+            root = next;
+        }
+
+        assertThat(first.getOutgoingEdges(), hasSize(1));
+        assertThat(root.getOutgoingEdges(), hasSize(1100));
+        int i = 0;
+        for (DAGEdge<String,String> edge: root.getOutgoingEdges()) {
+            assertThat(edge.getHead(), sameInstance(root));
+            assertThat(edge.getLabel(), equalTo("e" + i));
+            i++;
+        }
+        assertThat(root.getOutgoingEdgeWithLabel("e517").getTail(), sameInstance(foo));
+        assertThat(root.getReachableNodes(), containsInAnyOrder(root, foo));
+
+        DAGNodeBuilder<String,String> bld = DAGNode.newBuilder("root");
+        for (i = 1099; i >= 0; i--) {
+            bld.addEdge(foo, "e" + i);
+        }
+        assertThat(root.structurallyEquals(bld.build()), equalTo(true));
+        assertThat(DAGNode.copyBuilder(root).getEdges(), hasSize(1100));
+    }
+
     @Test
     public void testGetReverseEdge() {
         DAGNode<String,String> foo = DAGNode.singleton("foo");
@@ -335,4 +393,41 @@ public class TestDAGNode {
         assertThat(edge.getLabel(),
                    equalTo("goodbye"));
     }
+
+    @Test
+    public void testStructuralEquality() {
+        DAGNode<String,String> foo1 = DAGNode.singleton("foo");
+        DAGNode<String,String> bar1 = DAGNode.<String,String>newBuilder("bar")
+                                             .addEdge(foo1, "wombat")
+                                             .build();
+        DAGNode<String,String> foo2 = DAGNode.singleton("foo");
+        DAGNode<String,String> bar2 = DAGNode.<String,String>newBuilder("bar")
+                                             .addEdge(foo2, "wombat")
+                                             .build();
+
+        assertThat(bar1, not(equalTo(bar2)));
+        assertThat(bar1.structurallyEquals(bar2), equalTo(true));
+        assertThat(bar2.structurallyEquals(bar1), equalTo(true));
+        assertThat(bar1.structuralHashCode(), equalTo(bar2.structuralHashCode()));
+        assertThat(bar1.structurallyEquals(foo1), equalTo(false));
+        assertThat(bar1.structurallyEquals(null), equalTo(false));
+    }
+
+    @Test
+    public void testStructuralInequality() {
+        DAGNode<String,String> foo = DAGNode.singleton("foo");
+        DAGNode<String,String> baz = DAGNode.singleton("baz");
+        DAGNode<String,String> bar1 = DAGNode.<String,String>newBuilder("bar")
+                                             .addEdge(foo, "wombat")
+                                             .build();
+        DAGNode<String,String> bar2 = DAGNode.<String,String>newBuilder("bar")
+                                             .addEdge(baz, "wombat")
+                                             .build();
+        DAGNode<String,String> bar3 = DAGNode.<String,String>newBuilder("bar")
+                                             .addEdge(foo, "woozle")
+                                             .build();
+
+        assertThat(bar1.structurallyEquals(bar2), equalTo(false));
+        assertThat(bar1.structurallyEquals(bar3), equalTo(false));
+    }
 }
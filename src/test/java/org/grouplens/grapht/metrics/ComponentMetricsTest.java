@@ -0,0 +1,104 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.metrics;
+
+import org.grouplens.grapht.Injector;
+import org.grouplens.grapht.InjectorBuilder;
+import org.grouplens.grapht.Instrumentations;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ComponentMetricsTest {
+    @Test
+    public void testCountInstantiations() throws Exception {
+        ComponentMetrics metrics = new ComponentMetrics();
+        InjectorBuilder bld = InjectorBuilder.create()
+                                             .setInstrumentation(metrics);
+        bld.bind(Request.class).unshared().to(Request.class);
+        Injector injector = bld.build();
+        try {
+            injector.getInstance(Request.class);
+            injector.getInstance(Request.class);
+            injector.getInstance(Request.class);
+            injector.getInstance(Service.class);
+            injector.getInstance(Service.class);
+        } finally {
+            injector.close();
+        }
+
+        ComponentStatistics req = metrics.getComponentStatistics(Request.class);
+        assertThat(req.getInstantiationCount(), equalTo(4L));
+        assertThat(req.getMemoizedHitCount(), equalTo(0L));
+        long total = 0;
+        for (long n: req.getConstructionTimeHistogram()) {
+            total += n;
+        }
+        assertThat(total, equalTo(4L));
+
+        ComponentStatistics svc = metrics.getComponentStatistics(Service.class);
+        assertThat(svc.getInstantiationCount(), equalTo(1L));
+        assertThat(svc.getMemoizedMissCount(), equalTo(1L));
+        assertThat(svc.getMemoizedHitCount(), equalTo(1L));
+        assertThat(metrics.getInstantiationCount(), equalTo(5L));
+
+        metrics.reset();
+        assertThat(metrics.getInstantiationCount(), equalTo(0L));
+        assertThat(metrics.getComponentStatistics().keySet(), empty());
+    }
+
+    @Test
+    public void testMBeanRegistration() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("org.grouplens.grapht:type=ComponentMetrics,*");
+        Set<ObjectName> before = server.queryNames(pattern, null);
+
+        Injector injector = InjectorBuilder.create()
+                                           .setMetricsEnabled(true)
+                                           .setInstrumentation(Instrumentations.logging())
+                                           .build();
+        injector.getInstance(Service.class);
+        Set<ObjectName> names = server.queryNames(pattern, null);
+        names.removeAll(before);
+        assertThat(names, hasSize(1));
+        ObjectName name = names.iterator().next();
+        assertThat((Long) server.getAttribute(name, "InstantiationCount"), equalTo(2L));
+        TabularData stats = (TabularData) server.getAttribute(name, "ComponentStatistics");
+        assertThat(stats.size(), equalTo(2));
+
+        injector.close();
+        assertThat(server.isRegistered(name), equalTo(false));
+    }
+
+    public static class Request {}
+
+    public static class Service {
+        @Inject
+        public Service(Request req) {}
+    }
+}
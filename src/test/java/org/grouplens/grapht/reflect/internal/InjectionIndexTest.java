@@ -0,0 +1,231 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.reflect.internal;
+
+import org.grouplens.grapht.annotation.AnnotationValidator;
+import org.grouplens.grapht.annotation.InjectionIndexProcessor;
+import org.grouplens.grapht.reflect.Desire;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeThat;
+
+public class InjectionIndexTest {
+    private static final String SOURCE =
+            "package idx;\n"
+            + "import javax.inject.Inject;\n"
+            + "import javax.annotation.PostConstruct;\n"
+            + "public class Indexed extends Base {\n"
+            + "  public static class Dep {}\n"
+            + "  @Inject Dep field;\n"
+            + "  @Inject public Indexed(Dep d, int[] xs) {}\n"
+            + "  @Inject public void setDep(Dep d) {}\n"
+            + "  @Override public void overridden(Dep d) {}\n"
+            + "  @PostConstruct public void init() {}\n"
+            + "}\n"
+            + "class Base {\n"
+            + "  @Inject Indexed.Dep baseField;\n"
+            + "  @Inject public void overridden(Indexed.Dep d) {}\n"
+            + "}\n";
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("grapht", ".test");
+        assertThat(directory.delete(), equalTo(true));
+        assertThat(directory.mkdir(), equalTo(true));
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child: children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Compile the test source, letting the compiler discover the index processor from its
+     * service registration.
+     * @return A class loader for the compiled classes and index.
+     */
+    private ClassLoader compile() throws IOException {
+        compile(directory, System.getProperty("java.class.path"), "Indexed", SOURCE);
+        assertThat(new File(directory, InjectionIndexProcessor.INDEX_RESOURCE).exists(),
+                   equalTo(true));
+        return new URLClassLoader(new URL[]{directory.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    /**
+     * Compile a source file in the {@code idx} package.
+     * @param dir The output directory.
+     * @param classpath The class path to compile against.
+     * @param name The name of the top-level class.
+     * @param code The source code.
+     */
+    private void compile(File dir, String classpath, String name, String code) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeThat("Java compiler available", compiler, notNullValue());
+
+        File pkg = new File(dir, "idx");
+        pkg.mkdirs();
+        File source = new File(pkg, name + ".java");
+        Writer out = new OutputStreamWriter(new FileOutputStream(source), "UTF-8");
+        try {
+            out.write(code);
+        } finally {
+            out.close();
+        }
+
+        int result = compiler.run(null, null, null,
+                                  "-d", dir.getPath(),
+                                  "-classpath", classpath,
+                                  source.getPath());
+        assertThat(result, equalTo(0));
+    }
+
+    private static List<Integer> setterParameters(List<Desire> desires) {
+        List<Integer> params = new ArrayList<Integer>();
+        for (Desire desire: desires) {
+            if (desire.getInjectionPoint() instanceof SetterInjectionPoint) {
+                params.add(((SetterInjectionPoint) desire.getInjectionPoint()).getParameterIndex());
+            }
+        }
+        return params;
+    }
+
+    @Test
+    public void testIndexedClass() throws Exception {
+        ClassLoader loader = compile();
+        Class<?> type = loader.loadClass("idx.Indexed");
+        InjectionIndex index = InjectionIndex.forClass(type);
+        assertThat(index, notNullValue());
+        assertThat(index.getConstructor(), notNullValue());
+        assertThat(index.getConstructor().getParameterTypes().length, equalTo(2));
+        // superclass members first, fields before methods; overridden methods are not injected
+        assertThat(index.getMembers(), hasSize(3));
+        assertThat(index.getMembers().get(0).getName(), equalTo("baseField"));
+        assertThat(index.getMembers().get(1).getName(), equalTo("field"));
+        assertThat(index.getMembers().get(2).getName(), equalTo("setDep"));
+        assertThat(index.getPostConstructMethods(), hasSize(1));
+        assertThat(index.getPreDestroyMethods(), hasSize(0));
+    }
+
+    @Test
+    public void testIndexedDesires() throws Exception {
+        ClassLoader loader = compile();
+        Class<?> type = loader.loadClass("idx.Indexed");
+        List<Desire> desires = ReflectionDesire.getDesires(type);
+        // 2 constructor parameters, 2 fields, 1 setter
+        assertThat(desires, hasSize(5));
+        assertThat(desires.get(0).getInjectionPoint(), instanceOf(ConstructorParameterInjectionPoint.class));
+        assertThat(desires.get(4).getInjectionPoint(), instanceOf(SetterInjectionPoint.class));
+    }
+
+    @Test
+    public void testSetterParameterOrder() throws Exception {
+        File indexed = new File(directory, "indexed");
+        compile(indexed, System.getProperty("java.class.path"), "Pair",
+                "package idx;\n"
+                + "public class Pair {\n"
+                + "  @javax.inject.Inject public void set(String a, Integer b) {}\n"
+                + "}\n");
+        ClassLoader loader = new URLClassLoader(new URL[]{indexed.toURI().toURL()}, getClass().getClassLoader());
+        Class<?> type = loader.loadClass("idx.Pair");
+        assertThat(InjectionIndex.forClass(type), notNullValue());
+        List<Integer> fromIndex = setterParameters(ReflectionDesire.getDesires(type));
+
+        // load the same class without its index, so its desires are found reflectively
+        assertThat(new File(indexed, InjectionIndexProcessor.INDEX_RESOURCE).delete(), equalTo(true));
+        loader = new URLClassLoader(new URL[]{indexed.toURI().toURL()}, getClass().getClassLoader());
+        type = loader.loadClass("idx.Pair");
+        assertThat(InjectionIndex.forClass(type), nullValue());
+        List<Integer> fromReflection = setterParameters(ReflectionDesire.getDesires(type));
+
+        assertThat(fromIndex, hasSize(2));
+        assertThat(fromIndex, equalTo(fromReflection));
+    }
+
+    @Test
+    public void testSeparatelyCompiledSuperclass() throws Exception {
+        File lib = new File(directory, "lib");
+        File app = new File(directory, "app");
+        String classpath = System.getProperty("java.class.path");
+        compile(lib, classpath, "Parent",
+                "package idx;\n"
+                + "public class Parent {}\n");
+        compile(app, lib.getPath() + File.pathSeparator + classpath, "Child",
+                "package idx;\n"
+                + "public class Child extends Parent {\n"
+                + "  @javax.inject.Inject String name;\n"
+                + "}\n");
+        // the library gains an injection point after the application was compiled
+        compile(lib, classpath, "Parent",
+                "package idx;\n"
+                + "public class Parent {\n"
+                + "  @javax.inject.Inject Integer count;\n"
+                + "}\n");
+
+        ClassLoader loader = new URLClassLoader(new URL[]{app.toURI().toURL(), lib.toURI().toURL()},
+                                                getClass().getClassLoader());
+        Class<?> type = loader.loadClass("idx.Child");
+        assertThat(InjectionIndex.forClass(type), nullValue());
+        assertThat(ReflectionDesire.getDesires(type), hasSize(2));
+    }
+
+    @Test
+    public void testProcessorsRegistered() {
+        Set<String> names = new HashSet<String>();
+        for (Processor proc: ServiceLoader.load(Processor.class, getClass().getClassLoader())) {
+            names.add(proc.getClass().getName());
+        }
+        assertTrue(names.contains(AnnotationValidator.class.getName()));
+        assertTrue(names.contains(InjectionIndexProcessor.class.getName()));
+    }
+
+    @Test
+    public void testUnindexedClass() {
+        // classes from the JDK are never indexed
+        assertThat(InjectionIndex.forClass(String.class), nullValue());
+    }
+}
@@ -20,12 +20,18 @@
 package org.grouplens.grapht.reflect.internal;
 
 import com.google.common.collect.Maps;
+import org.apache.commons.lang3.SerializationUtils;
+import org.grouplens.grapht.ConstructionException;
 import org.grouplens.grapht.Instantiator;
 import org.grouplens.grapht.Instantiators;
+import org.grouplens.grapht.InvalidBindingException;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.InjectionPoint;
 import org.grouplens.grapht.reflect.Satisfaction;
 import org.grouplens.grapht.reflect.internal.types.*;
+import org.grouplens.grapht.util.ClassLoaderContext;
+import org.grouplens.grapht.util.ClassLoaders;
+import org.grouplens.grapht.util.ClassProxy;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -33,6 +39,10 @@ import org.junit.Test;
 
 import javax.annotation.Nullable;
 import javax.inject.Provider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
@@ -76,6 +86,119 @@ public class SatisfactionTest {
         Assert.assertEquals(TypeC.class, s.getErasedType());
     }
     
+    @Test
+    public void testDeferredClassSatisfaction() throws Exception {
+        ClassSatisfaction s = new ClassSatisfaction(TypeC.class);
+        byte[] bytes = SerializationUtils.serialize(s);
+        ClassSatisfaction read;
+        ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+        try {
+            read = (ClassSatisfaction) SerializationUtils.deserialize(bytes);
+        } finally {
+            context.pop();
+        }
+        Assert.assertFalse(read.isResolved());
+        Assert.assertEquals(s.hashCode(), read.hashCode());
+        Assert.assertEquals(s.toString(), read.toString());
+        // a symbolic satisfaction can be written again without resolving it
+        Assert.assertEquals(s, SerializationUtils.deserialize(SerializationUtils.serialize(read)));
+        Assert.assertFalse(read.isResolved());
+
+        Assert.assertEquals(TypeC.class, read.getErasedType());
+        Assert.assertTrue(read.isResolved());
+        Assert.assertEquals(s, read);
+        Assert.assertEquals(typeCInjectPoints, getInjectionPoints(read));
+    }
+
+    @Test
+    public void testDeferredProviderClassSatisfaction() throws Exception {
+        ProviderClassSatisfaction s = new ProviderClassSatisfaction(ProviderC.class);
+        byte[] bytes = SerializationUtils.serialize(s);
+        ProviderClassSatisfaction read;
+        ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+        try {
+            read = (ProviderClassSatisfaction) SerializationUtils.deserialize(bytes);
+        } finally {
+            context.pop();
+        }
+        Assert.assertFalse(read.isResolved());
+        Assert.assertEquals(s.hashCode(), read.hashCode());
+        // satisfactions with different names are compared without resolving them
+        Assert.assertFalse(read.equals(new ProviderClassSatisfaction(ProviderA.class)));
+        Assert.assertFalse(read.isResolved());
+        Assert.assertEquals(s, read);
+        Assert.assertTrue(read.isResolved());
+        Assert.assertEquals(ProviderC.class, read.getProviderType());
+    }
+
+    @Test
+    public void testDeferredSatisfactionFromOtherLoader() throws Exception {
+        // a loader that loads its own copy of the test classes
+        String[] path = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[path.length];
+        for (int i = 0; i < path.length; i++) {
+            urls[i] = new File(path[i]).toURI().toURL();
+        }
+        ClassLoader isolated = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+
+        byte[] bytes = SerializationUtils.serialize(new ClassSatisfaction(TypeC.class));
+        ClassSatisfaction read;
+        ClassLoaderContext loaderContext = ClassLoaders.pushContext(isolated);
+        try {
+            ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+            try {
+                read = (ClassSatisfaction) SerializationUtils.deserialize(bytes);
+            } finally {
+                context.pop();
+            }
+        } finally {
+            loaderContext.pop();
+        }
+
+        // the same name, but a different class
+        Assert.assertFalse(read.equals(new ClassSatisfaction(TypeC.class)));
+        Assert.assertFalse(new ClassSatisfaction(TypeC.class).equals(read));
+        Assert.assertNotSame(TypeC.class, read.getErasedType());
+        Assert.assertEquals(TypeC.class.getName(), read.getErasedType().getName());
+    }
+
+    @Test
+    public void testUnresolvableDeferredSatisfaction() throws Exception {
+        byte[] bytes = SerializationUtils.serialize(new ClassSatisfaction(TypeC.class));
+        // rename the class to one that does not exist
+        String name = TypeC.class.getName();
+        byte[] from = name.getBytes("UTF-8");
+        byte[] to = (name.substring(0, name.length() - 1) + "Z").getBytes("UTF-8");
+        for (int i = 0; i + from.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + from.length), from)) {
+                System.arraycopy(to, 0, bytes, i, to.length);
+            }
+        }
+
+        ClassSatisfaction read;
+        ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+        try {
+            read = (ClassSatisfaction) SerializationUtils.deserialize(bytes);
+        } finally {
+            context.pop();
+        }
+        Assert.assertFalse(read.equals(new ClassSatisfaction(TypeC.class)));
+
+        Instantiator inst = read.makeInstantiator(Collections.<Desire,Instantiator>emptyMap(), null);
+        try {
+            inst.instantiate();
+            Assert.fail("instantiating an unresolvable satisfaction should fail");
+        } catch (ConstructionException e) {
+            Assert.assertTrue(e.getMessage().contains("TypeZ"));
+        }
+        try {
+            read.getErasedType();
+            Assert.fail("an unresolvable satisfaction has no type");
+        } catch (InvalidBindingException e) {
+            Assert.assertTrue(e.getCause() instanceof ConstructionException);
+        }
+    }
+
     @Test
     public void testClassSatisfactionProvider() throws Exception {
         InterfaceA a1 = new TypeA();
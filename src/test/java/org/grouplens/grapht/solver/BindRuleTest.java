@@ -19,17 +19,21 @@
  */
 package org.grouplens.grapht.solver;
 
+import com.google.common.base.Predicates;
 import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.annotation.AnnotationBuilder;
 import org.grouplens.grapht.reflect.*;
 import org.grouplens.grapht.reflect.internal.*;
 import org.grouplens.grapht.reflect.internal.types.*;
+import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.lang.annotation.Annotation;
+import java.util.HashSet;
+import java.util.Set;
 
-import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 
 public class BindRuleTest {
@@ -60,6 +64,55 @@ public class BindRuleTest {
         Assert.assertFalse(b3.equals(BindRuleBuilder.create().setDependencyType(TypeA.class).setImplementation(TypeA.class).setCachePolicy(CachePolicy.NO_PREFERENCE).setQualifierMatcher(Qualifiers.match(RoleD.class)).setTerminal(false).build()));
     }
 
+    @Test
+    public void testGeneratedRules() {
+        BindRule proto = BindRuleBuilder.create()
+                                        .setDependencyType(TypeB.class)
+                                        .setImplementation(TypeB.class)
+                                        .setCachePolicy(CachePolicy.NO_PREFERENCE)
+                                        .setQualifierMatcher(Qualifiers.matchAny())
+                                        .setTerminal(true)
+                                        .build();
+        Set<Class<?>> types = new HashSet<Class<?>>();
+        types.add(TypeA.class);
+        types.add(InterfaceA.class);
+        GeneratedBindRules rules = new GeneratedBindRules(proto, types);
+
+        BindRule rule = rules.getRule(TypeA.class);
+        assertThat(rule, equalTo(proto.newCopyBuilder().setDependencyType(TypeA.class).build()));
+        assertThat(rules.getRule(TypeA.class), sameInstance(rule));
+        assertThat(rules.getRule(TypeB.class), nullValue());
+        assertThat(rules.getRules(), hasSize(2));
+    }
+
+    @Test
+    public void testSupertypeRules() {
+        BindRule proto = BindRuleBuilder.create()
+                                        .setDependencyType(TypeB.class)
+                                        .setImplementation(TypeB.class)
+                                        .setCachePolicy(CachePolicy.NO_PREFERENCE)
+                                        .setQualifierMatcher(Qualifiers.matchAny())
+                                        .setTerminal(true)
+                                        .build();
+        Set<Class<?>> excluded = new HashSet<Class<?>>();
+        excluded.add(TypeB.class);
+        excluded.add(Object.class);
+        GeneratedBindRules rules = GeneratedBindRules.supertypesOf(proto, TypeB.class,
+                                                                   Predicates.not(Predicates.in(excluded)));
+
+        BindRule rule = rules.getRule(TypeA.class);
+        assertThat(rule, equalTo(proto.newCopyBuilder().setDependencyType(TypeA.class).build()));
+        assertThat(rules.getRule(TypeA.class), sameInstance(rule));
+        assertThat(rules.getRule(InterfaceB.class), notNullValue());
+        // filtered out, or not a supertype
+        assertThat(rules.getRule(TypeB.class), nullValue());
+        assertThat(rules.getRule(Object.class), nullValue());
+        assertThat(rules.getRule(TypeC.class), nullValue());
+        assertThat(rules.getDependencyTypes(),
+                   Matchers.<Class<?>>containsInAnyOrder(TypeA.class, InterfaceA.class, InterfaceB.class));
+        assertThat(rules.getRules(), hasSize(3));
+    }
+
     @Test
     public void testPrimitiveMatch() throws Exception {
         // test boxing/unboxing of types
@@ -115,6 +115,19 @@ public class DependencySolverTest {
         Assert.assertTrue(r.getGraph().getReachableNodes().contains(node));
     }
 
+    @Test
+    public void testResolveTwice() throws Exception {
+        // Resolving the same desire again should not add a second root edge
+        Satisfaction sat = new MockSatisfaction(A.class, new ArrayList<Desire>());
+        Desire desire = new MockDesire(sat);
+
+        DependencySolver r = createSolver(ArrayListMultimap.<ContextMatcher, BindRule>create());
+        r.resolve(desire);
+        r.resolve(desire);
+        assertThat(r.getGraph().getOutgoingEdges(), hasSize(1));
+        assertThat(r.getGraph().getReachableNodes(), hasSize(2));
+    }
+
     @Test
     public void testSingleDependencySuccess() throws Exception {
         // Test resolving a satisfaction with a single dependency that is already satisfiable
@@ -1182,6 +1195,31 @@ public class DependencySolverTest {
         r.resolve(rootDesire);
     }
     
+    @Test
+    public void testRejectedRuleYieldsToLowerPriority() throws Exception {
+        // Test that a rule leading back to an earlier desire is skipped in favor
+        // of the next-best rule, rather than shadowing it
+        Desire da = new MockDesire();
+        Desire d2 = new MockDesire();
+        Satisfaction sb = new MockSatisfaction(B.class, Arrays.asList(da));
+        Satisfaction sc = new MockSatisfaction(C.class);
+        Desire rb = new MockDesire(sb);
+        Desire rc = new MockDesire(sc);
+
+        ImmutableListMultimap.Builder<ContextMatcher, BindRule> bindings = ImmutableListMultimap.builder();
+        bindings.put(ContextPattern.any(), new MockBindRule(da, d2));
+        // more specific context, so it has priority, but it cycles back to da
+        bindings.put(ContextPattern.subsequence(ContextElements.matchType(B.class, MockQualifierMatcher.any())),
+                     new MockBindRule(d2, da));
+        bindings.put(ContextPattern.any(), new MockBindRule(d2, rc));
+
+        DependencySolver r = createSolver(bindings.build());
+        r.resolve(rb);
+
+        DAGNode<Component, Dependency> bnode = getRoot(r, rb);
+        Assert.assertNotNull(getNode(bnode, sc, da));
+    }
+
     // Find the node for s connected to p by the given desire, d
     private DAGNode<Component, Dependency> getNode(DAGNode<Component, Dependency> graph, Satisfaction s, Desire d) {
         for (DAGEdge<Component, Dependency> e: graph.getOutgoingEdges()) {
@@ -19,8 +19,10 @@
  */
 package org.grouplens.grapht.solver;
 
+import org.grouplens.grapht.CachePolicy;
 import org.grouplens.grapht.reflect.Desire;
 import org.grouplens.grapht.reflect.MockDesire;
+import org.grouplens.grapht.reflect.Qualifiers;
 import org.junit.Test;
 
 import java.io.FileInputStream;
@@ -59,4 +61,48 @@ public class DesireChainTest {
                    equalTo((List<Desire>) DesireChain.singleton(d1)));
         assertThat(chain, contains(d1, d2));
     }
+
+    @Test
+    public void testAppliedRules() {
+        BindRule rule = BindRuleBuilder.create()
+                                       .setDependencyType(InputStream.class)
+                                       .setImplementation(FileInputStream.class)
+                                       .setCachePolicy(CachePolicy.NO_PREFERENCE)
+                                       .setQualifierMatcher(Qualifiers.matchAny())
+                                       .setTerminal(false)
+                                       .build();
+        Desire d1 = new MockDesire(InputStream.class, null, null);
+        Desire d2 = new MockDesire(FileInputStream.class, null, null);
+        DesireChain chain = DesireChain.singleton(d1);
+        assertThat(chain.hasAppliedRule(rule), equalTo(false));
+        DesireChain extended = chain.extend(d2, rule);
+        assertThat(extended.hasAppliedRule(rule), equalTo(true));
+        assertThat(extended.extend(d1).hasAppliedRule(rule), equalTo(true));
+        // the original chain is unaffected
+        assertThat(chain.hasAppliedRule(rule), equalTo(false));
+        assertThat(chain.extend(d2).hasAppliedRule(rule), equalTo(false));
+    }
+
+    @Test
+    public void testRejectedRules() {
+        BindRule rule = BindRuleBuilder.create()
+                                       .setDependencyType(InputStream.class)
+                                       .setImplementation(FileInputStream.class)
+                                       .setCachePolicy(CachePolicy.NO_PREFERENCE)
+                                       .setQualifierMatcher(Qualifiers.matchAny())
+                                       .setTerminal(false)
+                                       .build();
+        Desire d1 = new MockDesire(InputStream.class, null, null);
+        Desire d2 = new MockDesire(FileInputStream.class, null, null);
+        DesireChain chain = DesireChain.singleton(d1);
+        DesireChain rejected = chain.rejectRule(rule);
+        assertThat(rejected.hasRejectedRule(rule), equalTo(true));
+        assertThat(rejected.hasAppliedRule(rule), equalTo(false));
+        assertThat(rejected, equalTo(chain));
+        assertThat(rejected.getKey(), equalTo(chain.getKey()));
+        // the original chain is unaffected
+        assertThat(chain.hasRejectedRule(rule), equalTo(false));
+        // rejections only apply to the current desire
+        assertThat(rejected.extend(d2).hasRejectedRule(rule), equalTo(false));
+    }
 }
@@ -21,6 +21,9 @@ package org.grouplens.grapht.util;
 
 import org.junit.Test;
 
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -125,4 +128,36 @@ public class AbstractChainTest {
         assertThat(base.equals(chend), equalTo(false));
         assertThat(base.equals(chstart), equalTo(false));
     }
+
+    @Test
+    public void testBranchingChains() {
+        TestChain base = chain("foo", "bar");
+        TestChain left = base.extend("left").extend("deeper");
+        TestChain right = base.extend("right");
+        TestChain rightAgain = base.extend("right");
+
+        assertThat(left, contains("foo", "bar", "left", "deeper"));
+        assertThat(right, contains("foo", "bar", "right"));
+        assertThat(base, contains("foo", "bar"));
+        assertThat(right.get(2), equalTo("right"));
+        assertThat(left.get(2), equalTo("left"));
+        assertThat(right.equals(rightAgain), equalTo(true));
+        assertThat(right.equals(left), equalTo(false));
+    }
+
+    @Test
+    public void testHashMatchesList() {
+        TestChain chain = chain("foo", "bar", "blatz");
+        assertThat(chain.hashCode(), equalTo(Arrays.asList("foo", "bar", "blatz").hashCode()));
+        assertThat(chain.equals(Arrays.asList("foo", "bar", "blatz")), equalTo(true));
+    }
+
+    @Test
+    public void testSerializeChain() {
+        TestChain chain = chain("foo", "bar", "blatz");
+        TestChain copy = SerializationUtils.clone(chain);
+        assertThat(copy, equalTo(chain));
+        assertThat(copy.get(1), equalTo("bar"));
+        assertThat(copy.extend("wumpus"), contains("foo", "bar", "blatz", "wumpus"));
+    }
 }
@@ -55,6 +55,18 @@ public class AnnotationBuilderTest {
         Assert.assertEquals("hello", built.value());
     }
     
+    @Test
+    public void testEqualAnnotationsInterned() {
+        A3 a1 = new AnnotationBuilder<A3>(A3.class).set("otherValue", new double[] { 1.0 }).build();
+        A3 a2 = new AnnotationBuilder<A3>(A3.class).set("otherValue", new double[] { 1.0 }).build();
+        A3 a3 = new AnnotationBuilder<A3>(A3.class).set("otherValue", new double[] { 2.0 }).build();
+
+        Assert.assertSame(a1, a2);
+        Assert.assertEquals(a1.hashCode(), a2.hashCode());
+        Assert.assertFalse(a1.equals(a3));
+        Assert.assertFalse(a3.equals(a1));
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void testUnknownAttribute() {
         // verify that an attribute name not defined in the 
@@ -27,6 +27,7 @@ import java.lang.reflect.Array;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 @SuppressWarnings("rawtypes")
@@ -53,6 +54,11 @@ public class ClassProxyTest {
                    equalTo((Class) Array.newInstance(String.class, 0).getClass()));
     }
 
+    @Test
+    public void testProxyCached() {
+        assertThat(ClassProxy.of(String.class), sameInstance(ClassProxy.of(String.class)));
+    }
+
     /**
      * Serialize and deserialize a class proxy.
      * @param cls The class to serialize
@@ -92,6 +98,30 @@ public class ClassProxyTest {
                    equalTo((Class) double[][].class));
     }
 
+    @Test
+    public void testDeferResolution() throws ClassNotFoundException, IOException {
+        assertThat(ClassProxy.isResolutionDeferred(), equalTo(false));
+        ClassProxy.DeferredResolutionContext outer = ClassProxy.deferResolution();
+        try {
+            assertThat(ClassProxy.isResolutionDeferred(), equalTo(true));
+            ClassProxy proxy = roundTrip(String.class);
+            assertThat(proxy.resolve(), equalTo((Class) String.class));
+            ClassProxy.DeferredResolutionContext inner = ClassProxy.deferResolution();
+            inner.pop();
+            assertThat(ClassProxy.isResolutionDeferred(), equalTo(true));
+        } finally {
+            outer.pop();
+        }
+        assertThat(ClassProxy.isResolutionDeferred(), equalTo(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeferredContextPoppedTwice() {
+        ClassProxy.DeferredResolutionContext context = ClassProxy.deferResolution();
+        context.pop();
+        context.pop();
+    }
+
     @Test
     public void testEquals() {
         ClassProxy proxy = ClassProxy.of(String.class);
@@ -28,6 +28,11 @@ import org.junit.Test;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -148,6 +153,113 @@ public class ComponentLifecycleTest {
         assertTrue("close was called", setup.isSet());
     }
 
+    /**
+     * Test that parallel teardown closes dependents before their dependencies.
+     */
+    @Test
+    public void testParallelTeardownOrder() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        CloseLog log = new CloseLog();
+        bld.bind(CloseLog.class).to(log);
+        bld.setParallelTeardown(4, 10, TimeUnit.SECONDS);
+        Injector injector = bld.build();
+        try {
+            TopComponent top = injector.getInstance(TopComponent.class);
+            assertThat(top, notNullValue());
+        } finally {
+            injector.close();
+        }
+        assertThat(log.getClosed(), hasSize(3));
+        assertThat(log.getClosed().get(0), equalTo("top"));
+        assertThat(log.getClosed().subList(1, 3), containsInAnyOrder("left", "right"));
+    }
+
+    /**
+     * Test that parallel teardown stops waiting for slow components.
+     */
+    @Test
+    public void testParallelTeardownTimeout() throws Exception {
+        InjectorBuilder bld = InjectorBuilder.create();
+        bld.bind(CloseLog.class).to(new CloseLog());
+        bld.setParallelTeardown(2, 50, TimeUnit.MILLISECONDS);
+        Injector injector = bld.build();
+        injector.getInstance(SlowComponent.class);
+        injector.getInstance(LeftComponent.class);
+        try {
+            injector.close();
+            fail("closing should time out");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+            assertTrue(e.getCause().getMessage().contains(SlowComponent.class.getName()));
+        }
+    }
+
+    /**
+     * Log of closed components.
+     */
+    public static class CloseLog {
+        private final List<String> closed = Collections.synchronizedList(new ArrayList<String>());
+
+        public void closed(String name) {
+            closed.add(name);
+        }
+
+        public List<String> getClosed() {
+            return closed;
+        }
+    }
+
+    public static class LeftComponent implements AutoCloseable {
+        private final CloseLog log;
+
+        @Inject
+        public LeftComponent(CloseLog log) {
+            this.log = log;
+        }
+
+        @Override
+        public void close() {
+            log.closed("left");
+        }
+    }
+
+    public static class RightComponent implements AutoCloseable {
+        private final CloseLog log;
+
+        @Inject
+        public RightComponent(CloseLog log) {
+            this.log = log;
+        }
+
+        @Override
+        public void close() {
+            log.closed("right");
+        }
+    }
+
+    public static class TopComponent implements AutoCloseable {
+        private final CloseLog log;
+
+        @Inject
+        public TopComponent(CloseLog log, LeftComponent left, RightComponent right) {
+            this.log = log;
+        }
+
+        @Override
+        public void close() throws Exception {
+            // give the dependencies a chance to be (wrongly) closed first
+            Thread.sleep(20);
+            log.closed("top");
+        }
+    }
+
+    public static class SlowComponent implements AutoCloseable {
+        @Override
+        public void close() throws Exception {
+            Thread.sleep(10000);
+        }
+    }
+
     /**
      * Flag component for detecting closure.
      */
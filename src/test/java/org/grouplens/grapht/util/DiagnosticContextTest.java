@@ -0,0 +1,101 @@
+/*
+ * Grapht, an open source dependency injector.
+ * Copyright 2014-2015 various contributors (see CONTRIBUTORS.txt)
+ * Copyright 2010-2014 Regents of the University of Minnesota
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package org.grouplens.grapht.util;
+
+import org.grouplens.grapht.ConstructionException;
+import org.grouplens.grapht.InjectorBuilder;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import javax.inject.Inject;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DiagnosticContextTest {
+    @After
+    public void cleanUp() {
+        DiagnosticContext.get().pop(0);
+        MDC.clear();
+    }
+
+    @Test
+    public void testPushPop() {
+        DiagnosticContext ctx = DiagnosticContext.get();
+        int mark = ctx.push("key", "outer");
+        int inner = ctx.push("key", "inner");
+        assertThat(ctx.getDepth(), equalTo(mark + 2));
+        assertThat(ctx.snapshot(), hasEntry("key", "inner"));
+        ctx.pop(inner);
+        assertThat(ctx.snapshot(), hasEntry("key", "outer"));
+        ctx.pop(mark);
+        assertThat(ctx.getDepth(), equalTo(mark));
+        // nothing was exported
+        assertThat(MDC.get("key"), nullValue());
+    }
+
+    @Test
+    public void testExportRestoresMDC() {
+        MDC.put("key", "original");
+        DiagnosticContext ctx = DiagnosticContext.get();
+        int mark = ctx.push("key", "outer");
+        int inner = ctx.push("key", "inner");
+        ctx.exportToMDC();
+        assertThat(MDC.get("key"), equalTo("inner"));
+        ctx.pop(inner);
+        assertThat(MDC.get("key"), equalTo("outer"));
+        ctx.pop(mark);
+        assertThat(MDC.get("key"), equalTo("original"));
+    }
+
+    @Test
+    public void testExportRemovesNewKeys() {
+        DiagnosticContext ctx = DiagnosticContext.get();
+        int mark = ctx.push("other", 42);
+        ctx.exportToMDC();
+        assertThat(MDC.get("other"), equalTo("42"));
+        ctx.pop(mark);
+        assertThat(MDC.get("other"), nullValue());
+    }
+
+    @Test
+    public void testExceptionCapturesContext() throws Exception {
+        try {
+            InjectorBuilder.create().build().getInstance(Outer.class);
+            fail("instantiation should fail");
+        } catch (ConstructionException e) {
+            assertThat(e.getDiagnosticContext(),
+                       hasEntry("org.grouplens.grapht.class", Failing.class.toString()));
+        }
+        assertThat(DiagnosticContext.get().getDepth(), equalTo(0));
+    }
+
+    public static class Failing {
+        public Failing() {
+            throw new IllegalStateException("cannot build");
+        }
+    }
+
+    public static class Outer {
+        @Inject
+        public Outer(Failing f) {}
+    }
+}
@@ -35,6 +35,7 @@ import java.lang.reflect.WildcardType;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -160,6 +161,17 @@ public class TypesTest {
                    equalTo(1));
     }
 
+    @Test
+    public void testSupertypeDistances() {
+        Map<Class<?>, Integer> distances = Types.getSupertypeDistances(TypeB.class);
+        assertThat(distances.get(TypeB.class), equalTo(0));
+        assertThat(distances.get(TypeA.class), equalTo(1));
+        assertThat(distances.get(InterfaceB.class), equalTo(1));
+        assertThat(distances.get(InterfaceA.class), equalTo(2));
+        assertThat(distances.get(Object.class), equalTo(2));
+        assertThat(distances.containsKey(String.class), equalTo(false));
+    }
+
     @Test
     public void testTypedProvider() {
         Provider<String> string = Providers.of("string");